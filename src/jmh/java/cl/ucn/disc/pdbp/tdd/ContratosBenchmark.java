@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Benchmark of the Contratos, by backend and number of fichas.
+ *
+ * @author Miguel León Garrido
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContratosBenchmark {
+
+  /**
+   * The size of a page of personas.
+   */
+  private static final int PAGE_SIZE = 20;
+
+  /**
+   * The backend.
+   */
+  @Param({"h2", "sqlite"})
+  public String backend;
+
+  /**
+   * The number of fichas (and half of personas).
+   */
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  /**
+   * The contratos.
+   */
+  private Contratos contratos;
+
+  /**
+   * The persona in the middle of the dataset.
+   */
+  private Persona middle;
+
+  /**
+   * The body of the next rut to insert.
+   */
+  private int nextRut;
+
+  /**
+   * The next numero to insert.
+   */
+  private long nextNumero;
+
+  /**
+   * Load the dataset.
+   */
+  @Setup
+  public void setup() throws IOException {
+    this.contratos = new ContratosImpl(Datasets.config(this.backend), true);
+    List<Persona> personas = Datasets.load(this.contratos, this.size);
+    this.middle = personas.get(personas.size() / 2);
+
+    // After the ruts and numeros of the dataset
+    this.nextRut = Datasets.FIRST_RUT * 2;
+    this.nextNumero = this.size + 1L;
+  }
+
+  /**
+   * @return the persona inserted.
+   */
+  @Benchmark
+  public Persona registrarPersona() {
+    this.nextRut = Datasets.nextRutBody(this.nextRut);
+    return this.contratos.registrarPersona(Datasets.persona(this.nextRut, Datasets.rut(this.nextRut++)));
+  }
+
+  /**
+   * @return the ficha inserted.
+   */
+  @Benchmark
+  public Ficha registrarPaciente() {
+    return this.contratos.registrarPaciente(Datasets.ficha(this.nextNumero++, this.middle));
+  }
+
+  /**
+   * @return the fichas of a duenio, by rut.
+   */
+  @Benchmark
+  public List<Ficha> buscarFicha() {
+    return this.contratos.buscarFicha(this.middle.getRut());
+  }
+
+  /**
+   * @return a page of personas in the middle, by number of page.
+   */
+  @Benchmark
+  public List<Persona> getPersonas() {
+    return this.contratos.getPersonas(PAGE_SIZE, this.size / 2 / PAGE_SIZE);
+  }
+
+  /**
+   * @return a page of personas in the middle, by cursor.
+   */
+  @Benchmark
+  public List<Persona> getPersonasAfter() {
+    return this.contratos.getPersonasAfter(this.middle.getId(), PAGE_SIZE);
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.model.dao.DatabaseConfig;
+import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import cl.ucn.disc.pdbp.tdd.model.main.Sexo;
+import cl.ucn.disc.pdbp.tdd.model.main.Tipo;
+import cl.ucn.disc.pdbp.tdd.model.utils.Validation;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The databases and data used by the benchmarks.
+ *
+ * @author Miguel León Garrido
+ */
+public final class Datasets {
+
+  /**
+   * The body of the first rut of a dataset.
+   */
+  public static final int FIRST_RUT = 10_000_000;
+
+  /**
+   * The number of rows inserted by transaction.
+   */
+  private static final int CHUNK_SIZE = 1_000;
+
+  /**
+   * The names of the pacientes.
+   */
+  private static final String[] PACIENTES = {"Firulais", "Cachupin", "Bobby", "Pelusa", "Manchas", "Rocky",
+    "Canela", "Tobby", "Luna", "Simba"};
+
+  /**
+   * The names of the duenios.
+   */
+  private static final String[] NOMBRES = {"Andrea", "Juan", "Pedro", "Camila", "Diego", "Valentina", "Jose",
+    "Francisca", "Miguel", "Catalina"};
+
+  private Datasets() {
+    // nothing
+  }
+
+  /**
+   * @param backend h2 (in memory) or sqlite (in a temporary file).
+   * @return the configuration of a new database, written only by the benchmark (a single writer).
+   */
+  public static DatabaseConfig config(String backend) throws IOException {
+    DatabaseConfig config;
+    switch (backend) {
+      case "h2":
+        config = new DatabaseConfig("jdbc:h2:mem:" + UUID.randomUUID());
+        break;
+      case "sqlite":
+        File file = File.createTempFile("fivet-benchmark", ".db");
+        file.deleteOnExit();
+        config = new DatabaseConfig("jdbc:sqlite:" + file.getAbsolutePath());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown backend: " + backend);
+    }
+    config.setSingleWriter(true);
+    return config;
+  }
+
+  /**
+   * Insert size fichas, two by persona: the fichas have the numeros 1..size, the personas the ruts from
+   * {@link #FIRST_RUT}.
+   *
+   * @param contratos to use.
+   * @param size number of fichas.
+   * @return the personas inserted.
+   */
+  public static List<Persona> load(Contratos contratos, int size) {
+
+    List<Persona> personas = new ArrayList<>();
+    int body = FIRST_RUT;
+    for (int i = 0; i < Math.max(1, size / 2); i++) {
+      body = nextRutBody(body);
+      personas.add(persona(i, rut(body)));
+      body++;
+    }
+    for (int from = 0; from < personas.size(); from += CHUNK_SIZE) {
+      contratos.registrarPersonas(personas.subList(from, Math.min(personas.size(), from + CHUNK_SIZE)));
+    }
+
+    List<Ficha> fichas = new ArrayList<>(CHUNK_SIZE);
+    for (int numero = 1; numero <= size; numero++) {
+      fichas.add(ficha(numero, personas.get((numero - 1) / 2)));
+      if (fichas.size() == CHUNK_SIZE || numero == size) {
+        contratos.registrarPacientes(fichas);
+        fichas = new ArrayList<>(CHUNK_SIZE);
+      }
+    }
+
+    return personas;
+  }
+
+  /**
+   * @param i number of the persona.
+   * @param rut of the persona.
+   * @return a new persona.
+   */
+  public static Persona persona(int i, String rut) {
+    return new Persona(NOMBRES[i % NOMBRES.length], "Contreras", rut, "michimalongo 1826", 2244397, 63887303,
+      "persona" + i + "@gmail.com");
+  }
+
+  /**
+   * @param numero of the ficha.
+   * @param duenio of the ficha.
+   * @return a new ficha.
+   */
+  public static Ficha ficha(long numero, Persona duenio) {
+    return new Ficha(numero, PACIENTES[(int) (numero % PACIENTES.length)], "Perro", ZonedDateTime.now(), "Pastor",
+      Sexo.MACHO, "Negro", Tipo.INTERNO, duenio);
+  }
+
+  /**
+   * @param body to start.
+   * @return the first body from body with a valid rut.
+   */
+  public static int nextRutBody(int body) {
+    while (!Validation.isRutValid(rut(body))) {
+      body++;
+    }
+    return body;
+  }
+
+  /**
+   * @param body of the rut (7 or 8 digits).
+   * @return the rut with their verification digit.
+   */
+  public static String rut(int body) {
+
+    // Modulo 11: the digits from the right by 2, 3, .., 7, 2, 3, ..
+    int sum = 0;
+    int factor = 2;
+    for (int rest = body; rest > 0; rest /= 10) {
+      sum += rest % 10 * factor;
+      factor = factor == 7 ? 2 : factor + 1;
+    }
+
+    int digit = (11 - sum % 11) % 11;
+    return body + (digit == 10 ? "K" : Integer.toString(digit));
+  }
+
+}
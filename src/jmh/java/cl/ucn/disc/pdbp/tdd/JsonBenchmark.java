@@ -0,0 +1,280 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.model.json.ModelTypeAdapters;
+import cl.ucn.disc.pdbp.tdd.model.main.Control;
+import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.j256.ormlite.dao.ForeignCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The Benchmark of the JSON of 1000 rows (as streamed by the endpoints): the {@link ModelTypeAdapters} against the
+ * reflection of Gson writing the same fields (the transient ids and dates included, the dates as ISO strings and the
+ * references as ids, checked at setup).
+ *
+ * @author Miguel León Garrido
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonBenchmark {
+
+  /**
+   * The number of rows written.
+   */
+  private static final int ROWS = 1_000;
+
+  /**
+   * True to write with the adapters, false by reflection.
+   */
+  @Param({"true", "false"})
+  public boolean adapters;
+
+  /**
+   * The Gson of the personas.
+   */
+  private Gson personasGson;
+
+  /**
+   * The Gson of the fichas.
+   */
+  private Gson fichasGson;
+
+  /**
+   * The Gson of the controles.
+   */
+  private Gson controlesGson;
+
+  /**
+   * The personas to write.
+   */
+  private final List<Persona> personas = new ArrayList<>();
+
+  /**
+   * The fichas to write.
+   */
+  private final List<Ficha> fichas = new ArrayList<>();
+
+  /**
+   * The controles to write.
+   */
+  private final List<Control> controles = new ArrayList<>();
+
+  /**
+   * Create the rows (inserted in a database in memory, with ids).
+   */
+  @Setup
+  public void setup() throws IOException {
+
+    Gson gson = ModelTypeAdapters.register(new GsonBuilder()).create();
+    this.personasGson = this.adapters ? gson : reflection(null, null);
+    this.fichasGson = this.adapters ? gson : reflection(Persona.class, Persona::getId);
+    this.controlesGson = this.adapters ? gson : reflection(Ficha.class, Ficha::getId);
+
+    // Inserted, with their ids
+    ContratosImpl contratos = new ContratosImpl(Datasets.config("h2"));
+    int body = Datasets.FIRST_RUT;
+    ZonedDateTime fecha = ZonedDateTime.parse("2020-05-20T10:15:30.123-04:00");
+    for (int i = 0; i < ROWS; i++) {
+      body = Datasets.nextRutBody(body + 1);
+      Persona persona = contratos.registrarPersona(Datasets.persona(i, Datasets.rut(body)));
+      Ficha ficha = contratos.registrarPaciente(Datasets.ficha(i, persona));
+      this.personas.add(persona);
+      this.fichas.add(ficha);
+      this.controles.add(contratos.registrarControl(new Control(fecha, fecha.plusDays(30), 38.5f, 20.3f, 50, "Sano",
+        "Dr. Lopez", ficha)));
+    }
+    contratos.close();
+
+    // The same JSON by reflection and by the adapters
+    check(this.personasGson, gson, this.personas.get(0), Persona.class);
+    check(this.fichasGson, gson, this.fichas.get(0), Ficha.class);
+    check(this.controlesGson, gson, this.controles.get(0), Control.class);
+  }
+
+  /**
+   * The Gson writing by reflection the fields of the adapters: the transient fields (but the foreign collections and
+   * rutNumero), the dates as ISO strings and a referenced type as their id.
+   *
+   * @param referenced the type written as id, null if none.
+   * @param idExtractor of the type referenced.
+   * @param <R> the type referenced.
+   * @return the Gson.
+   */
+  private static <R> Gson reflection(Class<R> referenced, Function<R, Long> idExtractor) {
+
+    GsonBuilder builder = new GsonBuilder()
+      .excludeFieldsWithModifiers(Modifier.STATIC)
+      .setExclusionStrategies(new ExclusionStrategy() {
+        @Override
+        public boolean shouldSkipField(FieldAttributes field) {
+          return field.getDeclaredClass() == ForeignCollection.class || "rutNumero".equals(field.getName());
+        }
+
+        @Override
+        public boolean shouldSkipClass(Class<?> type) {
+          return false;
+        }
+      })
+      .registerTypeAdapter(ZonedDateTime.class, new TypeAdapter<ZonedDateTime>() {
+        @Override
+        public void write(JsonWriter out, ZonedDateTime date) throws IOException {
+          out.value(date.toString());
+        }
+
+        @Override
+        public ZonedDateTime read(JsonReader in) throws IOException {
+          return ZonedDateTime.parse(in.nextString());
+        }
+      }.nullSafe());
+
+    if (referenced != null) {
+      builder.registerTypeAdapter(referenced, new TypeAdapter<R>() {
+        @Override
+        public void write(JsonWriter out, R reference) throws IOException {
+          out.value(idExtractor.apply(reference));
+        }
+
+        @Override
+        public R read(JsonReader in) {
+          throw new UnsupportedOperationException("Write only");
+        }
+      }.nullSafe());
+    }
+    return builder.create();
+  }
+
+  /**
+   * Check that the reflection writes the same JSON that the adapters.
+   */
+  private static <T> void check(Gson reflection, Gson adapters, T element, Class<T> theClass) {
+    JsonElement expected = JsonParser.parseString(adapters.toJson(element, theClass));
+    JsonElement json = JsonParser.parseString(reflection.toJson(element, theClass));
+    if (!expected.equals(json)) {
+      throw new IllegalStateException("Other JSON by reflection: " + json + " != " + expected);
+    }
+  }
+
+  /**
+   * @return the characters written.
+   */
+  @Benchmark
+  public long personas() throws IOException {
+    return write(this.personasGson, this.personas, Persona.class);
+  }
+
+  /**
+   * @return the characters written.
+   */
+  @Benchmark
+  public long fichas() throws IOException {
+    return write(this.fichasGson, this.fichas, Ficha.class);
+  }
+
+  /**
+   * @return the characters written.
+   */
+  @Benchmark
+  public long controles() throws IOException {
+    return write(this.controlesGson, this.controles, Control.class);
+  }
+
+  /**
+   * Write a JSON array, as streamJson of the endpoints.
+   *
+   * @return the characters written.
+   */
+  private static <T> long write(Gson gson, List<T> elements, Class<T> theClass) throws IOException {
+    CountingWriter out = new CountingWriter();
+    try (JsonWriter writer = gson.newJsonWriter(out)) {
+      writer.beginArray();
+      for (T element : elements) {
+        gson.toJson(element, theClass, writer);
+      }
+      writer.endArray();
+    }
+    return out.count;
+  }
+
+  /**
+   * A writer counting the characters, without keeping them.
+   */
+  private static final class CountingWriter extends Writer {
+
+    /**
+     * The characters written.
+     */
+    private long count;
+
+    @Override
+    public void write(char[] chars, int off, int len) {
+      this.count += len;
+    }
+
+    @Override
+    public void write(String string, int off, int len) {
+      this.count += len;
+    }
+
+    @Override
+    public void flush() {
+      //nothing
+    }
+
+    @Override
+    public void close() {
+      //nothing
+    }
+
+  }
+
+}
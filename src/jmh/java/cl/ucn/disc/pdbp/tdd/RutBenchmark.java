@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.model.utils.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Benchmark of the validation of 1000 ruts: {@link Validation#isRutValid(String)} against the previous version
+ * (a substring and Integer.parseInt by digit).
+ *
+ * @author Miguel León Garrido
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RutBenchmark {
+
+  /**
+   * The number of ruts validated.
+   */
+  private static final int RUTS = 1_000;
+
+  /**
+   * True to validate with the current version, false with the previous one.
+   */
+  @Param({"true", "false"})
+  public boolean current;
+
+  /**
+   * The ruts (compact, the format the previous version accepts), one of ten invalid.
+   */
+  private final String[] ruts = new String[RUTS];
+
+  /**
+   * Create the ruts.
+   */
+  @Setup
+  public void setup() {
+    int body = Datasets.FIRST_RUT;
+    for (int i = 0; i < RUTS; i++) {
+      body = Datasets.nextRutBody(body + 1);
+      String rut = Datasets.rut(body);
+      this.ruts[i] = i % 10 == 0 ? rut.substring(0, rut.length() - 1) + "X" : rut;
+    }
+  }
+
+  /**
+   * @return the valid ruts.
+   */
+  @Benchmark
+  public int isRutValid() {
+    int valid = 0;
+    for (String rut : this.ruts) {
+      if (this.current ? Validation.isRutValid(rut) : isRutValidPrevious(rut)) {
+        valid++;
+      }
+    }
+    return valid;
+  }
+
+  /**
+   * The previous version of {@link Validation#isRutValid(String)}.
+   *
+   * @param rut to validate.
+   * @return true if valid, false otherwise.
+   */
+  private static boolean isRutValidPrevious(String rut) {
+    if (rut == null) {
+      return false;
+    }
+
+    int rutLength = rut.length();
+    if (rutLength != 8 && rutLength != 9) {
+      return false;
+    }
+
+    int totalSum = 0;
+    for (int i = rutLength - 2; i >= 0; i--) {
+      int digitNumber;
+      try {
+        digitNumber = Integer.parseInt(rut.substring(i, i + 1));
+      } catch (Exception e) {
+        return false;
+      }
+
+      int toMultiply = rutLength - i;
+      if (toMultiply > 7) {
+        toMultiply -= 6;
+      }
+      totalSum += digitNumber * toMultiply;
+    }
+
+    int number = 11 - (totalSum % 11);
+    String correctValidationNumber;
+    if (number == 10) {
+      correctValidationNumber = "K";
+    } else {
+      correctValidationNumber = Integer.toString(number);
+    }
+
+    return correctValidationNumber.equalsIgnoreCase(rut.substring(rutLength - 1));
+  }
+
+}
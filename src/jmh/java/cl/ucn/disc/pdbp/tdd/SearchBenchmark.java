@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Benchmark of buscarFicha: the in memory index against the LIKE query in the database (H2), by number of fichas.
+ *
+ * @author Miguel León Garrido
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark {
+
+  /**
+   * True to search in the index, false to search in the database.
+   */
+  @Param({"true", "false"})
+  public boolean index;
+
+  /**
+   * The number of fichas (and half of personas).
+   */
+  @Param({"10000", "100000", "1000000"})
+  public int size;
+
+  /**
+   * What to search: the numero of a ficha, a part of a rut or a part of the name of the pacientes.
+   */
+  @Param({"numero", "rut", "paciente"})
+  public String query;
+
+  /**
+   * The contratos.
+   */
+  private Contratos contratos;
+
+  /**
+   * The text to search.
+   */
+  private String text;
+
+  /**
+   * Load the dataset.
+   */
+  @Setup
+  public void setup() throws IOException {
+    this.contratos = new ContratosImpl(Datasets.config("h2"), this.index);
+    List<Persona> personas = Datasets.load(this.contratos, this.size);
+
+    switch (this.query) {
+      case "numero":
+        this.text = Long.toString(this.size / 2);
+        break;
+      case "rut":
+        this.text = personas.get(personas.size() / 2).getRut().substring(0, 6);
+        break;
+      default:
+        this.text = "ulai";
+        break;
+    }
+  }
+
+  /**
+   * @return the fichas found.
+   */
+  @Benchmark
+  public List<Ficha> buscarFicha() {
+    return this.contratos.buscarFicha(this.text);
+  }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.Datasets;
+import cl.ucn.disc.pdbp.tdd.model.dao.Repository;
+import cl.ucn.disc.pdbp.tdd.model.dao.RepositoryOrmLite;
+import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeEpochType;
+import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeType;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Benchmark of the listing of controles with the dates as strings ({@link ZonedDateTimeType}) or as numbers
+ * ({@link ZonedDateTimeEpochType}), by backend and number of controles.
+ *
+ * @author Miguel León Garrido
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ControlListingBenchmark {
+
+  /**
+   * The backend.
+   */
+  @Param({"h2", "sqlite"})
+  public String backend;
+
+  /**
+   * The number of controles.
+   */
+  @Param({"10000", "100000"})
+  public int size;
+
+  /**
+   * The persister of the dates: iso or epoch.
+   */
+  @Param({"iso", "epoch"})
+  public String persister;
+
+  /**
+   * The connection.
+   */
+  private ConnectionSource connectionSource;
+
+  /**
+   * The repository.
+   */
+  private Repository<?, Long> repository;
+
+  /**
+   * Load the dataset.
+   */
+  @Setup
+  public void setup() throws IOException, SQLException {
+
+    this.connectionSource = Datasets.config(this.backend).createConnectionSource();
+    ZonedDateTime first = ZonedDateTime.of(2010, 1, 1, 9, 0, 0, 0, ZoneOffset.ofHours(-4));
+
+    if ("iso".equals(this.persister)) {
+      TableUtils.createTableIfNotExists(this.connectionSource, IsoControl.class);
+      Repository<IsoControl, Long> repo = new RepositoryOrmLite<>(this.connectionSource, IsoControl.class);
+      List<IsoControl> controles = new ArrayList<>(this.size);
+      for (int i = 0; i < this.size; i++) {
+        controles.add(new IsoControl(first.plusHours(i), first.plusHours(i).plusWeeks(2), "Diagnostico " + i));
+      }
+      repo.createAll(controles);
+      this.repository = repo;
+    } else {
+      TableUtils.createTableIfNotExists(this.connectionSource, EpochControl.class);
+      Repository<EpochControl, Long> repo = new RepositoryOrmLite<>(this.connectionSource, EpochControl.class);
+      List<EpochControl> controles = new ArrayList<>(this.size);
+      for (int i = 0; i < this.size; i++) {
+        controles.add(new EpochControl(first.plusHours(i), first.plusHours(i).plusWeeks(2), "Diagnostico " + i));
+      }
+      repo.createAll(controles);
+      this.repository = repo;
+    }
+  }
+
+  /**
+   * Close the connection.
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    this.connectionSource.close();
+  }
+
+  /**
+   * @return all the controles.
+   */
+  @Benchmark
+  public List<?> findAll() {
+    return this.repository.findAll();
+  }
+
+  /**
+   * The Control with the dates as strings.
+   */
+  @DatabaseTable(tableName = "control")
+  public static final class IsoControl {
+
+    /**
+     * The id.
+     */
+    @DatabaseField(generatedId = true)
+    private Long id;
+
+    /**
+     * The fecha.
+     */
+    @DatabaseField(persisterClass = ZonedDateTimeType.class)
+    private ZonedDateTime fecha;
+
+    /**
+     * The fecha of the next control.
+     */
+    @DatabaseField(persisterClass = ZonedDateTimeType.class)
+    private ZonedDateTime fechaProximoControl;
+
+    /**
+     * The diagnostico.
+     */
+    @DatabaseField(canBeNull = false)
+    private String diagnostico;
+
+    /**
+     * Empty constructor.
+     */
+    IsoControl() {
+      // Nothing here
+    }
+
+    /**
+     * The Constructor.
+     */
+    IsoControl(ZonedDateTime fecha, ZonedDateTime fechaProximoControl, String diagnostico) {
+      this.fecha = fecha;
+      this.fechaProximoControl = fechaProximoControl;
+      this.diagnostico = diagnostico;
+    }
+  }
+
+  /**
+   * The Control with the dates as numbers.
+   */
+  @DatabaseTable(tableName = "control")
+  public static final class EpochControl {
+
+    /**
+     * The id.
+     */
+    @DatabaseField(generatedId = true)
+    private Long id;
+
+    /**
+     * The fecha.
+     */
+    @DatabaseField(persisterClass = ZonedDateTimeEpochType.class)
+    private ZonedDateTime fecha;
+
+    /**
+     * The fecha of the next control.
+     */
+    @DatabaseField(persisterClass = ZonedDateTimeEpochType.class)
+    private ZonedDateTime fechaProximoControl;
+
+    /**
+     * The diagnostico.
+     */
+    @DatabaseField(canBeNull = false)
+    private String diagnostico;
+
+    /**
+     * Empty constructor.
+     */
+    EpochControl() {
+      // Nothing here
+    }
+
+    /**
+     * The Constructor.
+     */
+    EpochControl(ZonedDateTime fecha, ZonedDateTime fechaProximoControl, String diagnostico) {
+      this.fecha = fecha;
+      this.fechaProximoControl = fechaProximoControl;
+      this.diagnostico = diagnostico;
+    }
+  }
+
+}
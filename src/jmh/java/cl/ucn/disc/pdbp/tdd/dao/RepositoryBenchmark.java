@@ -0,0 +1,125 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.Datasets;
+import cl.ucn.disc.pdbp.tdd.model.dao.Repository;
+import cl.ucn.disc.pdbp.tdd.model.dao.RepositoryOrmLite;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Benchmark of the {@link RepositoryOrmLite} (without cache), by backend and number of personas.
+ *
+ * @author Miguel León Garrido
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryBenchmark {
+
+  /**
+   * The backend.
+   */
+  @Param({"h2", "sqlite"})
+  public String backend;
+
+  /**
+   * The number of personas.
+   */
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  /**
+   * The connection.
+   */
+  private ConnectionSource connectionSource;
+
+  /**
+   * The repository.
+   */
+  private Repository<Persona, Long> repository;
+
+  /**
+   * Load the dataset.
+   */
+  @Setup
+  public void setup() throws IOException, SQLException {
+
+    this.connectionSource = Datasets.config(this.backend).createConnectionSource();
+    TableUtils.createTableIfNotExists(this.connectionSource, Persona.class);
+    this.repository = new RepositoryOrmLite<>(this.connectionSource, Persona.class);
+
+    List<Persona> personas = new ArrayList<>(this.size);
+    int body = Datasets.FIRST_RUT;
+    for (int i = 0; i < this.size; i++) {
+      body = Datasets.nextRutBody(body);
+      personas.add(Datasets.persona(i, Datasets.rut(body++)));
+    }
+    this.repository.createAll(personas);
+  }
+
+  /**
+   * Close the connection.
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    this.connectionSource.close();
+  }
+
+  /**
+   * @return a random persona.
+   */
+  @Benchmark
+  public Persona findById() {
+    return this.repository.findById(ThreadLocalRandom.current().nextLong(1, this.size + 1));
+  }
+
+  /**
+   * @return all the personas.
+   */
+  @Benchmark
+  public List<Persona> findAll() {
+    return this.repository.findAll();
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeEpochType;
+import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Benchmark of the conversions of {@link ZonedDateTimeType} (strings) and {@link ZonedDateTimeEpochType}
+ * (numbers).
+ *
+ * @author Miguel León Garrido
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ZonedDateTimeTypeBenchmark {
+
+  /**
+   * The type.
+   */
+  private final ZonedDateTimeType type = ZonedDateTimeType.getSingleton();
+
+  /**
+   * The date to write.
+   */
+  private final ZonedDateTime date = ZonedDateTime.parse("2020-05-20T10:15:30.123-04:00");
+
+  /**
+   * The date to read.
+   */
+  private final Object sqlArg = this.type.javaToSqlArg(null, this.date);
+
+  /**
+   * The type as number.
+   */
+  private final ZonedDateTimeEpochType epochType = ZonedDateTimeEpochType.getSingleton();
+
+  /**
+   * The date to read, as number.
+   */
+  private final Object epochSqlArg = this.epochType.javaToSqlArg(null, this.date);
+
+  /**
+   * @return the date as sql argument.
+   */
+  @Benchmark
+  public Object javaToSqlArg() {
+    return this.type.javaToSqlArg(null, this.date);
+  }
+
+  /**
+   * @return the date read.
+   */
+  @Benchmark
+  public Object sqlArgToJava() {
+    return this.type.sqlArgToJava(null, this.sqlArg, 0);
+  }
+
+  /**
+   * @return the date as sql argument (number).
+   */
+  @Benchmark
+  public Object epochJavaToSqlArg() {
+    return this.epochType.javaToSqlArg(null, this.date);
+  }
+
+  /**
+   * @return the date read (number).
+   */
+  @Benchmark
+  public Object epochSqlArgToJava() {
+    return this.epochType.sqlArgToJava(null, this.epochSqlArg, 0);
+  }
+
+}
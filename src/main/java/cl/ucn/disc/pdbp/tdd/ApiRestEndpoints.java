@@ -24,15 +24,41 @@
 
 package cl.ucn.disc.pdbp.tdd;
 
+import cl.ucn.disc.pdbp.tdd.model.dao.DatabaseConfig;
+import cl.ucn.disc.pdbp.tdd.model.dao.DatabaseExecutor;
+import cl.ucn.disc.pdbp.tdd.model.dao.QueryMetrics;
+import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeEpochType;
 import cl.ucn.disc.pdbp.tdd.model.main.*;
-import cl.ucn.disc.pdbp.tdd.model.utils.Entity;
+import cl.ucn.disc.pdbp.tdd.model.utils.PrometheusWriter;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * ApiRestEndpoint class.
@@ -46,15 +72,74 @@ public class ApiRestEndpoints {
    */
   private static final Logger log = LoggerFactory.getLogger(ApiRestEndpoints.class);
 
+  /**
+   * The configuration of the database.
+   */
+  private static final DatabaseConfig CONFIG = databaseConfig();
+
   /**
    * The contratos instance.
    */
-  private static final ContratosImpl CONTRATOS = new ContratosImpl("jdbc:sqlite:fivet.db");
+  private static final ContratosImpl CONTRATOS = new ContratosImpl(CONFIG);
+
+  /**
+   * The threads running the database work, so the request threads don't wait for the database.
+   */
+  private static final DatabaseExecutor EXECUTOR = CONFIG.createExecutor();
+
+  /**
+   * When this instance started, part of the ETags (the count of writes starts again with the instance).
+   */
+  private static final long STARTED = System.currentTimeMillis();
+
+  /**
+   * The header with the cursor of the next page.
+   */
+  private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+  /**
+   * The default number of controles by page.
+   */
+  private static final int CONTROLES_PAGE_SIZE = 50;
+
+  /**
+   * The max number of controles by page.
+   */
+  private static final int CONTROLES_MAX_PAGE_SIZE = 1_000;
+
+  /**
+   * The max number of rows inserted in a single transaction by the bulk endpoints.
+   */
+  private static final int BULK_CHUNK_SIZE = 500;
+
+  /**
+   * The number of rows read from the database by each task of the streamed responses.
+   */
+  private static final int STREAM_PAGE_SIZE = 500;
+
+  /**
+   * The attribute of the context with the statements of the request.
+   */
+  private static final String REQUEST_ATTRIBUTE = "statements";
+
+  /**
+   * The attribute of the context with the start of the request, in nanoseconds.
+   */
+  private static final String START_ATTRIBUTE = "start";
 
   private ApiRestEndpoints() {
     //nothing
   }
 
+  /**
+   * @return the configuration of the database in fivet.properties.
+   */
+  private static DatabaseConfig databaseConfig() {
+    DatabaseConfig config = DatabaseConfig.fromProperties(Application.getProperties());
+    log.info("Using the database {}.", config.getUrl());
+    return config;
+  }
+
   /**
    * Getting all the fichas.
    *
@@ -64,12 +149,9 @@ public class ApiRestEndpoints {
 
     log.debug("Getting all the fichas...");
 
-    // Getting all the fichas
-    List<Ficha> fichas = CONTRATOS.getAllFichas();
-
-    //fichas.forEach(ficha -> log.debug("Ficha: {}.",Entity.toString(ficha)));
-
-    ctx.json(fichas);
+    // Streaming all the fichas
+    streamJson(ctx, null, last -> CONTRATOS.getFichasAfter(last != null ? last.getId() : null, STREAM_PAGE_SIZE),
+      Ficha.class);
   }
 
   /**
@@ -84,9 +166,7 @@ public class ApiRestEndpoints {
     log.debug("finding fichas with query <{}> ..",query);
 
     // Finding the fichas with the query
-    List<Ficha> fichas = CONTRATOS.buscarFicha(query);
-
-    ctx.json(fichas);
+    ctx.json(EXECUTOR.supply(() -> CONTRATOS.buscarFicha(query)));
   }
 
   /**
@@ -121,12 +201,55 @@ public class ApiRestEndpoints {
     // We need the duenio as a Persona to create a ficha
     // TODO: aqui asumi que viene con el id del duenio como dato, y que las fechas vienen en el formato necesario
     Long idDuenio = Long.parseLong(ctx.queryParam("duenio"));
-    Persona duenio = CONTRATOS.getPersona(idDuenio);
 
-    // Creating and inserting the ficha
-    Ficha ficha = new Ficha(numero,nombrePaciente,especie,fechaNacimiento,raza,sexo,color,tipo,duenio);
-    CONTRATOS.registrarPaciente(ficha);
+    ctx.result(EXECUTOR.supply(() -> {
+      Persona duenio = CONTRATOS.getPersona(idDuenio);
+
+      // Creating and inserting the ficha
+      Ficha ficha = new Ficha(numero,nombrePaciente,especie,fechaNacimiento,raza,sexo,color,tipo,duenio);
+      CONTRATOS.registrarPaciente(ficha);
+      return "";
+    }));
+
+  }
+
+  /**
+   * Inserting fichas in the DB from a NDJSON body: a ficha by line, with the id of the duenio and the dates in ISO
+   * format. The result of each line is returned.
+   *
+   * @param ctx the Javalin {@link Context}
+   */
+  public static void insertFichasBulk(Context ctx) throws IOException {
+
+    log.debug("Inserting fichas in bulk...");
+
+    // The body is read out of the database threads, only the chunks run there
+    ctx.json(bulkInsert(ctx, ApiRestEndpoints::parseFicha, CONTRATOS::registrarPacientes,
+      CONTRATOS::registrarPaciente, Ficha::getId, ficha -> CONTRATOS.mightExistFicha(ficha.getNumero())));
+  }
+
+  /**
+   * @param json with the data of the ficha.
+   * @return the ficha.
+   */
+  private static Ficha parseFicha(JsonObject json) {
+
+    // We need the duenio as a Persona to create a ficha
+    Persona duenio = CONTRATOS.getPersona(field(json, "duenio").getAsLong());
+    if (duenio == null) {
+      throw new IllegalArgumentException("Duenio not found!");
+    }
 
+    return new Ficha(
+      field(json, "numero").getAsLong(),
+      field(json, "nombrePaciente").getAsString(),
+      field(json, "especie").getAsString(),
+      ZonedDateTime.parse(field(json, "fechaNacimiento").getAsString()),
+      field(json, "raza").getAsString(),
+      field(json, "sexo").getAsString().equalsIgnoreCase("hembra") ? Sexo.HEMBRA : Sexo.MACHO,
+      field(json, "color").getAsString(),
+      field(json, "tipo").getAsString().equalsIgnoreCase("interno") ? Tipo.INTERNO : Tipo.EXTERNO,
+      duenio);
   }
 
   /**
@@ -139,13 +262,83 @@ public class ApiRestEndpoints {
     // Getting the numeroFicha of control
     Long numero = Long.parseLong(ctx.pathParam("numeroFicha"));
 
+    // With limit or before only one page is returned
+    if (ctx.queryParam("limit") != null || ctx.queryParam("before") != null) {
+      getControlesFromFichaPage(ctx, numero);
+      return;
+    }
+
     // Finding the controles
-    List<Control> controles = CONTRATOS.getAllControlesFromFicha(numero);
+    ctx.json(EXECUTOR.supply(() -> CONTRATOS.getAllControlesFromFicha(numero)));
+
+  }
 
-    //controles.forEach(control -> log.debug("Control: {}.",Entity.toString(control)));
+  /**
+   * Getting a page of the controles of a ficha, newest first (?limit=&before=, the cursor of the next page in the
+   * X-Next-Cursor header).
+   *
+   * @param ctx the Javalin {@link Context}
+   * @param numero of the ficha.
+   */
+  private static void getControlesFromFichaPage(Context ctx, Long numero) {
 
-    ctx.json(controles);
+    // Obtaining the page
+    int limit = ctx.queryParam("limit", Integer.class, String.valueOf(CONTROLES_PAGE_SIZE))
+      .check(size -> size > 0 && size <= CONTROLES_MAX_PAGE_SIZE)
+      .get();
+    String before = ctx.queryParam("before");
+    ControlCursor last = before != null ? decodeControlCursor(before) : null;
+    log.debug("Getting {} controles of the ficha {} before <{}> ..", limit, numero, before);
 
+    // Finding the controles
+    ctx.json(EXECUTOR.supply(() -> last != null
+      ? CONTRATOS.getControlesFromFicha(numero, last.fecha, last.id, limit)
+      : CONTRATOS.getControlesFromFicha(numero, null, null, limit))
+      .thenApply(controles -> {
+
+        // The cursor of the next page, set by the response thread
+        if (controles.size() == limit) {
+          ctx.header(NEXT_CURSOR_HEADER, encodeControlCursor(controles.get(controles.size() - 1)));
+        }
+        return controles;
+      }));
+  }
+
+  /**
+   * Getting the controles with fechaProximoControl in a range (?from=&to=, ISO dates, the next 7 days from the current
+   * minute by default), streamed in order.
+   *
+   * @param ctx the Javalin {@link Context}
+   */
+  public static void getControlesProximos(Context ctx) {
+
+    // Obtaining the range
+    ZonedDateTime from = parseDate(ctx.queryParam("from"), ZonedDateTime.now().truncatedTo(ChronoUnit.MINUTES));
+    ZonedDateTime to = parseDate(ctx.queryParam("to"), from.plusDays(7));
+    log.debug("Getting the controles from {} to {} ..", from, to);
+
+    // Streaming the controles, the range in the ETag (the same url is other range later)
+    String range = Long.toString(from.toInstant().toEpochMilli(), 36) + "-"
+      + Long.toString(to.toInstant().toEpochMilli(), 36);
+    streamJson(ctx, range, last -> last != null
+      ? CONTRATOS.getControlesProximos(from, to, last.getFechaProximoControl(), last.getId(), STREAM_PAGE_SIZE)
+      : CONTRATOS.getControlesProximos(from, to, null, null, STREAM_PAGE_SIZE), Control.class);
+  }
+
+  /**
+   * @param date to parse, ISO format.
+   * @param defaultDate if the date is null.
+   * @return the date.
+   */
+  private static ZonedDateTime parseDate(String date, ZonedDateTime defaultDate) {
+    if (date == null) {
+      return defaultDate;
+    }
+    try {
+      return ZonedDateTime.parse(date);
+    } catch (DateTimeParseException ex) {
+      throw new BadRequestResponse("Invalid date: " + date);
+    }
   }
 
   /**
@@ -167,12 +360,16 @@ public class ApiRestEndpoints {
 
     // We need the ficha to create a control
     Long numeroFicha = Long.parseLong(ctx.pathParam("numeroFicha"));
-    Ficha ficha = CONTRATOS.getFicha(numeroFicha);
 
-    // creating and inserting the control in the DB.
-    Control control = new Control(fecha,fechaProximoControl,temperatura,peso,altura,diagnostico,nombreVeterinario,ficha);
+    ctx.result(EXECUTOR.supply(() -> {
+      Ficha ficha = CONTRATOS.getFicha(numeroFicha);
 
-    CONTRATOS.registrarControl(control);
+      // creating and inserting the control in the DB.
+      Control control = new Control(fecha,fechaProximoControl,temperatura,peso,altura,diagnostico,nombreVeterinario,
+        ficha);
+      CONTRATOS.registrarControl(control);
+      return "";
+    }));
 
   }
 
@@ -183,11 +380,17 @@ public class ApiRestEndpoints {
    */
   public static void getAllPersonas(Context ctx) {
 
+    // With pageSize only one page is returned
+    if (ctx.queryParam("pageSize") != null) {
+      getAllPersonasWithQuery(ctx);
+      return;
+    }
+
     log.debug("Getting all the personas...");
 
-    List<Persona> personas = CONTRATOS.getAllPersonas();
-    personas.forEach(persona -> log.debug("Persona: {}.", Entity.toString(persona)));
-    ctx.json(personas);
+    // Streaming all the personas
+    streamJson(ctx, null, last -> CONTRATOS.getPersonasAfter(last != null ? last.getId() : null, STREAM_PAGE_SIZE),
+      Persona.class);
   }
 
   /**
@@ -209,8 +412,40 @@ public class ApiRestEndpoints {
     // Creating and inserting the persona
     Persona persona = new Persona(nombre,apellido,rut,direccion,telefonoFijo,telefonoMovil,email);
 
-    CONTRATOS.registrarPersona(persona);
+    ctx.result(EXECUTOR.supply(() -> {
+      CONTRATOS.registrarPersona(persona);
+      return "";
+    }));
+
+  }
+
+  /**
+   * Inserting personas in the DB from a NDJSON body: a persona by line. The result of each line is returned.
+   *
+   * @param ctx the Javalin {@link Context}
+   */
+  public static void insertPersonasBulk(Context ctx) throws IOException {
+
+    log.debug("Inserting personas in bulk...");
 
+    // The body is read out of the database threads, only the chunks run there
+    ctx.json(bulkInsert(ctx, ApiRestEndpoints::parsePersona, CONTRATOS::registrarPersonas,
+      CONTRATOS::registrarPersona, Persona::getId, persona -> CONTRATOS.mightExistPersona(persona.getRut())));
+  }
+
+  /**
+   * @param json with the data of the persona.
+   * @return the persona.
+   */
+  private static Persona parsePersona(JsonObject json) {
+    return new Persona(
+      field(json, "nombre").getAsString(),
+      field(json, "apellido").getAsString(),
+      field(json, "rut").getAsString(),
+      field(json, "direccion").getAsString(),
+      field(json, "telefonoFijo").getAsInt(),
+      field(json, "telefonoMovil").getAsInt(),
+      field(json, "email").getAsString());
   }
 
   /**
@@ -224,16 +459,13 @@ public class ApiRestEndpoints {
     Long numero = Long.parseLong(ctx.pathParam("numeroFicha"));
 
     // Finding the duenio
-    Persona duenio = CONTRATOS.getPersonaFromFicha(numero);
-
-    //log.debug("Persona: {}.", Entity.toString(duenio));
-
-    ctx.json(duenio);
+    ctx.json(EXECUTOR.supply(() -> CONTRATOS.getPersonaFromFicha(numero)));
 
   }
 
   /**
-   * getting a list of personas with some filter.
+   * getting a page of personas: by page (?pageSize=&page=, from 0) or by cursor (?pageSize=&cursor=).
+   * If the page is full, the cursor of the next page is sent in the X-Next-Cursor header.
    *
    * @param ctx the Javalin {@link Context}
    */
@@ -241,12 +473,517 @@ public class ApiRestEndpoints {
 
     // Obtaining the data of the query
     Integer pageSize = ctx.queryParam("pageSize",Integer.class).get();
-    Integer page = ctx.queryParam("page",Integer.class).get();
+    String cursor = ctx.queryParam("cursor");
+
+    Long lastId = cursor != null ? decodeCursor(cursor) : null;
+    Integer page = ctx.queryParam("page",Integer.class,"0").get();
 
     // Finding the personas
-    List<Persona> personas = CONTRATOS.getPersonas(pageSize,page);
+    ctx.json(EXECUTOR.supply(() -> cursor != null
+      ? CONTRATOS.getPersonasAfter(lastId, pageSize)
+      : CONTRATOS.getPersonas(pageSize, page))
+      .thenApply(personas -> {
+
+        // The cursor of the next page, set by the response thread
+        if (pageSize > 0 && personas.size() == pageSize) {
+          ctx.header(NEXT_CURSOR_HEADER, encodeCursor(personas.get(personas.size() - 1).getId()));
+        }
+        return personas;
+      }));
+
+  }
+
+  /**
+   * Follow the statements of the request, in the request thread and in the {@link DatabaseExecutor}.
+   *
+   * @param ctx the Javalin {@link Context}
+   */
+  public static void beginRequest(Context ctx) {
+    ctx.attribute(START_ATTRIBUTE, System.nanoTime());
+    ctx.attribute(REQUEST_ATTRIBUTE, QueryMetrics.beginRequest());
+  }
+
+  /**
+   * Set the Server-Timing header: the time since the request began and the time of their statements. Must run before
+   * the body is written (the headers go first).
+   *
+   * @param ctx the Javalin {@link Context}
+   */
+  public static void serverTiming(Context ctx) {
+    Long start = ctx.attribute(START_ATTRIBUTE);
+    if (start == null) {
+      return;
+    }
+    double total = (System.nanoTime() - start) / 1e6;
+    QueryMetrics.Request request = ctx.attribute(REQUEST_ATTRIBUTE);
+    if (request != null && CONTRATOS.getQueryMetrics() != null) {
+      ctx.header("Server-Timing", String.format(Locale.ROOT, "total;dur=%.1f, db;dur=%.1f", total,
+        request.getMillis()));
+    } else {
+      ctx.header("Server-Timing", String.format(Locale.ROOT, "total;dur=%.1f", total));
+    }
+  }
+
+  /**
+   * Stop following the statements of the request (the response is done).
+   *
+   * @param ctx the Javalin {@link Context}
+   * @return the statements of the request, null if not followed or not metered.
+   */
+  public static QueryMetrics.Request endRequest(Context ctx) {
+    QueryMetrics.Request request = ctx.attribute(REQUEST_ATTRIBUTE);
+    QueryMetrics metrics = CONTRATOS.getQueryMetrics();
+    if (request == null || metrics == null) {
+      return null;
+    }
+    metrics.endRequest(request);
+    return request;
+  }
+
+  /**
+   * Stop the database work: the tasks waiting, the backfills in the background (after their chunk) and the
+   * connections.
+   */
+  public static void close() {
+    EXECUTOR.close();
+    try {
+      CONTRATOS.close();
+    } catch (IOException ex) {
+      log.warn("Can't close the database: {}", ex.getMessage());
+    }
+  }
+
+  /**
+   * The metrics of the database (statements, pool, caches, bloom filters, routing and migrations) and of the executor,
+   * in the text format of Prometheus.
+   *
+   * @param ctx the Javalin {@link Context}
+   */
+  public static void getMetrics(Context ctx) {
+
+    PrometheusWriter writer = new PrometheusWriter("fivet");
+    writer.write("db", CONTRATOS.getMetrics());
+    writer.write("executor", EXECUTOR.getMetrics());
+
+    // The latencies by operation and the statements by request
+    QueryMetrics metrics = CONTRATOS.getQueryMetrics();
+    if (metrics != null) {
+      writer.write("db_query_seconds", "operation", metrics.getLatencies(), 1e-9);
+      writer.write("db_request_statements", metrics.getRequests(), 1);
+    }
+
+    ctx.contentType(PrometheusWriter.CONTENT_TYPE).result(writer.toString());
+  }
+
+  /**
+   * Write a JSON array to the response, one element at time, so the memory used doesn't depend on the number of rows.
+   *
+   * The rows are read by pages in the {@link DatabaseExecutor} (with the default timeout) and written by the response
+   * threads, so a slow client doesn't hold a database thread or connection and a slow database doesn't hold a request
+   * thread. In production the response is gzipped if the client accepts it and, with a single writer (the count of
+   * writes of this instance changes with the data), has a weak ETag, 304 if the client has the same.
+   *
+   * @param ctx the Javalin {@link Context}
+   * @param scope of the data in the ETag (as the range of dates of a default range), null if none.
+   * @param nextPage the page after the element (null for the first page), of {@link #STREAM_PAGE_SIZE} elements.
+   * @param theClass of the elements.
+   * @param <T> type of the elements.
+   */
+  private static <T> void streamJson(Context ctx, String scope, Function<T, List<T>> nextPage, Class<T> theClass) {
+
+    // The weak ETag (the checksum of the body needs the whole body): the same while this instance doesn't write, the
+    // writes of others aren't seen
+    if (Application.isProduction() && CONFIG.isSingleWriter()) {
+      String etag = "W/\"" + Long.toString(STARTED, 36) + "-" + CONTRATOS.getWriteCount()
+        + (scope != null ? "-" + scope : "") + "\"";
+      ctx.header("ETag", etag);
+      if (etag.equals(ctx.header("If-None-Match"))) {
+        ctx.status(304);
+        return;
+      }
+    }
+
+    // Written to the servlet stream, out of the compression of Javalin: gzip here
+    boolean gzip = Application.isProduction() && ctx.header("Accept-Encoding") != null
+      && ctx.header("Accept-Encoding").contains("gzip");
+
+    // The first page before the body, so a failure is still a error response
+    ctx.result(EXECUTOR.supply(() -> nextPage.apply(null)).thenCompose(page -> {
+
+      ctx.contentType("application/json");
+      serverTiming(ctx);
+      if (gzip) {
+        ctx.header("Content-Encoding", "gzip");
+        ctx.header("Vary", "Accept-Encoding");
+      }
+
+      Gson gson = Application.getGson();
+      JsonWriter writer;
+      try {
+        writer = gson.newJsonWriter(new OutputStreamWriter(gzip
+          ? new GZIPOutputStream(ctx.res.getOutputStream(), 8192)
+          : ctx.res.getOutputStream(), StandardCharsets.UTF_8));
+        writer.beginArray();
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+
+      return writePages(gson, writer, page, nextPage, theClass).whenComplete((done, throwable) -> {
+        try {
+          writer.close();
+        } catch (IOException ex) {
+          log.debug("Stream closed before the end: {}", ex.getMessage());
+        }
+      });
+    }));
+  }
+
+  /**
+   * Write a page to a JSON array and the next pages after it (read in the {@link DatabaseExecutor}), ending the array
+   * after the last page.
+   *
+   * @param gson to write the elements.
+   * @param writer of the array.
+   * @param page to write.
+   * @param nextPage the page after the element.
+   * @param theClass of the elements.
+   * @param <T> type of the elements.
+   * @return the future done when the array is ended.
+   */
+  private static <T> CompletableFuture<Void> writePages(Gson gson, JsonWriter writer, List<T> page,
+                                                        Function<T, List<T>> nextPage, Class<T> theClass) {
+    try {
+      for (T element : page) {
+        gson.toJson(element, theClass, writer);
+      }
+
+      // The last page
+      if (page.size() < STREAM_PAGE_SIZE) {
+        writer.endArray();
+        return CompletableFuture.completedFuture(null);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+
+    T last = page.get(page.size() - 1);
+    return EXECUTOR.supply(() -> nextPage.apply(last))
+      .thenCompose(next -> writePages(gson, writer, next, nextPage, theClass));
+  }
+
+  /**
+   * Read a NDJSON body and insert the elements in chunks, each chunk in a single transaction. If a chunk fails, its
+   * elements are inserted one by one to know which of them failed. The elements that maybe exist (by the bloom
+   * filters) are inserted alone, so a duplicate doesn't roll back a chunk.
+   *
+   * The first chunk of the body is read and parsed by this thread and the next ones by the response threads, each
+   * chunk is built and inserted by the {@link DatabaseExecutor} (with the default timeout), so a slow client doesn't
+   * hold a database thread or connection and a slow database doesn't hold a request thread.
+   *
+   * @param ctx the Javalin {@link Context}
+   * @param parser from a line to a element (it can read the database).
+   * @param insertAll to insert a chunk, all or none.
+   * @param insert to insert a single element.
+   * @param idExtractor to get the id of a element inserted.
+   * @param mightExist false if the element is new for sure.
+   * @param <T> type of the elements.
+   * @return the future result of each line.
+   */
+  private static <T> CompletableFuture<List<BulkResult>> bulkInsert(Context ctx, Function<JsonObject, T> parser,
+                                                                    Function<List<T>, List<T>> insertAll,
+                                                                    Function<T, T> insert,
+                                                                    Function<T, Long> idExtractor,
+                                                                    Predicate<T> mightExist) throws IOException {
+
+    List<BulkResult> results = new ArrayList<>();
+    LineNumberReader reader = new LineNumberReader(
+      new InputStreamReader(ctx.req.getInputStream(), StandardCharsets.UTF_8));
+
+    return insertNext(reader, results, parser, insertAll, insert, idExtractor, mightExist)
+      .whenComplete((done, throwable) -> {
+        try {
+          reader.close();
+        } catch (IOException ex) {
+          log.debug("Can't close the body: {}", ex.getMessage());
+        }
+      })
+      .thenApply(done -> results);
+  }
+
+  /**
+   * Read the next chunk of lines, insert it and the chunks after it.
+   *
+   * @param reader of the body.
+   * @param results of the lines read.
+   * @param parser from a line to a element.
+   * @param insertAll to insert a chunk, all or none.
+   * @param insert to insert a single element.
+   * @param idExtractor to get the id of a element inserted.
+   * @param mightExist false if the element is new for sure.
+   * @param <T> type of the elements.
+   * @return the future done when the body is inserted.
+   */
+  private static <T> CompletableFuture<Void> insertNext(LineNumberReader reader, List<BulkResult> results,
+                                                        Function<JsonObject, T> parser,
+                                                        Function<List<T>, List<T>> insertAll, Function<T, T> insert,
+                                                        Function<T, Long> idExtractor, Predicate<T> mightExist) {
+
+    // The lines parsed and waiting to be inserted, with their results
+    List<JsonObject> lines = new ArrayList<>(BULK_CHUNK_SIZE);
+    List<BulkResult> pending = new ArrayList<>(BULK_CHUNK_SIZE);
+
+    try {
+      String json;
+      while (lines.size() < BULK_CHUNK_SIZE && (json = reader.readLine()) != null) {
+
+        // Skip the empty lines
+        if (json.trim().isEmpty()) {
+          continue;
+        }
+
+        BulkResult result = new BulkResult(reader.getLineNumber());
+        results.add(result);
+
+        try {
+          lines.add(JsonParser.parseString(json).getAsJsonObject());
+          pending.add(result);
+        } catch (RuntimeException ex) {
+          result.failed(ex);
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+
+    // The end of the body
+    if (lines.size() < BULK_CHUNK_SIZE) {
+      return insertLines(lines, pending, parser, insertAll, insert, idExtractor, mightExist);
+    }
+
+    return insertLines(lines, pending, parser, insertAll, insert, idExtractor, mightExist)
+      .thenCompose(done -> insertNext(reader, results, parser, insertAll, insert, idExtractor, mightExist));
+  }
+
+  /**
+   * Build and insert the elements of a chunk of lines in the {@link DatabaseExecutor}.
+   *
+   * @param lines of the chunk.
+   * @param pending results of the lines.
+   * @param parser from a line to a element.
+   * @param insertAll to insert a chunk, all or none.
+   * @param insert to insert a single element.
+   * @param idExtractor to get the id of a element inserted.
+   * @param mightExist false if the element is new for sure.
+   * @param <T> type of the elements.
+   * @return the future done when the chunk is inserted.
+   */
+  private static <T> CompletableFuture<Void> insertLines(List<JsonObject> lines, List<BulkResult> pending,
+                                                         Function<JsonObject, T> parser,
+                                                         Function<List<T>, List<T>> insertAll, Function<T, T> insert,
+                                                         Function<T, Long> idExtractor, Predicate<T> mightExist) {
+
+    if (lines.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return EXECUTOR.supply(() -> {
+
+      // The elements new for sure, with their results
+      List<T> chunk = new ArrayList<>(lines.size());
+      List<BulkResult> chunkPending = new ArrayList<>(lines.size());
+
+      for (int i = 0; i < lines.size(); i++) {
+        BulkResult result = pending.get(i);
+        try {
+          T element = parser.apply(lines.get(i));
+
+          // Maybe a duplicate: alone
+          if (mightExist.test(element)) {
+            result.inserted(idExtractor.apply(insert.apply(element)));
+          } else {
+            chunk.add(element);
+            chunkPending.add(result);
+          }
+        } catch (RuntimeException ex) {
+          result.failed(ex);
+        }
+      }
+
+      insertChunk(chunk, chunkPending, insertAll, insert, idExtractor);
+      return null;
+    });
+  }
+
+  /**
+   * Insert a chunk of elements and clear it.
+   *
+   * @param chunk of elements.
+   * @param pending results of the elements.
+   * @param insertAll to insert a chunk, all or none.
+   * @param insert to insert a single element.
+   * @param idExtractor to get the id of a element inserted.
+   * @param <T> type of the elements.
+   */
+  private static <T> void insertChunk(List<T> chunk, List<BulkResult> pending, Function<List<T>, List<T>> insertAll,
+                                      Function<T, T> insert, Function<T, Long> idExtractor) {
+
+    if (chunk.isEmpty()) {
+      return;
+    }
+
+    try {
+      insertAll.apply(chunk);
+      for (int i = 0; i < chunk.size(); i++) {
+        pending.get(i).inserted(idExtractor.apply(chunk.get(i)));
+      }
+    } catch (RuntimeException ex) {
+
+      // The chunk was rolled back, one by one to know which failed
+      log.debug("Chunk of {} rows failed ({}), inserting one by one ..", chunk.size(), ex.getMessage());
+      for (int i = 0; i < chunk.size(); i++) {
+        try {
+          pending.get(i).inserted(idExtractor.apply(insert.apply(chunk.get(i))));
+        } catch (RuntimeException rowEx) {
+          pending.get(i).failed(rowEx);
+        }
+      }
+    }
+
+    chunk.clear();
+    pending.clear();
+  }
+
+  /**
+   * @param json to read.
+   * @param name of the field.
+   * @return the value of the field.
+   */
+  private static JsonElement field(JsonObject json, String name) {
+    JsonElement element = json.get(name);
+    if (element == null || element.isJsonNull()) {
+      throw new IllegalArgumentException("Missing " + name + "!");
+    }
+    return element;
+  }
+
+  /**
+   * @param id of the last element of the page.
+   * @return the opaque cursor.
+   */
+  private static String encodeCursor(Long id) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(id).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @param cursor opaque.
+   * @return the id of the last element of the previous page.
+   */
+  private static Long decodeCursor(String cursor) {
+    try {
+      return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+    } catch (IllegalArgumentException ex) {
+      throw new BadRequestResponse("Invalid cursor!");
+    }
+  }
+
+  /**
+   * @param control the last of a page.
+   * @return the opaque cursor of the next page: the fecha and id of the control.
+   */
+  private static String encodeControlCursor(Control control) {
+    String cursor = ZonedDateTimeEpochType.encode(control.getFecha()) + ":" + control.getId();
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+  }
 
-    ctx.json(personas);
+  /**
+   * @param cursor opaque.
+   * @return the fecha and id of the last control of the previous page.
+   */
+  private static ControlCursor decodeControlCursor(String cursor) {
+    try {
+      String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+      if (parts.length != 2) {
+        throw new BadRequestResponse("Invalid cursor!");
+      }
+      return new ControlCursor(ZonedDateTimeEpochType.decode(Long.parseLong(parts[0])), Long.valueOf(parts[1]));
+    } catch (IllegalArgumentException | DateTimeException ex) {
+      throw new BadRequestResponse("Invalid cursor!");
+    }
+  }
 
+  /**
+   * The position of a control in the pages of controles.
+   */
+  private static final class ControlCursor {
+
+    /**
+     * The fecha of the control.
+     */
+    private final ZonedDateTime fecha;
+
+    /**
+     * The id of the control.
+     */
+    private final Long id;
+
+    /**
+     * The Constructor.
+     */
+    private ControlCursor(ZonedDateTime fecha, Long id) {
+      this.fecha = fecha;
+      this.id = id;
+    }
+
+  }
+
+  /**
+   * The result of a line of a bulk insert.
+   */
+  private static final class BulkResult {
+
+    /**
+     * The number of the line.
+     */
+    private final int line;
+
+    /**
+     * True if the element was inserted.
+     */
+    private boolean ok;
+
+    /**
+     * The id of the element inserted.
+     */
+    private Long id;
+
+    /**
+     * Why the element wasn't inserted.
+     */
+    private String error;
+
+    /**
+     * @param line number.
+     */
+    private BulkResult(int line) {
+      this.line = line;
+    }
+
+    /**
+     * @param id of the element inserted.
+     */
+    private void inserted(Long id) {
+      this.ok = true;
+      this.id = id;
+      this.error = null;
+    }
+
+    /**
+     * @param ex the reason.
+     */
+    private void failed(RuntimeException ex) {
+      this.ok = false;
+      this.id = null;
+      this.error = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+    }
   }
 }
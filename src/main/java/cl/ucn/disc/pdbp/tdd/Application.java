@@ -24,14 +24,25 @@
 
 package cl.ucn.disc.pdbp.tdd;
 
+import cl.ucn.disc.pdbp.tdd.model.dao.DuplicateKeyException;
+import cl.ucn.disc.pdbp.tdd.model.dao.QueryMetrics;
+import cl.ucn.disc.pdbp.tdd.model.json.ModelTypeAdapters;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.javalin.Javalin;
 import io.javalin.apibuilder.ApiBuilder;
+import io.javalin.core.compression.Gzip;
 import io.javalin.core.util.RouteOverviewPlugin;
 import io.javalin.plugin.json.JavalinJson;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Modifier;
 import java.time.ZonedDateTime;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +58,20 @@ public final class Application {
    */
   private static final Logger log = LoggerFactory.getLogger(Application.class);
 
+  /**
+   * The configuration in fivet.properties, replaced by the system properties.
+   */
+  private static final Properties PROPERTIES = loadProperties();
+
+  /**
+   * true in production: compact JSON, gzip and ETags, without the development logging.
+   */
+  private static final boolean PRODUCTION = Boolean.parseBoolean(PROPERTIES.getProperty("app.production", "false"));
+
+  /**
+   * The Gson used by the responses (pretty printed out of production).
+   */
+  private static final Gson GSON = gson(PRODUCTION);
 
   /**
    * Constructor.
@@ -55,6 +80,62 @@ public final class Application {
     //nothing
   }
 
+  /**
+   * @param production true for compact JSON.
+   * @return the Gson of the responses, the model written by the {@link ModelTypeAdapters} (without reflection).
+   */
+  private static Gson gson(boolean production) {
+    GsonBuilder builder = ModelTypeAdapters.register(new GsonBuilder())
+      .excludeFieldsWithModifiers(Modifier.TRANSIENT);
+    if (!production) {
+      builder.setPrettyPrinting();
+    }
+    return builder.create();
+  }
+
+  /**
+   * @return the configuration in fivet.properties, each key replaced by the system property with the same name.
+   */
+  private static Properties loadProperties() {
+
+    Properties properties = new Properties();
+    try (InputStream in = Application.class.getResourceAsStream("/fivet.properties")) {
+      if (in != null) {
+        properties.load(in);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+
+    for (String key : System.getProperties().stringPropertyNames()) {
+      if (key.startsWith("db.") || key.startsWith("app.")) {
+        properties.setProperty(key, System.getProperty(key));
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * @return the configuration of the application.
+   */
+  public static Properties getProperties() {
+    return PROPERTIES;
+  }
+
+  /**
+   * @return true in production.
+   */
+  public static boolean isProduction() {
+    return PRODUCTION;
+  }
+
+  /**
+   * @return the Gson used by the responses.
+   */
+  public static Gson getGson() {
+    return GSON;
+  }
+
   /**
    * This is what the program do when starting.
    *
@@ -62,26 +143,34 @@ public final class Application {
   public static void main(String[] args) {
 
     // Gson configuration
-    Gson gson = new GsonBuilder()
-              .setPrettyPrinting()
-              .excludeFieldsWithModifiers(Modifier.TRANSIENT)
-              .create();
+    JavalinJson.setFromJsonMapper(GSON::fromJson);
+    JavalinJson.setToJsonMapper(GSON::toJson);
 
-    JavalinJson.setFromJsonMapper(gson::fromJson);
-    JavalinJson.setToJsonMapper(gson::toJson);
-
-    log.debug("Starting app");
+    log.debug("Starting app (production: {})", PRODUCTION);
 
     // The Javalin application
     Javalin javalin = Javalin.create(config -> {
 
-      // enable extensive development logging for http and websocket
-      config.enableDevLogging();
-
-      // Measure the time
+      if (PRODUCTION) {
+        // Gzip of the responses over 1500 bytes (brotli needs the native jvm-brotli library), and ETags of the
+        // responses (304 if not modified)
+        config.compressionStrategy(null, new Gzip(Integer.parseInt(PROPERTIES.getProperty("app.gzipLevel", "6"))));
+        config.autogenerateEtags = true;
+      } else {
+        // enable extensive development logging for http and websocket
+        config.enableDevLogging();
+      }
+
+      // Log the time, and the statements run (the response is already written: the Server-Timing header is set by
+      // the after handler)
       config.requestLogger(((ctx, executionTimeMs) -> {
-        log.info("Served {} in {} ms.", ctx.fullUrl(), executionTimeMs);
-        ctx.header("Server-Timing", "total;dur=" + executionTimeMs);
+        QueryMetrics.Request request = ApiRestEndpoints.endRequest(ctx);
+        if (request == null) {
+          log.info("Served {} in {} ms.", ctx.fullUrl(), executionTimeMs);
+        } else {
+          log.info("Served {} in {} ms ({} statements in {} ms).", ctx.fullUrl(), executionTimeMs,
+            request.getStatements(), request.getMillis());
+        }
       }));
 
       // Enable routes helper
@@ -89,6 +178,10 @@ public final class Application {
 
     }).routes(() -> {
 
+      // The statements of each request
+      ApiBuilder.before(ApiRestEndpoints::beginRequest);
+      ApiBuilder.after(ApiRestEndpoints::serverTiming);
+
       // Version
       ApiBuilder.path("v1", () -> {
 
@@ -101,6 +194,11 @@ public final class Application {
           // POST -> /fichas
           ApiBuilder.post(ApiRestEndpoints::insertFicha);
 
+          // POST -> /fichas/_bulk (NDJSON)
+          ApiBuilder.path("_bulk", () -> {
+            ApiBuilder.post(ApiRestEndpoints::insertFichasBulk);
+          });
+
           // GET -> /fichas/find/{query}
           ApiBuilder.path("find/:query", () -> {
             ApiBuilder.get(ApiRestEndpoints::findFichas);
@@ -132,21 +230,29 @@ public final class Application {
 
         });
 
+        // controles path
+        ApiBuilder.path("controles", () -> {
+
+          // GET -> /controles?from={date}&to={date}
+          ApiBuilder.get(ApiRestEndpoints::getControlesProximos);
+
+        });
+
         // personas path
         ApiBuilder.path("personas", () -> {
 
           // GET -> /personas
+          // GET -> /personas?pageSize={size}&page={number}
+          // GET -> /personas?pageSize={size}&cursor={cursor}
           ApiBuilder.get(ApiRestEndpoints::getAllPersonas);
 
           // POST -> /personas
           ApiBuilder.post(ApiRestEndpoints::insertPersona);
 
-        });
-
-        // ROUTE -> personas?pageSize={size}&page={number}
-        ApiBuilder.path("personas?pageSize=:size&page=:number", () -> {
-
-          ApiBuilder.get(ApiRestEndpoints::getAllPersonasWithQuery);
+          // POST -> /personas/_bulk (NDJSON)
+          ApiBuilder.path("_bulk", () -> {
+            ApiBuilder.post(ApiRestEndpoints::insertPersonasBulk);
+          });
 
         });
 
@@ -154,6 +260,33 @@ public final class Application {
 
     }).start(7000);
 
+    // The database is busy: too many requests waiting
+    javalin.exception(RejectedExecutionException.class, (ex, ctx) -> {
+      log.warn("Request rejected, the database is busy: {}", ctx.fullUrl());
+      ctx.header("Retry-After", "1");
+      ctx.status(503).result("The database is busy, try again later");
+    });
+
+    // The database is too slow
+    javalin.exception(TimeoutException.class, (ex, ctx) -> {
+      log.warn("Request timed out: {} ({})", ctx.fullUrl(), ex.getMessage());
+      ctx.status(504).result("The database didn't answer in time");
+    });
+
+    // The row already exists
+    javalin.exception(DuplicateKeyException.class, (ex, ctx) -> {
+      log.debug("Conflict: {} ({})", ctx.fullUrl(), ex.getMessage());
+      ctx.status(409).result(ex.getMessage());
+    });
+
+    // The row doesn't exist
+    javalin.exception(NoSuchElementException.class, (ex, ctx) -> {
+      ctx.status(404).result(ex.getMessage());
+    });
+
+    // The metrics, in the format of Prometheus
+    javalin.get("/metrics", ApiRestEndpoints::getMetrics);
+
     // A simple route to show time
     javalin.get("/", ctx -> {
 
@@ -161,6 +294,12 @@ public final class Application {
       ctx.result("The Date: " + ZonedDateTime.now());
     });
 
+    // At exit: the requests, then the database
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      javalin.stop();
+      ApiRestEndpoints.close();
+    }, "shutdown"));
+
   }
 
 }
@@ -27,7 +27,9 @@ package cl.ucn.disc.pdbp.tdd;
 import cl.ucn.disc.pdbp.tdd.model.main.Control;
 import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
 import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import com.j256.ormlite.dao.CloseableIterator;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 
 /**
@@ -53,6 +55,22 @@ public interface Contratos {
    */
   Persona registrarPersona(Persona persona);
 
+  /**
+   * Contrato 01 (bulk) : Registrar Pacientes(Mascotas), all or none.
+   *
+   * @param fichas to save.
+   * @return the {@link List} of {@link Ficha} saved.
+   */
+  List<Ficha> registrarPacientes(List<Ficha> fichas);
+
+  /**
+   * Contrato 02 (bulk) : Registrar Personas, all or none.
+   *
+   * @param personas to save.
+   * @return the {@link List} of {@link Persona} saved.
+   */
+  List<Persona> registrarPersonas(List<Persona> personas);
+
   /**
    * Contrato 03 : Buscar Fichas con filtro.
    *
@@ -67,6 +85,14 @@ public interface Contratos {
    */
   List<Ficha> getAllFichas();
 
+  /**
+   *
+   * @param lastId , id of the last ficha of the previous page (null for the first page)
+   * @param pageSize , amount of fichas
+   * @return the {@link List} of {@link Ficha} after lastId, ordered by id
+   */
+  List<Ficha> getFichasAfter(Long lastId, Integer pageSize);
+
   /**
    *
    * @return all the personas
@@ -80,6 +106,16 @@ public interface Contratos {
    */
   List<Control> getAllControlesFromFicha(Long numero);
 
+  /**
+   *
+   * @param numero de la ficha
+   * @param beforeFecha fecha of the last control of the previous page, as read (null for the first page)
+   * @param beforeId id of the last control of the previous page (null for the first page)
+   * @param limit max amount of controles
+   * @return a page of the controles with fecha of the ficha ordered by fecha desc (and id desc)
+   */
+  List<Control> getControlesFromFicha(Long numero, ZonedDateTime beforeFecha, Long beforeId, int limit);
+
   /**
    *
    * @param idDuenio to find
@@ -101,14 +137,59 @@ public interface Contratos {
    */
   Ficha getFicha(Long idFicha);
 
+  /**
+   *
+   * @param numero of the ficha
+   * @return false if no ficha with the numero was seen by this instance (without query), true if maybe one exists.
+   *   A hint only: the fichas written by other instances aren't seen.
+   */
+  boolean mightExistFicha(long numero);
+
+  /**
+   *
+   * @param rut of the persona, compact or formatted (15.253.287-3)
+   * @return false if no persona with the rut was seen by this instance (without query), true if maybe one exists.
+   *   A hint only: the personas written by other instances aren't seen.
+   */
+  boolean mightExistPersona(String rut);
+
   /**
    *
    * @param pageSize , amount of personas
-   * @param page , index of the list
+   * @param page , index of the page, from 0
    * @return the {@link List} of {@link Persona}
    */
   List<Persona> getPersonas(Integer pageSize, Integer page);
 
+  /**
+   *
+   * @param lastId , id of the last persona of the previous page (null for the first page)
+   * @param pageSize , amount of personas
+   * @return the {@link List} of {@link Persona} after lastId
+   */
+  List<Persona> getPersonasAfter(Long lastId, Integer pageSize);
+
+  /**
+   *
+   * @param from first fechaProximoControl (inclusive)
+   * @param to last fechaProximoControl (exclusive)
+   * @return a iterator over the controles with fechaProximoControl in [from, to) ordered by fechaProximoControl,
+   *   it must be closed
+   */
+  CloseableIterator<Control> getControlesProximos(ZonedDateTime from, ZonedDateTime to);
+
+  /**
+   *
+   * @param from first fechaProximoControl (inclusive)
+   * @param to last fechaProximoControl (exclusive)
+   * @param afterFecha fechaProximoControl of the last control of the previous page, as read (null for the first page)
+   * @param afterId id of the last control of the previous page (null for the first page)
+   * @param limit max amount of controles
+   * @return a page of the controles with fechaProximoControl in [from, to) ordered by fechaProximoControl (and id)
+   */
+  List<Control> getControlesProximos(ZonedDateTime from, ZonedDateTime to, ZonedDateTime afterFecha, Long afterId,
+                                     int limit);
+
   /**
    *
    * @param control to insert
@@ -24,14 +24,34 @@
 
 package cl.ucn.disc.pdbp.tdd;
 
+import cl.ucn.disc.pdbp.tdd.model.dao.CachingRepository;
+import cl.ucn.disc.pdbp.tdd.model.dao.DatabaseConfig;
+import cl.ucn.disc.pdbp.tdd.model.dao.DuplicateRutCheck;
+import cl.ucn.disc.pdbp.tdd.model.dao.DuplicateKeyException;
+import cl.ucn.disc.pdbp.tdd.model.dao.IndexAdvisor;
+import cl.ucn.disc.pdbp.tdd.model.dao.MeteredConnectionSource;
+import cl.ucn.disc.pdbp.tdd.model.dao.Migrator;
+import cl.ucn.disc.pdbp.tdd.model.dao.PooledConnectionSource;
+import cl.ucn.disc.pdbp.tdd.model.dao.QueryMetrics;
 import cl.ucn.disc.pdbp.tdd.model.dao.Repository;
 import cl.ucn.disc.pdbp.tdd.model.dao.RepositoryOrmLite;
+import cl.ucn.disc.pdbp.tdd.model.dao.RoutingConnectionSource;
+import cl.ucn.disc.pdbp.tdd.model.dao.RutNumeroMigration;
+import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeMigration;
 import cl.ucn.disc.pdbp.tdd.model.main.Control;
 import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
 import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import cl.ucn.disc.pdbp.tdd.model.search.FichaIndex;
+import cl.ucn.disc.pdbp.tdd.model.utils.BloomFilter;
 import cl.ucn.disc.pdbp.tdd.model.utils.Entity;
-import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import cl.ucn.disc.pdbp.tdd.model.utils.Validation;
+import com.j256.ormlite.dao.CloseableIterator;
+import com.j256.ormlite.dao.GenericRawResults;
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.field.SqlType;
 import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.SelectArg;
+import com.j256.ormlite.stmt.Where;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.TableUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -39,22 +59,42 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.sql.SQLException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * Implementation of Contratos
  *
  * @author Miguel León Garrido
  */
-public class ContratosImpl implements Contratos {
+public class ContratosImpl implements Contratos, Closeable {
 
   /**
    * The Logger.
    */
   private static final Logger log = LoggerFactory.getLogger(ContratosImpl.class);
 
+  /**
+   * The max number of ids in a IN clause.
+   */
+  private static final int IN_CHUNK_SIZE = 500;
+
+  /**
+   * The query of {@link #buscarFicha(String)} in the database: by name of paciente, rut and name of duenio.
+   */
+  private static final String BUSCAR_FICHA = "buscarFicha";
+
+  /**
+   * The query of {@link #buscarFicha(String)} in the database, with the numero.
+   */
+  private static final String BUSCAR_FICHA_NUMERO = "buscarFichaNumero";
+
   /**
    * Connection to DataBase.
    */
@@ -76,38 +116,280 @@ public class ContratosImpl implements Contratos {
   private Repository<Control, Long> repoControl;
 
   /**
-   * The Constructor.
+   * The in memory index used by {@link #buscarFicha(String)}, null if disabled.
+   */
+  private FichaIndex fichaIndex;
+
+  /**
+   * The bloom filter of the numeros of the fichas, null if disabled.
+   */
+  private BloomFilter numeroFilter;
+
+  /**
+   * The bloom filter of the ruts of the personas, null if disabled.
+   */
+  private BloomFilter rutFilter;
+
+  /**
+   * True if this instance is the only writer: a negative of the bloom filters is certain, without query.
+   */
+  private final boolean singleWriter;
+
+  /**
+   * The migrations of the schema.
+   */
+  private Migrator migrator;
+
+  /**
+   * The number of writes done by this instance, changes when the data changes.
+   */
+  private final AtomicLong writes = new AtomicLong();
+
+  /**
+   * The Constructor (single connection, without search index).
    *
    * @param databaseUrl jdbc string to connect to backend
    */
   public ContratosImpl(String databaseUrl) {
+    this(new DatabaseConfig(databaseUrl));
+  }
+
+  /**
+   * The Constructor.
+   *
+   * @param config of the connection to backend (single or pooled) and of the search index.
+   */
+  public ContratosImpl(DatabaseConfig config) {
+    this(config, config != null && config.isSearchIndex());
+  }
+
+  /**
+   * The Constructor.
+   *
+   * @param config of the connection to backend (single or pooled)
+   * @param searchIndex true to answer {@link #buscarFicha(String)} with the in memory {@link FichaIndex}, only with a
+   *   single writer (it doesn't see the writes of other instances).
+   */
+  public ContratosImpl(DatabaseConfig config, boolean searchIndex) {
 
     // Verifying Nullity.
-    if(databaseUrl == null) {
-      throw new IllegalArgumentException("Database URL is Null!");
+    if(config == null) {
+      throw new IllegalArgumentException("Database config is Null!");
     }
 
+    this.singleWriter = config.isSingleWriter();
+
     try {
       // The connection to database.
-      this.connectionSource = new JdbcConnectionSource(databaseUrl);
+      this.connectionSource = config.createMeteredConnectionSource();
 
-      // Creating tables.
-      TableUtils.createTableIfNotExists(connectionSource, Ficha.class);
-      TableUtils.createTableIfNotExists(connectionSource, Persona.class);
-      TableUtils.createTableIfNotExists(connectionSource, Control.class);
+      // The schema, by versions.
+      this.migrator = config.createMigrator(this.connectionSource);
+      this.migrate(this.migrator);
 
       // The repositories.
-      this.repoFicha = new RepositoryOrmLite<>(this.connectionSource, Ficha.class);
-      this.repoPersona = new RepositoryOrmLite<>(this.connectionSource, Persona.class);
-      this.repoControl = new RepositoryOrmLite<>(this.connectionSource, Control.class);
+      this.repoFicha = cached(new RepositoryOrmLite<>(this.connectionSource, Ficha.class), Ficha::getId, config);
+      this.repoPersona = cached(new RepositoryOrmLite<>(this.connectionSource, Persona.class), Persona::getId, config);
+      this.repoControl = cached(new RepositoryOrmLite<>(this.connectionSource, Control.class), Control::getId, config);
+
+      // The queries of the hot paths, the SQL is generated once.
+      this.repoFicha.prepare(BUSCAR_FICHA, query -> this.buscarFichaQuery(query, false));
+      this.repoFicha.prepare(BUSCAR_FICHA_NUMERO, query -> this.buscarFichaQuery(query, true));
+
+      // The search index and the bloom filters, built from the primary (a replica can be behind).
+      RoutingConnectionSource.stickToPrimary();
+      if (searchIndex && !this.singleWriter) {
+        log.warn("The search index needs a single writer, searching in the database.");
+      } else if (searchIndex) {
+        this.fichaIndex = new FichaIndex();
+        this.fichaIndex.rebuild(this.repoFicha, this.repoPersona);
+        log.debug("Search index built with {} fichas.", this.fichaIndex.size());
+      }
+      if (config.getBloomExpectedInsertions() > 0) {
+        this.buildFilters(config.getBloomExpectedInsertions(), config.getBloomFpp());
+      }
 
     } catch (SQLException throwables) {
-      throwables.printStackTrace();
+      throw new RuntimeException("Can't open the database " + config.getUrl(), throwables);
+    } finally {
+      RoutingConnectionSource.clearStickiness();
+    }
+  }
+
+  /**
+   * The versions of the schema. A new version (a column, an index, a new format) is added at the end, never changed.
+   *
+   * @param migrator to apply the versions.
+   */
+  private void migrate(Migrator migrator) throws SQLException {
+
+    // The dates saved as strings (old databases) to numbers, before the indexes over them are created.
+    ZonedDateTimeMigration dates = new ZonedDateTimeMigration(this.connectionSource);
+    migrator.add(1, "The dates as numbers", () -> {
+      dates.migrate("ficha", "fechaNacimiento");
+      dates.migrate("control", "fecha");
+      dates.migrate("control", "fechaProximoControl");
+    });
+
+    // The body of the ruts as number (old databases), before the unique index over it is created.
+    migrator.addBackfill(2, "The rutNumero of the personas", new RutNumeroMigration(this.connectionSource), false);
+
+    // The tables (and the indexes missing in the old databases). The ruts repeated in the old databases are reported
+    // before, the unique indexes can't be created over them.
+    DuplicateRutCheck duplicates = new DuplicateRutCheck(this.connectionSource);
+    migrator.add(3, "The tables", () -> {
+      duplicates.migrate();
+      TableUtils.createTableIfNotExists(this.connectionSource, Ficha.class);
+      TableUtils.createTableIfNotExists(this.connectionSource, Persona.class);
+      TableUtils.createTableIfNotExists(this.connectionSource, Control.class);
+    });
+
+    // The indexes of the lookups by foreign key and by name of paciente (in the annotations of the new databases).
+    migrator.addIndex(4, "ficha", "ficha_duenio_idx", false, "duenio_id");
+    migrator.addIndex(5, "ficha", "ficha_nombrePaciente_idx", false, "nombrePaciente");
+    migrator.addIndex(6, "control", "control_ficha_fecha_idx", false, "ficha_id", "fecha");
+
+    migrator.migrate();
+
+    // The indexes still missing (no queries run yet)
+    this.adviseIndexes().forEach(advice -> log.warn("{}.", advice));
+  }
+
+  /**
+   * The indexes missing: the foreign keys without index and the distinct selects run by this instance (recorded by
+   * the {@link QueryMetrics}, none if not metered) reading all the rows of a table.
+   *
+   * @return the advices, a line each (empty if none).
+   */
+  public List<String> adviseIndexes() throws SQLException {
+    QueryMetrics metrics = this.getQueryMetrics();
+    return new IndexAdvisor(this.connectionSource).advise(Arrays.asList(Ficha.class, Persona.class, Control.class),
+      metrics != null ? metrics.getQueries() : Collections.emptySet());
+  }
+
+  /**
+   * Build the bloom filters of numero and rut, sized for the rows in the database (twice) or the keys expected.
+   *
+   * @param expectedInsertions the keys expected.
+   * @param fpp the false positive probability.
+   */
+  private void buildFilters(long expectedInsertions, double fpp) throws SQLException {
+
+    QueryBuilder<Ficha, Long> numeros = this.repoFicha.getQuery().selectColumns("numero");
+    this.numeroFilter = new BloomFilter(Math.max(expectedInsertions, 2 * numeros.countOf()), fpp);
+
+    QueryBuilder<Persona, Long> ruts = this.repoPersona.getQuery().selectColumns("rut");
+    this.rutFilter = new BloomFilter(Math.max(expectedInsertions, 2 * ruts.countOf()), fpp);
+
+    // Only the keys are read
+    try (GenericRawResults<String[]> rows = numeros.queryRaw()) {
+      for (String[] row : rows) {
+        this.numeroFilter.put(Long.parseLong(row[0]));
+      }
+    } catch (IOException ex) {
+      throw new SQLException("Can't close the numeros", ex);
+    }
+    try (GenericRawResults<String[]> rows = ruts.queryRaw()) {
+      for (String[] row : rows) {
+        this.rutFilter.put(row[0]);
+      }
+    } catch (IOException ex) {
+      throw new SQLException("Can't close the ruts", ex);
+    }
+
+    log.debug("Bloom filters built: numeros {}, ruts {}.", this.numeroFilter.getMetrics(), this.rutFilter.getMetrics());
+  }
+
+  /**
+   * @return the number of writes done by this instance (the data read can change only when it changes).
+   */
+  public long getWriteCount() {
+    return this.writes.get();
+  }
+
+  /**
+   * @return the metrics of the writes, the bloom filters, the caches, the statements, the pool of connections, the
+   *   routing to the replicas and the migrations, by name.
+   */
+  public Map<String, Number> getMetrics() {
+    Map<String, Number> metrics = new LinkedHashMap<>();
+    metrics.put("writes_total", this.writes.get());
+    if (this.numeroFilter != null) {
+      this.numeroFilter.getMetrics().forEach((name, value) -> metrics.put("bloom_numero_" + name, value));
+      this.rutFilter.getMetrics().forEach((name, value) -> metrics.put("bloom_rut_" + name, value));
+    }
+    if (this.repoFicha instanceof CachingRepository) {
+      ((CachingRepository<?, ?>) this.repoFicha).getMetrics()
+        .forEach((name, value) -> metrics.put("cache_ficha_" + name, value));
+      ((CachingRepository<?, ?>) this.repoPersona).getMetrics()
+        .forEach((name, value) -> metrics.put("cache_persona_" + name, value));
+      ((CachingRepository<?, ?>) this.repoControl).getMetrics()
+        .forEach((name, value) -> metrics.put("cache_control_" + name, value));
+    }
+    ConnectionSource source = this.connectionSource;
+    if (source instanceof MeteredConnectionSource) {
+      ((MeteredConnectionSource) source).getQueryMetrics().getMetrics()
+        .forEach((name, value) -> metrics.put("query_" + name, value));
+      source = ((MeteredConnectionSource) source).getConnectionSource();
+    }
+    if (source instanceof PooledConnectionSource) {
+      ((PooledConnectionSource) source).getMetrics().forEach((name, value) -> metrics.put("pool_" + name, value));
     }
+    if (source instanceof RoutingConnectionSource) {
+      ((RoutingConnectionSource) source).getMetrics().forEach((name, value) -> metrics.put("routing_" + name, value));
+    }
+    if (this.migrator != null) {
+      this.migrator.getMetrics().forEach((name, value) -> metrics.put("migration_" + name, value));
+    }
+    return metrics;
   }
 
   /**
-   * Contrato 01.
+   * Stop the backfills in the background (waiting for their chunk running), log the indexes missing for the queries
+   * run and close the connections.
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.migrator != null) {
+      this.migrator.close();
+    }
+
+    // The indexes missing for the queries run
+    try {
+      this.adviseIndexes().forEach(advice -> log.warn("{}.", advice));
+    } catch (SQLException ex) {
+      log.warn("Can't advise the indexes: {}", ex.getMessage());
+    }
+    this.connectionSource.close();
+  }
+
+  /**
+   * @return the metrics of the statements, null if not metered.
+   */
+  public QueryMetrics getQueryMetrics() {
+    if (this.connectionSource instanceof MeteredConnectionSource) {
+      return ((MeteredConnectionSource) this.connectionSource).getQueryMetrics();
+    }
+    return null;
+  }
+
+  /**
+   * @param repository to cache.
+   * @param idExtractor to get the id of a T.
+   * @param config with the size of the cache.
+   * @return the repository wrapped with a {@link CachingRepository}, or the same repository if the cache is disabled.
+   */
+  private static <T> Repository<T, Long> cached(RepositoryOrmLite<T, Long> repository, Function<T, Long> idExtractor,
+                                                DatabaseConfig config) {
+    if (config.getCacheSize() <= 0) {
+      return repository;
+    }
+    return new CachingRepository<>(repository, idExtractor, repository::copy, config.getCacheSize(),
+        config.getCacheTtlMillis());
+  }
+
+  /**
+   * Contrato 01: the unique index of numero rejects the ficha repeated.
    *
    * @param ficha to save.
    * @return the {@link Ficha} saved.
@@ -119,24 +401,16 @@ public class ContratosImpl implements Contratos {
       throw new IllegalArgumentException("ficha is null!!");
     }
 
-    // Validate if the ficha already exists
-    try {
-
-      // Make a query to check if a ficha with the same numero exists
-      QueryBuilder<Ficha, Long> queryFichaNumero = this.repoFicha.getQuery();
-      queryFichaNumero.where()
-        .like("numero",ficha.getNumero());
-
-      // if exists, throws an error
-      if(queryFichaNumero.countOf() > 0)
-        throw new RuntimeException("The ficha already exists");
-
-    } catch (SQLException throwables) {
-      throwables.printStackTrace();
+    // The filter first: a ficha not inserted is a false positive, never a false negative
+    if (this.numeroFilter != null) {
+      this.numeroFilter.put(ficha.getNumero());
     }
 
     // Inserting the ficha in the DataBase
-    if(this.repoFicha.create(ficha)) {
+    if(create(this.repoFicha, ficha, "The ficha already exists")) {
+      if (this.fichaIndex != null) {
+        this.fichaIndex.putFicha(ficha);
+      }
       return ficha;
     }
 
@@ -146,7 +420,7 @@ public class ContratosImpl implements Contratos {
   }
 
   /**
-   * Contrato 02.
+   * Contrato 02: the unique index of rut rejects the person repeated.
    *
    * @param persona to save.
    * @return the {@link Persona} saved.
@@ -159,24 +433,16 @@ public class ContratosImpl implements Contratos {
       throw new IllegalArgumentException("persona is null!!");
     }
 
-    // Validate if the person already exists
-    try {
-
-      // Make a query to check if a person with the same rut exists
-      QueryBuilder<Persona, Long> queryPersonaRut = this.repoPersona.getQuery();
-      queryPersonaRut.where()
-                      .like("rut",persona.getRut());
-
-      // if exists, throws an error
-      if(queryPersonaRut.countOf() > 0)
-        throw new RuntimeException("The person already exists");
-
-    } catch (SQLException throwables) {
-      throwables.printStackTrace();
+    // The filter first: a persona not inserted is a false positive, never a false negative
+    if (this.rutFilter != null) {
+      this.rutFilter.put(persona.getRut());
     }
 
     // Inserting the person in the DataBase
-    if(this.repoPersona.create(persona)) {
+    if(create(this.repoPersona, persona, "The person already exists")) {
+      if (this.fichaIndex != null) {
+        this.fichaIndex.putPersona(persona);
+      }
       return persona;
     }
 
@@ -184,11 +450,112 @@ public class ContratosImpl implements Contratos {
     throw new RuntimeException("The person couldn't be inserted");
   }
 
+  /**
+   * Contrato 01 (bulk): the fichas are inserted in a single transaction, a numero repeated (in the list or in the
+   * database) rejects all of them.
+   *
+   * @param fichas to save.
+   * @return the {@link List} of {@link Ficha} saved.
+   */
+  @Override
+  public List<Ficha> registrarPacientes(List<Ficha> fichas) {
+
+    // Nullity
+    if(fichas == null || fichas.contains(null)) {
+      throw new IllegalArgumentException("fichas is null!!");
+    }
+
+    // The filter first
+    if (this.numeroFilter != null) {
+      fichas.forEach(ficha -> this.numeroFilter.put(ficha.getNumero()));
+    }
+
+    // Inserting the fichas in the DataBase
+    if(createAll(this.repoFicha, fichas, "The ficha already exists") == fichas.size()) {
+      if (this.fichaIndex != null) {
+        fichas.forEach(this.fichaIndex::putFicha);
+      }
+      return fichas;
+    }
+
+    //The fichas weren't inserted
+    throw new RuntimeException("The fichas couldn't be inserted");
+  }
+
+  /**
+   * Contrato 02 (bulk): the personas are inserted in a single transaction, a rut repeated (in the list or in the
+   * database) rejects all of them.
+   *
+   * @param personas to save.
+   * @return the {@link List} of {@link Persona} saved.
+   */
+  @Override
+  public List<Persona> registrarPersonas(List<Persona> personas) {
+
+    // Nullity
+    if(personas == null || personas.contains(null)) {
+      throw new IllegalArgumentException("personas is null!!");
+    }
+
+    // The filter first
+    if (this.rutFilter != null) {
+      personas.forEach(persona -> this.rutFilter.put(persona.getRut()));
+    }
+
+    // Inserting the personas in the DataBase
+    if(createAll(this.repoPersona, personas, "The person already exists") == personas.size()) {
+      if (this.fichaIndex != null) {
+        personas.forEach(this.fichaIndex::putPersona);
+      }
+      return personas;
+    }
+
+    //The personas weren't inserted
+    throw new RuntimeException("The personas couldn't be inserted");
+  }
+
+  /**
+   * @param repository to insert.
+   * @param t to save.
+   * @param duplicateMessage the message if a unique index rejects t.
+   * @return true if t was inserted.
+   */
+  private <T> boolean create(Repository<T, Long> repository, T t, String duplicateMessage) {
+    try {
+      boolean created = repository.create(t);
+      this.writes.incrementAndGet();
+      return created;
+    } catch (DuplicateKeyException ex) {
+      throw new DuplicateKeyException(duplicateMessage, ex);
+    }
+  }
+
+  /**
+   * @param repository to insert.
+   * @param ts to save, all or none.
+   * @param duplicateMessage the message if a unique index rejects any t.
+   * @return the number of T inserted.
+   */
+  private <T> int createAll(Repository<T, Long> repository, List<T> ts, String duplicateMessage) {
+    try {
+      int created = repository.createAll(ts);
+      this.writes.incrementAndGet();
+      return created;
+    } catch (DuplicateKeyException ex) {
+      throw new DuplicateKeyException(duplicateMessage, ex);
+    }
+  }
+
   /**
    * Contrato 03.
    *
+   * The search runs in the {@link FichaIndex} when the query is long enough, loading only the fichas found. Otherwise
+   * it runs as a single statement: the ficha conditions (numero, nombrePaciente) and the duenio conditions
+   * (rut, nombre) are OR'ed over one join, so every ficha comes back at most once and there is nothing to dedup. The
+   * rut matches by the rut (compact or formatted) or by the prefix of the body, as ranges of rutNumero.
+   *
    * @param query to search.
-   * @return the {@link List} of {@link Ficha}
+   * @return the {@link List} of {@link Ficha}, ordered by match type (numero, rut, paciente, duenio).
    */
   @Override
   public List<Ficha> buscarFicha(String query) {
@@ -198,55 +565,173 @@ public class ContratosImpl implements Contratos {
       throw new IllegalArgumentException("Query is null!!");
     }
 
+    // The numero, only when the query is a number, and the ruts matched (the rut or their prefix)
+    Long numero = parseNumero(query);
+    long[] ruts = Validation.rutRanges(query);
+
+    // The ids of the fichas found by the index, null if the index can't answer
+    Set<Long> ids = this.fichaIndex == null ? null : this.fichaIndex.search(query);
+
     List<Ficha> fichas = new ArrayList<>();
 
-    try{
-      // Find by Number
-      if (StringUtils.isNumeric(query)) {
+    try {
+      if (ids != null) {
+        fichas.addAll(this.findFichas(ids));
+      } else {
+        fichas.addAll(this.findFichas(query, numero, ruts));
+      }
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+
+    // The duenios of all the fichas, in one query
+    this.repoFicha.fetchForeign(fichas, "duenio");
 
-        // 1. The fichas with the given number
-        fichas.addAll(this.repoFicha.findAll("numero",query));
+    // Ranking by match type (stable, so the id order is kept inside each rank)
+    fichas.sort(Comparator.comparingInt(ficha -> rank(ficha, numero, ruts, query)));
+
+    return fichas;
+  }
+
+  /**
+   * Load the fichas found by the {@link FichaIndex}.
+   *
+   * @param ids of the fichas.
+   * @return the {@link List} of {@link Ficha} ordered by id.
+   */
+  private List<Ficha> findFichas(Set<Long> ids) throws SQLException {
+
+    List<Ficha> fichas = new ArrayList<>(ids.size());
+
+    // In chunks to keep the IN clause short
+    List<Long> chunk = new ArrayList<>(IN_CHUNK_SIZE);
+    for (Iterator<Long> it = ids.iterator(); it.hasNext(); ) {
+      chunk.add(it.next());
+      if (chunk.size() == IN_CHUNK_SIZE || !it.hasNext()) {
+        fichas.addAll(this.repoFicha.getQuery().where().in("id", chunk).query());
+        chunk.clear();
       }
+    }
 
-      // 3. Fing by rut of Duenio
-      QueryBuilder<Persona, Long> queryPersonaRut = this.repoPersona.getQuery();
-      queryPersonaRut.where().like("rut","%"+query+"%");
+    fichas.sort(Comparator.comparing(Ficha::getId));
+    return fichas;
+  }
 
-      fichas.addAll(this.repoFicha
-        .getQuery()
-        .join(queryPersonaRut)
-        .query());
+  /**
+   * Find the fichas in the database with a single statement (prepared).
+   *
+   * @param query to search.
+   * @param numero of the query, can be null.
+   * @param ruts the ranges of rutNumero of the query.
+   * @return the {@link List} of {@link Ficha} ordered by id.
+   */
+  private List<Ficha> findFichas(String query, Long numero, long[] ruts) {
 
-      // 2. Find by name of Paciente
-      fichas.addAll(this.repoFicha
-                    .getQuery()
-                    .where()
-                    .like("nombrePaciente","%"+ query +"%")
-                    .query());
+    // Ignoring case, as the FichaIndex
+    String like = "%" + query.toLowerCase(Locale.ROOT) + "%";
 
-      // 4. Find by name of duenio
-      QueryBuilder<Persona, Long> queryPersonaNombre = this.repoPersona.getQuery();
-      queryPersonaNombre.where().like("nombre","%"+query+"%");
+    // The arguments in the order of the SQL
+    List<Object> args = new ArrayList<>(3 + ruts.length);
+    if (numero != null) {
+      args.add(numero);
+    }
+    args.add(like);
+    for (long rut : ruts) {
+      args.add(rut);
+    }
+    args.add(like);
 
-      // run the join
-      fichas.addAll(this.repoFicha
-                    .getQuery()
-                    .join(queryPersonaNombre)
-                    .query());
+    return this.repoFicha.query(numero != null ? BUSCAR_FICHA_NUMERO : BUSCAR_FICHA, args.toArray());
+  }
 
+  /**
+   * Build the query of {@link #findFichas(String, Long, long[])}, the arguments are: the numero (if used), the name
+   * of paciente, the ranges of rutNumero ({@link Validation#rutRanges(String)}) and the name of duenio.
+   *
+   * @param queryFicha to build.
+   * @param byNumero true to find by numero too.
+   */
+  private void buscarFichaQuery(QueryBuilder<Ficha, Long> queryFicha, boolean byNumero) throws SQLException {
 
-    }catch (SQLException throwables) {
-      throwables.printStackTrace();
+    // 1. and 2. Find by numero and by name of Paciente
+    Where<Ficha, Long> whereFicha = queryFicha.where();
+    if (byNumero) {
+      whereFicha.eq("numero", new SelectArg()).or();
     }
+    whereFicha.raw(this.lowerLike("ficha", "nombrePaciente"), new SelectArg(SqlType.STRING, null));
 
-    // Eliminacion de fichas repetidas.
-    List<Ficha> fichasNoRepeat = new ArrayList<>(
-      fichas.stream().collect(
-        Collectors.toCollection(() -> new TreeSet<>(Comparator.comparing(Ficha::getId)))
-      )
-    );
+    // 3. and 4. Find by rut and by name of Duenio
+    QueryBuilder<Persona, Long> queryPersona = this.repoPersona.getQuery();
+    Where<Persona, Long> wherePersona = queryPersona.where();
+    for (int i = 0; i < Validation.RUT_RANGES; i++) {
+      wherePersona.ge("rutNumero", new SelectArg()).and().lt("rutNumero", new SelectArg());
+    }
+    wherePersona.raw(this.lowerLike("persona", "nombre"), new SelectArg(SqlType.STRING, null));
+    wherePersona.or(Validation.RUT_RANGES + 1);
 
-    return fichasNoRepeat;
+    // the join, OR'ing both sides
+    queryFicha
+      .join(queryPersona, QueryBuilder.JoinType.INNER, QueryBuilder.JoinWhereOperation.OR)
+      .orderBy("id", true);
+  }
+
+  /**
+   * @param table of the column.
+   * @param column to match.
+   * @return the condition LOWER(table.column) LIKE ?, ignoring case in every backend (LIKE is case sensitive in H2).
+   */
+  private String lowerLike(String table, String column) {
+    DatabaseType databaseType = this.connectionSource.getDatabaseType();
+    StringBuilder sb = new StringBuilder("LOWER(");
+    databaseType.appendEscapedEntityName(sb, table);
+    sb.append('.');
+    databaseType.appendEscapedEntityName(sb, column);
+    return sb.append(") LIKE ?").toString();
+  }
+
+  /**
+   * @param query to parse.
+   * @return the numero of ficha in the query, null if the query isn't a number.
+   */
+  private static Long parseNumero(String query) {
+
+    if (!StringUtils.isNumeric(query)) {
+      return null;
+    }
+
+    try {
+      return Long.valueOf(query);
+    } catch (NumberFormatException ex) {
+      // Too long to be a numero
+      return null;
+    }
+  }
+
+  /**
+   * The rank of a ficha found by {@link #buscarFicha(String)}, lower is better.
+   *
+   * @param ficha found.
+   * @param numero of the query, can be null.
+   * @param ruts the ranges of rutNumero of the query.
+   * @param query to search.
+   * @return 0 numero, 1 rut of duenio, 2 name of paciente, 3 name of duenio.
+   */
+  private static int rank(Ficha ficha, Long numero, long[] ruts, String query) {
+
+    if (numero != null && ficha.getNumero() == numero) {
+      return 0;
+    }
+
+    Persona duenio = ficha.getDuenio();
+    if (duenio != null && Validation.isRutInRanges(ruts, duenio.getRutNumero())) {
+      return 1;
+    }
+
+    if (StringUtils.containsIgnoreCase(ficha.getNombrePaciente(), query)) {
+      return 2;
+    }
+
+    return 3;
   }
 
   /**
@@ -255,7 +740,25 @@ public class ContratosImpl implements Contratos {
    */
   @Override
   public List<Ficha> getAllFichas() {
-    return repoFicha.findAll();
+    List<Ficha> fichas = repoFicha.findAll();
+    repoFicha.fetchForeign(fichas, "duenio");
+    return fichas;
+  }
+
+  /**
+   * @param lastId   , id of the last ficha of the previous page (null for the first page)
+   * @param pageSize , amount of fichas
+   * @return the {@link List} of {@link Ficha} after lastId, ordered by id
+   */
+  @Override
+  public List<Ficha> getFichasAfter(Long lastId, Integer pageSize) {
+
+    // Nullity and ranges
+    if(pageSize == null || pageSize < 0) {
+      throw new IllegalArgumentException("Invalid pageSize!!");
+    }
+
+    return repoFicha.findAllAfter(lastId, pageSize);
   }
 
   /**
@@ -274,12 +777,52 @@ public class ContratosImpl implements Contratos {
    */
   @Override
   public List<Control> getAllControlesFromFicha(Long numero) {
+    return new ArrayList<>(this.findFicha(numero).getControles());
+  }
 
-    //Finding the ficha
-    List<Ficha> fichas = repoFicha.findAll("numero",Long.toString(numero));
+  /**
+   * Keyset pagination: only the page is read, from the row after the last control of the previous page.
+   *
+   * @param numero      de la ficha
+   * @param beforeFecha fecha of the last control of the previous page, as read (null for the first page)
+   * @param beforeId    id of the last control of the previous page (null for the first page)
+   * @param limit       max amount of controles
+   * @return a page of the controles with fecha of the ficha ordered by fecha desc (and id desc)
+   */
+  @Override
+  public List<Control> getControlesFromFicha(Long numero, ZonedDateTime beforeFecha, Long beforeId, int limit) {
 
-    //Ficha index should be 0(only one)
-    return new ArrayList<>(fichas.get(0).getControles());
+    // Nullity
+    if(limit < 0 || (beforeFecha == null) != (beforeId == null)) {
+      throw new IllegalArgumentException("Invalid limit or before!!");
+    }
+
+    Ficha ficha = this.findFicha(numero);
+    try {
+      QueryBuilder<Control, Long> query = this.repoControl.getQuery();
+      query.orderBy("fecha", false).orderBy("id", false).limit((long) limit);
+
+      Where<Control, Long> where = query.where();
+      where.eq("ficha_id", ficha.getId());
+      where.isNotNull("fecha");
+
+      // After the last control of the previous page: fecha < before or (fecha = before and id < beforeId), with the
+      // fecha as read (the offset is part of the value saved)
+      if (beforeFecha != null) {
+        where.lt("fecha", beforeFecha);
+        where.eq("fecha", beforeFecha);
+        where.lt("id", beforeId);
+        where.and(2);
+        where.or(2);
+        where.and(3);
+      } else {
+        where.and(2);
+      }
+
+      return query.query();
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
   }
 
   /**
@@ -299,12 +842,7 @@ public class ContratosImpl implements Contratos {
    */
   @Override
   public Persona getPersonaFromFicha(Long numero) {
-
-    //Finding the ficha
-    List<Ficha> fichas = repoFicha.findAll("numero",Long.toString(numero));
-
-    //Ficha index should be 0(only one), so we return the duenio
-    return fichas.get(0).getDuenio();
+    return repoPersona.findById(this.findFicha(numero).getDuenio().getId());
   }
 
   /**
@@ -313,44 +851,166 @@ public class ContratosImpl implements Contratos {
    */
   @Override
   public Ficha getFicha(Long numeroFicha) {
-    return repoFicha.findAll("numero",Long.toString(numeroFicha)).get(0);
+    Ficha ficha = this.findFicha(numeroFicha);
+    repoFicha.fetchForeign(Collections.singletonList(ficha), "duenio");
+    return ficha;
+  }
+
+  /**
+   * @param numero of the ficha.
+   * @return the ficha, without query if this instance is the only writer and the bloom filter knows the numero doesn't
+   *   exist.
+   * @throws NoSuchElementException if the ficha doesn't exist.
+   */
+  private Ficha findFicha(Long numero) {
+
+    // Nullity
+    if(numero == null) {
+      throw new IllegalArgumentException("numero is null!!");
+    }
+
+    // The bloom filter only sees the writes of this instance: with other writers, a hint only
+    if (this.singleWriter && !this.mightExistFicha(numero)) {
+      throw new NoSuchElementException("The ficha doesn't exist");
+    }
+
+    //Ficha index should be 0(only one)
+    List<Ficha> fichas = repoFicha.findAll("numero",Long.toString(numero));
+    if (fichas.isEmpty()) {
+      throw new NoSuchElementException("The ficha doesn't exist");
+    }
+    return fichas.get(0);
+  }
+
+  /**
+   * @param numero of the ficha
+   * @return false if no ficha with the numero was seen by this instance (without query), true if maybe one exists
+   */
+  @Override
+  public boolean mightExistFicha(long numero) {
+    return this.numeroFilter == null || this.numeroFilter.mightContain(numero);
+  }
+
+  /**
+   * @param rut of the persona
+   * @return false if no persona with the rut was seen by this instance (without query), true if maybe one exists
+   */
+  @Override
+  public boolean mightExistPersona(String rut) {
+    if (this.rutFilter == null || rut == null) {
+      return true;
+    }
+    // The ruts are stored normalized, an invalid one can't exist
+    String canonicalRut = Validation.normalizeRut(rut);
+    return canonicalRut != null && this.rutFilter.mightContain(canonicalRut);
   }
 
   /**
    * @param pageSize , amount of personas
-   * @param page     , index of the list
+   * @param page     , index of the page, from 0 (the personas page * pageSize .. page * pageSize + pageSize - 1)
    * @return the {@link List} of {@link Persona}
    */
   @Override
   public List<Persona> getPersonas(Integer pageSize, Integer page) {
 
-    // Finding all the personas
-    List<Persona> personas = repoPersona.findAll();
+    // Nullity and ranges
+    if(pageSize == null || page == null || pageSize < 0 || page < 0) {
+      throw new IllegalArgumentException("Invalid pageSize or page!!");
+    }
+
+    // Only the personas in this page are read from the database
+    return repoPersona.findAll((long) page * pageSize, pageSize);
+  }
+
+  /**
+   * @param lastId   , id of the last persona of the previous page (null for the first page)
+   * @param pageSize , amount of personas
+   * @return the {@link List} of {@link Persona} after lastId
+   */
+  @Override
+  public List<Persona> getPersonasAfter(Long lastId, Integer pageSize) {
 
-    // The paginated list
-    List<Persona> personasIndex = new ArrayList<>();
+    // Nullity and ranges
+    if(pageSize == null || pageSize < 0) {
+      throw new IllegalArgumentException("Invalid pageSize!!");
+    }
 
-    // TODO: no entendi bien lo de indice page, asique puede cambiar esto despues
+    return repoPersona.findAllAfter(lastId, pageSize);
+  }
 
-    // if there are not more personas in this page
-    if(personas.size() < page) {
-      return null;
-    } else {
+  /**
+   * The bounds are moved to the lowest offset: the first number saved for their instants, so the range in the index
+   * covers every offset.
+   *
+   * @param from first fechaProximoControl (inclusive)
+   * @param to   last fechaProximoControl (exclusive)
+   * @return a iterator over the controles ordered by fechaProximoControl, it must be closed
+   */
+  @Override
+  public CloseableIterator<Control> getControlesProximos(ZonedDateTime from, ZonedDateTime to) {
+
+    // Nullity
+    if(from == null || to == null) {
+      throw new IllegalArgumentException("from or to is null!!");
+    }
 
-      // We add the personas to the paginated list
-      for(int i = page; i < page + pageSize; i++){
+    try {
+      QueryBuilder<Control, Long> query = this.repoControl.getQuery();
+      query.orderBy("fechaProximoControl", true).orderBy("id", true)
+        .where()
+        .ge("fechaProximoControl", from.withZoneSameInstant(ZoneOffset.MIN))
+        .and()
+        .lt("fechaProximoControl", to.withZoneSameInstant(ZoneOffset.MIN));
+      return query.iterator();
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
 
-        // check if there are more personas
-        if(i == personas.size())
-          break;
+  /**
+   * Keyset pagination, with the bounds moved to the lowest offset as in {@link #getControlesProximos(ZonedDateTime,
+   * ZonedDateTime)}.
+   *
+   * @param from       first fechaProximoControl (inclusive)
+   * @param to         last fechaProximoControl (exclusive)
+   * @param afterFecha fechaProximoControl of the last control of the previous page, as read (null for the first page)
+   * @param afterId    id of the last control of the previous page (null for the first page)
+   * @param limit      max amount of controles
+   * @return a page of the controles ordered by fechaProximoControl (and id)
+   */
+  @Override
+  public List<Control> getControlesProximos(ZonedDateTime from, ZonedDateTime to, ZonedDateTime afterFecha,
+                                            Long afterId, int limit) {
 
-        personasIndex.add(personas.get(i));
+    // Nullity
+    if(from == null || to == null || limit < 0 || (afterFecha == null) != (afterId == null)) {
+      throw new IllegalArgumentException("Invalid from, to, limit or after!!");
+    }
 
+    try {
+      QueryBuilder<Control, Long> query = this.repoControl.getQuery();
+      query.orderBy("fechaProximoControl", true).orderBy("id", true).limit((long) limit);
+
+      Where<Control, Long> where = query.where();
+      where.ge("fechaProximoControl", from.withZoneSameInstant(ZoneOffset.MIN));
+      where.lt("fechaProximoControl", to.withZoneSameInstant(ZoneOffset.MIN));
+
+      // After the last control of the previous page: fecha > after or (fecha = after and id > afterId)
+      if (afterFecha != null) {
+        where.gt("fechaProximoControl", afterFecha);
+        where.eq("fechaProximoControl", afterFecha);
+        where.gt("id", afterId);
+        where.and(2);
+        where.or(2);
+        where.and(3);
+      } else {
+        where.and(2);
       }
 
+      return query.query();
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
     }
-
-    return personasIndex;
   }
 
   /**
@@ -366,6 +1026,7 @@ public class ContratosImpl implements Contratos {
 
     // Inserting the control in the DataBase
     if(this.repoControl.create(control)) {
+      this.writes.incrementAndGet();
       return control;
     }
 
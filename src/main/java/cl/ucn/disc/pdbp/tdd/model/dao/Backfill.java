@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import java.sql.SQLException;
+
+/**
+ * A migration of the data filling the rows by chunks, each chunk in their own transaction, so it can run in the
+ * background of a live database (see {@link Migrator#addBackfill(int, String, Backfill, boolean)}). The rows pending
+ * are found again in each chunk, so a backfill interrupted continues where it stopped.
+ *
+ * @author Miguel León Garrido.
+ */
+public interface Backfill {
+
+  /**
+   * Prepare the schema (the columns to fill), before the first chunk.
+   */
+  void prepare() throws SQLException;
+
+  /**
+   * Fill the next rows pending.
+   *
+   * @param chunkSize the maximum number of rows to fill.
+   * @return the number of rows filled, less than the chunkSize when there is nothing else to fill.
+   */
+  int fill(int chunkSize) throws SQLException;
+
+}
@@ -0,0 +1,427 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import com.j256.ormlite.dao.CloseableIterator;
+import com.j256.ormlite.stmt.QueryBuilder;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Read-through cache over a {@link Repository}: keeps the T by id and the results of {@link #findAll(String, Object)},
+ * with LRU eviction by size and a time to live. The writes go to the database and then to the cache (write-through).
+ * The writes done with {@link #getQuery()} or outside this repository aren't seen by the cache until the ttl expires.
+ * The cache keeps copies: the T returned are copies too, so the callers (and fetchForeign) can change them. A read
+ * from the database is cached only if no write ran meanwhile (the generation didn't change).
+ *
+ * @author Miguel León Garrido.
+ */
+public final class CachingRepository<T, K> implements Repository<T, K> {
+
+  /**
+   * The repository cached.
+   */
+  private final Repository<T, K> repository;
+
+  /**
+   * Extract the id of a T.
+   */
+  private final Function<T, K> idExtractor;
+
+  /**
+   * Copy a T (shallow: the foreign objects are shared, fetchForeign replaces them).
+   */
+  private final UnaryOperator<T> copier;
+
+  /**
+   * Max number of entries (by id and by query).
+   */
+  private final int maxSize;
+
+  /**
+   * Time to live of a entry.
+   */
+  private final long ttlMillis;
+
+  /**
+   * The T, by id (in access order).
+   */
+  private final LinkedHashMap<K, Entry<T>> byId;
+
+  /**
+   * The results of findAll(key, value), by key and value (in access order).
+   */
+  private final LinkedHashMap<Map.Entry<String, Object>, Entry<List<T>>> byQuery;
+
+  /**
+   * Number of reads answered by the cache.
+   */
+  private long hits;
+
+  /**
+   * Number of reads answered by the database.
+   */
+  private long misses;
+
+  /**
+   * Number of entries removed by size or ttl.
+   */
+  private long evictions;
+
+  /**
+   * The number of writes, the reads started before a write aren't cached.
+   */
+  private long generation;
+
+  /**
+   * The Constructor.
+   *
+   * @param repository to cache.
+   * @param idExtractor to get the id of a T.
+   * @param copier to copy a T (see {@link RepositoryOrmLite#copy(Object)}).
+   * @param maxSize max number of entries, by id and by query.
+   * @param ttlMillis time to live of a entry.
+   */
+  public CachingRepository(Repository<T, K> repository, Function<T, K> idExtractor, UnaryOperator<T> copier,
+                           int maxSize, long ttlMillis) {
+
+    if (repository == null || idExtractor == null || copier == null || maxSize < 1 || ttlMillis < 1) {
+      throw new IllegalArgumentException("Invalid cache configuration!");
+    }
+
+    this.repository = repository;
+    this.idExtractor = idExtractor;
+    this.copier = copier;
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlMillis;
+    this.byId = new LinkedHashMap<>(16, 0.75f, true);
+    this.byQuery = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * @return a List of T (from the database)
+   */
+  @Override
+  public List<T> findAll() {
+    return this.repository.findAll();
+  }
+
+  /**
+   * @return a iterator over all the T (from the database), it must be closed
+   */
+  @Override
+  public CloseableIterator<T> iterator() {
+    return this.repository.iterator();
+  }
+
+  /**
+   * @param id to search
+   * @return the T with id
+   */
+  @Override
+  public T findById(K id) {
+    if (id == null) {
+      throw new RuntimeException();
+    }
+
+    T cached = this.get(this.byId, id);
+    if (cached != null) {
+      return this.copier.apply(cached);
+    }
+
+    long readGeneration = this.getGeneration();
+    T t = this.repository.findById(id);
+    if (t != null) {
+      this.put(this.byId, id, this.copier.apply(t), readGeneration);
+    }
+    return t;
+  }
+
+  /**
+   * @param t to save
+   * @return true if t was inserted, false otherwise.
+   */
+  @Override
+  public boolean create(T t) {
+    boolean created = this.repository.create(t);
+    this.written(created ? t : null);
+    return created;
+  }
+
+  /**
+   * @param ts to save, all or none
+   * @return the number of T saved
+   */
+  @Override
+  public int createAll(Collection<T> ts) {
+    int created = this.repository.createAll(ts);
+    synchronized (this) {
+      for (T t : ts) {
+        this.written(t);
+      }
+    }
+    return created;
+  }
+
+  /**
+   * @param t to update
+   * @return true if t was updated, false otherwise.
+   */
+  @Override
+  public boolean update(T t) {
+    boolean updated = this.repository.update(t);
+    this.written(updated ? t : null);
+    return updated;
+  }
+
+  /**
+   * @param id to search
+   * @return true if this id row was deleted, false otherwise.
+   */
+  @Override
+  public boolean delete(K id) {
+    boolean deleted = this.repository.delete(id);
+    synchronized (this) {
+      this.generation++;
+      this.byId.remove(id);
+      this.byQuery.clear();
+    }
+    return deleted;
+  }
+
+  /**
+   * @param key   to filter
+   * @param value to search
+   * @return the List of T
+   */
+  @Override
+  public List<T> findAll(String key, Object value) {
+
+    Map.Entry<String, Object> query = new AbstractMap.SimpleImmutableEntry<>(key, value);
+
+    List<T> cached = this.get(this.byQuery, query);
+    if (cached != null) {
+      return this.copy(cached);
+    }
+
+    long readGeneration = this.getGeneration();
+    List<T> list = this.repository.findAll(key, value);
+    this.put(this.byQuery, query, this.copy(list), readGeneration);
+    return list;
+  }
+
+  /**
+   * @param offset number of T to skip
+   * @param limit  max number of T
+   * @return the List of T ordered by id (from the database)
+   */
+  @Override
+  public List<T> findAll(long offset, long limit) {
+    return this.repository.findAll(offset, limit);
+  }
+
+  /**
+   * @param lastId id of the last T of the previous page, null for the first page
+   * @param limit  max number of T
+   * @return the List of T with id greater than lastId, ordered by id (from the database)
+   */
+  @Override
+  public List<T> findAllAfter(K lastId, long limit) {
+    return this.repository.findAllAfter(lastId, limit);
+  }
+
+  /**
+   * @param ts           to complete
+   * @param foreignField name of the foreign field to load (from the database)
+   */
+  @Override
+  public void fetchForeign(Collection<T> ts, String foreignField) {
+    this.repository.fetchForeign(ts, foreignField);
+  }
+
+  /**
+   * @param name     of the query
+   * @param preparer to build the query
+   */
+  @Override
+  public void prepare(String name, Preparer<T, K> preparer) {
+    this.repository.prepare(name, preparer);
+  }
+
+  /**
+   * @param name of the query prepared
+   * @param args values of the arguments
+   * @return the List of T (from the database)
+   */
+  @Override
+  public List<T> query(String name, Object... args) {
+    return this.repository.query(name, args);
+  }
+
+  /**
+   * @param name of the query prepared
+   * @param args values of the arguments
+   * @return the number of T (from the database)
+   */
+  @Override
+  public long count(String name, Object... args) {
+    return this.repository.count(name, args);
+  }
+
+  /**
+   * @return the QueryBuilder (not cached)
+   */
+  @Override
+  public QueryBuilder<T, K> getQuery() {
+    return this.repository.getQuery();
+  }
+
+  /**
+   * @return the metrics of the cache, by name.
+   */
+  public synchronized Map<String, Number> getMetrics() {
+    Map<String, Number> metrics = new LinkedHashMap<>();
+    metrics.put("hits_total", this.hits);
+    metrics.put("misses_total", this.misses);
+    metrics.put("evictions_total", this.evictions);
+    metrics.put("size", this.byId.size() + this.byQuery.size());
+    return metrics;
+  }
+
+  /**
+   * Update the cache after a write.
+   *
+   * @param t written, null if the write failed.
+   */
+  private synchronized void written(T t) {
+    // Any write can change the result of a query, and the reads running aren't cached
+    this.generation++;
+    this.byQuery.clear();
+    if (t != null) {
+      this.put(this.byId, this.idExtractor.apply(t), this.copier.apply(t), this.generation);
+    }
+  }
+
+  /**
+   * @return the number of writes.
+   */
+  private synchronized long getGeneration() {
+    return this.generation;
+  }
+
+  /**
+   * @param ts to copy.
+   * @return a new list with a copy of each T.
+   */
+  private List<T> copy(List<T> ts) {
+    List<T> copies = new ArrayList<>(ts.size());
+    for (T t : ts) {
+      copies.add(this.copier.apply(t));
+    }
+    return copies;
+  }
+
+  /**
+   * @param map to read.
+   * @param key to find.
+   * @return the value cached, null if missing or expired.
+   */
+  private synchronized <X, V> V get(Map<X, Entry<V>> map, X key) {
+
+    Entry<V> entry = map.get(key);
+    if (entry != null && entry.expiresMillis < System.currentTimeMillis()) {
+      map.remove(key);
+      this.evictions++;
+      entry = null;
+    }
+
+    if (entry == null) {
+      this.misses++;
+      return null;
+    }
+
+    this.hits++;
+    return entry.value;
+  }
+
+  /**
+   * Save a value, removing the least recently used entries over the max size. Not saved if there were writes after
+   * the value was read.
+   *
+   * @param map to write.
+   * @param key of the value.
+   * @param value to save.
+   * @param readGeneration the generation when the value was read.
+   */
+  private synchronized <X, V> void put(Map<X, Entry<V>> map, X key, V value, long readGeneration) {
+
+    if (readGeneration != this.generation) {
+      return;
+    }
+
+    map.put(key, new Entry<>(value, System.currentTimeMillis() + this.ttlMillis));
+
+    Iterator<Entry<V>> eldest = map.values().iterator();
+    while (map.size() > this.maxSize) {
+      eldest.next();
+      eldest.remove();
+      this.evictions++;
+    }
+  }
+
+  /**
+   * A value cached.
+   */
+  private static final class Entry<V> {
+
+    /**
+     * The value.
+     */
+    private final V value;
+
+    /**
+     * When expires.
+     */
+    private final long expiresMillis;
+
+    /**
+     * @param value cached.
+     * @param expiresMillis when expires.
+     */
+    private Entry(V value, long expiresMillis) {
+      this.value = value;
+      this.expiresMillis = expiresMillis;
+    }
+  }
+
+}
@@ -0,0 +1,740 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The configuration of the connection to the database.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class DatabaseConfig {
+
+  /**
+   * The jdbc url.
+   */
+  private final String url;
+
+  /**
+   * The jdbc urls of the copies of the database receiving the reads (none to use only the primary).
+   */
+  private final List<String> replicaUrls = new ArrayList<>();
+
+  /**
+   * Time to skip a replica after a failure.
+   */
+  private long replicaRetryMillis = 5_000;
+
+  /**
+   * true to use a {@link PooledConnectionSource}, false to use a single connection.
+   */
+  private boolean pooled = false;
+
+  /**
+   * Connections opened at startup.
+   */
+  private int minIdle = 1;
+
+  /**
+   * Max connections kept open without use.
+   */
+  private int maxIdle = 5;
+
+  /**
+   * Max connections in use at the same time.
+   */
+  private int maxSize = 10;
+
+  /**
+   * Max time to wait for a connection.
+   */
+  private long acquireTimeoutMillis = 30_000;
+
+  /**
+   * Time to live of a connection, after that is closed when idle.
+   */
+  private long maxConnectionAgeMillis = 30 * 60_000;
+
+  /**
+   * Interval of the background check of the idle connections (0 to disable).
+   */
+  private long checkConnectionsEveryMillis = 60_000;
+
+  /**
+   * The query to validate a idle connection before use (null to skip the validation).
+   */
+  private String validationQuery;
+
+  /**
+   * Time after a connection not released is reported as a leak (0 to disable).
+   */
+  private long leakDetectionThresholdMillis = 0;
+
+  /**
+   * Max entries cached by repository (0 to disable the {@link CachingRepository}).
+   */
+  private int cacheSize = 0;
+
+  /**
+   * Time to live of the entries cached.
+   */
+  private long cacheTtlMillis = 60_000;
+
+  /**
+   * Threads of the {@link DatabaseExecutor}.
+   */
+  private int executorThreads = 10;
+
+  /**
+   * Tasks waiting in the {@link DatabaseExecutor}, the next are rejected.
+   */
+  private int executorQueueSize = 100;
+
+  /**
+   * Time to complete a task in the {@link DatabaseExecutor}, 0 to wait forever.
+   */
+  private long executorTimeoutMillis = 10_000;
+
+  /**
+   * Keys expected by the bloom filters of rut and numero (0 to disable them), the memory grows with them.
+   */
+  private long bloomExpectedInsertions = 0;
+
+  /**
+   * False positive probability of the bloom filters, with the keys expected.
+   */
+  private double bloomFpp = 0.01;
+
+  /**
+   * True if this app is the only writer of the database: the bloom filters (that only see the writes of this app) can
+   * answer that a row doesn't exist without query.
+   */
+  private boolean singleWriter = false;
+
+  /**
+   * True to search the fichas in a in memory index, built at start and updated by the writes of this app (only with a
+   * single writer, it doesn't see the writes of others).
+   */
+  private boolean searchIndex = false;
+
+  /**
+   * Rows filled by chunk in the backfills of the migrations.
+   */
+  private int backfillChunkSize = 1000;
+
+  /**
+   * Pause between the chunks of the backfills in the background.
+   */
+  private long backfillPauseMillis = 10;
+
+  /**
+   * True to measure the statements with a {@link MeteredConnectionSource}.
+   */
+  private boolean metered = true;
+
+  /**
+   * Time of a statement to be logged as slow (0 to not log).
+   */
+  private long slowQueryMillis = 500;
+
+  /**
+   * True to log the values of the arguments of the slow queries (personal data), false to log their types.
+   */
+  private boolean logQueryArgs = false;
+
+  /**
+   * The Constructor.
+   *
+   * @param url jdbc string to connect to backend.
+   */
+  public DatabaseConfig(String url) {
+    if (url == null) {
+      throw new IllegalArgumentException("Database URL is Null!");
+    }
+    this.url = url;
+  }
+
+  /**
+   * The configuration read from properties (all optional):
+   * <ul>
+   *   <li>db.profile: sqlite, h2 or generic (the backend of db.url if missing).</li>
+   *   <li>db.url: the jdbc url (the default of the profile if missing).</li>
+   *   <li>db.replicas: the jdbc urls of the replicas, separated by commas.</li>
+   *   <li>db.param.NAME: a parameter of the driver, replacing the one of the {@link DatabaseProfile}.</li>
+   *   <li>db.NAME: the value of each setter of this class (db.pooled, db.maxSize, db.cacheSize, ..).</li>
+   * </ul>
+   *
+   * @param properties to read.
+   * @return the configuration with the url tuned by the profile.
+   */
+  public static DatabaseConfig fromProperties(Properties properties) {
+
+    // The backend
+    String url = properties.getProperty("db.url");
+    String name = properties.getProperty("db.profile");
+    DatabaseProfile profile;
+    if (name != null) {
+      profile = DatabaseProfile.valueOf(name.trim().toUpperCase(Locale.ROOT));
+    } else if (url != null) {
+      profile = DatabaseProfile.of(url);
+    } else {
+      profile = DatabaseProfile.SQLITE;
+    }
+    if (url == null) {
+      url = profile.getDefaultUrl();
+      if (url == null) {
+        throw new IllegalArgumentException("The profile " + profile + " needs a db.url!");
+      }
+    }
+
+    // The parameters of the driver
+    Map<String, String> overrides = new HashMap<>();
+    for (String key : properties.stringPropertyNames()) {
+      if (key.startsWith("db.param.")) {
+        overrides.put(key.substring("db.param.".length()), properties.getProperty(key).trim());
+      }
+    }
+
+    DatabaseConfig config = new DatabaseConfig(profile.tune(url, overrides));
+    String replicas = properties.getProperty("db.replicas", "");
+    for (String replica : replicas.split(",")) {
+      if (!replica.trim().isEmpty()) {
+        config.addReplicaUrl(DatabaseProfile.of(replica.trim()).tune(replica.trim(), overrides));
+      }
+    }
+    config.setReplicaRetryMillis(getLong(properties, "db.replicaRetryMillis", config.replicaRetryMillis));
+    config.setPooled(Boolean.parseBoolean(properties.getProperty("db.pooled", String.valueOf(config.pooled))));
+    config.setMinIdle(getInt(properties, "db.minIdle", config.minIdle));
+    config.setMaxIdle(getInt(properties, "db.maxIdle", config.maxIdle));
+    config.setMaxSize(getInt(properties, "db.maxSize", config.maxSize));
+    config.setAcquireTimeoutMillis(getLong(properties, "db.acquireTimeoutMillis", config.acquireTimeoutMillis));
+    config.setMaxConnectionAgeMillis(getLong(properties, "db.maxConnectionAgeMillis", config.maxConnectionAgeMillis));
+    config.setCheckConnectionsEveryMillis(getLong(properties, "db.checkConnectionsEveryMillis",
+      config.checkConnectionsEveryMillis));
+    config.setValidationQuery(properties.getProperty("db.validationQuery", config.validationQuery));
+    config.setLeakDetectionThresholdMillis(getLong(properties, "db.leakDetectionThresholdMillis",
+      config.leakDetectionThresholdMillis));
+    config.setCacheSize(getInt(properties, "db.cacheSize", config.cacheSize));
+    config.setCacheTtlMillis(getLong(properties, "db.cacheTtlMillis", config.cacheTtlMillis));
+    config.setExecutorThreads(getInt(properties, "db.executorThreads", config.executorThreads));
+    config.setExecutorQueueSize(getInt(properties, "db.executorQueueSize", config.executorQueueSize));
+    config.setExecutorTimeoutMillis(getLong(properties, "db.executorTimeoutMillis", config.executorTimeoutMillis));
+    config.setBloomExpectedInsertions(getLong(properties, "db.bloomExpectedInsertions",
+      config.bloomExpectedInsertions));
+    config.setBloomFpp(Double.parseDouble(properties.getProperty("db.bloomFpp", String.valueOf(config.bloomFpp))));
+    config.setSingleWriter(Boolean.parseBoolean(properties.getProperty("db.singleWriter",
+      String.valueOf(config.singleWriter))));
+    config.setSearchIndex(Boolean.parseBoolean(properties.getProperty("db.searchIndex",
+      String.valueOf(config.searchIndex))));
+    config.setBackfillChunkSize(getInt(properties, "db.backfillChunkSize", config.backfillChunkSize));
+    config.setBackfillPauseMillis(getLong(properties, "db.backfillPauseMillis", config.backfillPauseMillis));
+    config.setMetered(Boolean.parseBoolean(properties.getProperty("db.metered", String.valueOf(config.metered))));
+    config.setSlowQueryMillis(getLong(properties, "db.slowQueryMillis", config.slowQueryMillis));
+    config.setLogQueryArgs(Boolean.parseBoolean(properties.getProperty("db.logQueryArgs",
+      String.valueOf(config.logQueryArgs))));
+    return config;
+  }
+
+  /**
+   * @return the int in the properties, the default value if missing.
+   */
+  private static int getInt(Properties properties, String key, int defaultValue) {
+    String value = properties.getProperty(key);
+    return value == null ? defaultValue : Integer.parseInt(value.trim());
+  }
+
+  /**
+   * @return the long in the properties, the default value if missing.
+   */
+  private static long getLong(Properties properties, String key, long defaultValue) {
+    String value = properties.getProperty(key);
+    return value == null ? defaultValue : Long.parseLong(value.trim());
+  }
+
+  /**
+   * @param value of the setting.
+   * @param min value allowed.
+   * @param name of the setting.
+   * @throws IllegalArgumentException if the value is under the min, instead of failing later in the component.
+   */
+  private static void checkAtLeast(long value, long min, String name) {
+    if (value < min) {
+      throw new IllegalArgumentException("Invalid " + name + ": " + value + " (min " + min + ")!");
+    }
+  }
+
+  /**
+   * @return the {@link ConnectionSource} described by this configuration, a {@link RoutingConnectionSource} if there
+   *   are replicas.
+   */
+  public ConnectionSource createConnectionSource() throws SQLException {
+
+    ConnectionSource primary = this.createConnectionSource(this.url);
+    if (this.replicaUrls.isEmpty()) {
+      return primary;
+    }
+
+    List<ConnectionSource> replicas = new ArrayList<>();
+    for (String replicaUrl : this.replicaUrls) {
+      replicas.add(this.createConnectionSource(replicaUrl));
+    }
+    return new RoutingConnectionSource(primary, replicas, this.replicaRetryMillis);
+  }
+
+  /**
+   * @return the {@link ConnectionSource} of {@link #createConnectionSource()} measured by a
+   *   {@link MeteredConnectionSource}, the same if not metered.
+   */
+  public ConnectionSource createMeteredConnectionSource() throws SQLException {
+    ConnectionSource connectionSource = this.createConnectionSource();
+    if (!this.metered) {
+      return connectionSource;
+    }
+    return new MeteredConnectionSource(connectionSource, new QueryMetrics(this.slowQueryMillis,
+      this.logQueryArgs));
+  }
+
+  /**
+   * @param url jdbc string to connect to backend.
+   * @return the {@link ConnectionSource} to the url, pooled or single.
+   */
+  private ConnectionSource createConnectionSource(String url) throws SQLException {
+    if (this.pooled) {
+      return new PooledConnectionSource(this, url);
+    }
+    return new JdbcConnectionSource(url);
+  }
+
+  /**
+   * @return the {@link DatabaseExecutor} described by this configuration.
+   */
+  public DatabaseExecutor createExecutor() {
+    return new DatabaseExecutor(this.executorThreads, this.executorQueueSize, this.executorTimeoutMillis);
+  }
+
+  /**
+   * @param connectionSource to migrate.
+   * @return the {@link Migrator} (without migrations) described by this configuration.
+   */
+  public Migrator createMigrator(ConnectionSource connectionSource) {
+    return new Migrator(connectionSource, this.backfillChunkSize, this.backfillPauseMillis);
+  }
+
+  /**
+   * @return the jdbc url.
+   */
+  public String getUrl() {
+    return url;
+  }
+
+  /**
+   * @return the jdbc urls of the replicas.
+   */
+  public List<String> getReplicaUrls() {
+    return Collections.unmodifiableList(replicaUrls);
+  }
+
+  /**
+   * @param replicaUrl jdbc string to connect to a copy of the database receiving the reads.
+   */
+  public void addReplicaUrl(String replicaUrl) {
+    if (replicaUrl == null) {
+      throw new IllegalArgumentException("Replica URL is Null!");
+    }
+    this.replicaUrls.add(replicaUrl);
+  }
+
+  /**
+   * @return time to skip a replica after a failure.
+   */
+  public long getReplicaRetryMillis() {
+    return replicaRetryMillis;
+  }
+
+  /**
+   * @param replicaRetryMillis time to skip a replica after a failure.
+   */
+  public void setReplicaRetryMillis(long replicaRetryMillis) {
+    checkAtLeast(replicaRetryMillis, 0, "replicaRetryMillis");
+    this.replicaRetryMillis = replicaRetryMillis;
+  }
+
+  /**
+   * @return true if the connections are pooled.
+   */
+  public boolean isPooled() {
+    return pooled;
+  }
+
+  /**
+   * @param pooled true to use a pool of connections.
+   */
+  public void setPooled(boolean pooled) {
+    this.pooled = pooled;
+  }
+
+  /**
+   * @return connections opened at startup.
+   */
+  public int getMinIdle() {
+    return minIdle;
+  }
+
+  /**
+   * @param minIdle connections opened at startup.
+   */
+  public void setMinIdle(int minIdle) {
+    checkAtLeast(minIdle, 0, "minIdle");
+    this.minIdle = minIdle;
+  }
+
+  /**
+   * @return max connections kept open without use.
+   */
+  public int getMaxIdle() {
+    return maxIdle;
+  }
+
+  /**
+   * @param maxIdle max connections kept open without use.
+   */
+  public void setMaxIdle(int maxIdle) {
+    checkAtLeast(maxIdle, 0, "maxIdle");
+    this.maxIdle = maxIdle;
+  }
+
+  /**
+   * @return max connections in use at the same time.
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @param maxSize max connections in use at the same time.
+   */
+  public void setMaxSize(int maxSize) {
+    checkAtLeast(maxSize, 1, "maxSize");
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @return max time to wait for a connection.
+   */
+  public long getAcquireTimeoutMillis() {
+    return acquireTimeoutMillis;
+  }
+
+  /**
+   * @param acquireTimeoutMillis max time to wait for a connection.
+   */
+  public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+    checkAtLeast(acquireTimeoutMillis, 0, "acquireTimeoutMillis");
+    this.acquireTimeoutMillis = acquireTimeoutMillis;
+  }
+
+  /**
+   * @return time to live of a connection.
+   */
+  public long getMaxConnectionAgeMillis() {
+    return maxConnectionAgeMillis;
+  }
+
+  /**
+   * @param maxConnectionAgeMillis time to live of a connection.
+   */
+  public void setMaxConnectionAgeMillis(long maxConnectionAgeMillis) {
+    checkAtLeast(maxConnectionAgeMillis, 1, "maxConnectionAgeMillis");
+    this.maxConnectionAgeMillis = maxConnectionAgeMillis;
+  }
+
+  /**
+   * @return interval of the background check of the idle connections.
+   */
+  public long getCheckConnectionsEveryMillis() {
+    return checkConnectionsEveryMillis;
+  }
+
+  /**
+   * @param checkConnectionsEveryMillis interval of the background check of the idle connections.
+   */
+  public void setCheckConnectionsEveryMillis(long checkConnectionsEveryMillis) {
+    checkAtLeast(checkConnectionsEveryMillis, 0, "checkConnectionsEveryMillis");
+    this.checkConnectionsEveryMillis = checkConnectionsEveryMillis;
+  }
+
+  /**
+   * @return the query to validate a connection, can be null.
+   */
+  public String getValidationQuery() {
+    return validationQuery;
+  }
+
+  /**
+   * @param validationQuery the query to validate a connection before use.
+   */
+  public void setValidationQuery(String validationQuery) {
+    this.validationQuery = validationQuery;
+  }
+
+  /**
+   * @return time after a connection not released is reported as a leak.
+   */
+  public long getLeakDetectionThresholdMillis() {
+    return leakDetectionThresholdMillis;
+  }
+
+  /**
+   * @param leakDetectionThresholdMillis time after a connection not released is reported as a leak.
+   */
+  public void setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+    checkAtLeast(leakDetectionThresholdMillis, 0, "leakDetectionThresholdMillis");
+    this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+  }
+
+  /**
+   * @return max entries cached by repository, 0 if disabled.
+   */
+  public int getCacheSize() {
+    return cacheSize;
+  }
+
+  /**
+   * @param cacheSize max entries cached by repository (0 to disable).
+   */
+  public void setCacheSize(int cacheSize) {
+    checkAtLeast(cacheSize, 0, "cacheSize");
+    this.cacheSize = cacheSize;
+  }
+
+  /**
+   * @return time to live of the entries cached.
+   */
+  public long getCacheTtlMillis() {
+    return cacheTtlMillis;
+  }
+
+  /**
+   * @param cacheTtlMillis time to live of the entries cached.
+   */
+  public void setCacheTtlMillis(long cacheTtlMillis) {
+    checkAtLeast(cacheTtlMillis, 1, "cacheTtlMillis");
+    this.cacheTtlMillis = cacheTtlMillis;
+  }
+
+  /**
+   * @return threads of the {@link DatabaseExecutor}.
+   */
+  public int getExecutorThreads() {
+    return executorThreads;
+  }
+
+  /**
+   * @param executorThreads threads of the {@link DatabaseExecutor}.
+   */
+  public void setExecutorThreads(int executorThreads) {
+    checkAtLeast(executorThreads, 1, "executorThreads");
+    this.executorThreads = executorThreads;
+  }
+
+  /**
+   * @return tasks waiting in the {@link DatabaseExecutor}.
+   */
+  public int getExecutorQueueSize() {
+    return executorQueueSize;
+  }
+
+  /**
+   * @param executorQueueSize tasks waiting in the {@link DatabaseExecutor}, the next are rejected.
+   */
+  public void setExecutorQueueSize(int executorQueueSize) {
+    checkAtLeast(executorQueueSize, 1, "executorQueueSize");
+    this.executorQueueSize = executorQueueSize;
+  }
+
+  /**
+   * @return time to complete a task in the {@link DatabaseExecutor}.
+   */
+  public long getExecutorTimeoutMillis() {
+    return executorTimeoutMillis;
+  }
+
+  /**
+   * @param executorTimeoutMillis time to complete a task in the {@link DatabaseExecutor} (0 to wait forever).
+   */
+  public void setExecutorTimeoutMillis(long executorTimeoutMillis) {
+    checkAtLeast(executorTimeoutMillis, 0, "executorTimeoutMillis");
+    this.executorTimeoutMillis = executorTimeoutMillis;
+  }
+
+  /**
+   * @return keys expected by the bloom filters, 0 if disabled.
+   */
+  public long getBloomExpectedInsertions() {
+    return bloomExpectedInsertions;
+  }
+
+  /**
+   * @param bloomExpectedInsertions keys expected by the bloom filters (0 to disable them).
+   */
+  public void setBloomExpectedInsertions(long bloomExpectedInsertions) {
+    checkAtLeast(bloomExpectedInsertions, 0, "bloomExpectedInsertions");
+    this.bloomExpectedInsertions = bloomExpectedInsertions;
+  }
+
+  /**
+   * @return false positive probability of the bloom filters.
+   */
+  public double getBloomFpp() {
+    return bloomFpp;
+  }
+
+  /**
+   * @param bloomFpp false positive probability of the bloom filters, with the keys expected.
+   */
+  public void setBloomFpp(double bloomFpp) {
+    if (!(bloomFpp > 0 && bloomFpp < 1)) {
+      throw new IllegalArgumentException("Invalid bloomFpp: " + bloomFpp + " (between 0 and 1)!");
+    }
+    this.bloomFpp = bloomFpp;
+  }
+
+  /**
+   * @return true if this app is the only writer of the database.
+   */
+  public boolean isSingleWriter() {
+    return singleWriter;
+  }
+
+  /**
+   * @param singleWriter true if this app is the only writer of the database (no replicas written outside, no other
+   *   instances), so the bloom filters can skip the queries of the rows that don't exist and the count of writes of
+   *   the app versions the data.
+   */
+  public void setSingleWriter(boolean singleWriter) {
+    this.singleWriter = singleWriter;
+  }
+
+  /**
+   * @return true to search the fichas in a in memory index.
+   */
+  public boolean isSearchIndex() {
+    return searchIndex;
+  }
+
+  /**
+   * @param searchIndex true to search the fichas in a in memory index, used only with a single writer (the searches
+   *   go to the database otherwise).
+   */
+  public void setSearchIndex(boolean searchIndex) {
+    this.searchIndex = searchIndex;
+  }
+
+  /**
+   * @return rows filled by chunk in the backfills of the migrations.
+   */
+  public int getBackfillChunkSize() {
+    return backfillChunkSize;
+  }
+
+  /**
+   * @param backfillChunkSize rows filled by chunk (a transaction by chunk) in the backfills of the migrations.
+   */
+  public void setBackfillChunkSize(int backfillChunkSize) {
+    checkAtLeast(backfillChunkSize, 1, "backfillChunkSize");
+    this.backfillChunkSize = backfillChunkSize;
+  }
+
+  /**
+   * @return pause between the chunks of the backfills in the background.
+   */
+  public long getBackfillPauseMillis() {
+    return backfillPauseMillis;
+  }
+
+  /**
+   * @param backfillPauseMillis pause between the chunks of the backfills in the background.
+   */
+  public void setBackfillPauseMillis(long backfillPauseMillis) {
+    checkAtLeast(backfillPauseMillis, 0, "backfillPauseMillis");
+    this.backfillPauseMillis = backfillPauseMillis;
+  }
+
+  /**
+   * @return true to measure the statements.
+   */
+  public boolean isMetered() {
+    return metered;
+  }
+
+  /**
+   * @param metered true to measure the statements with a {@link MeteredConnectionSource}.
+   */
+  public void setMetered(boolean metered) {
+    this.metered = metered;
+  }
+
+  /**
+   * @return time of a statement to be logged as slow.
+   */
+  public long getSlowQueryMillis() {
+    return slowQueryMillis;
+  }
+
+  /**
+   * @param slowQueryMillis time of a statement to be logged as slow, with the SQL and the arguments (0 to not log).
+   */
+  public void setSlowQueryMillis(long slowQueryMillis) {
+    checkAtLeast(slowQueryMillis, 0, "slowQueryMillis");
+    this.slowQueryMillis = slowQueryMillis;
+  }
+
+  /**
+   * @return true if the values of the arguments of the slow queries are logged.
+   */
+  public boolean isLogQueryArgs() {
+    return logQueryArgs;
+  }
+
+  /**
+   * @param logQueryArgs true to log the values of the arguments of the slow queries (personal data, to debug only),
+   *   false to log their types.
+   */
+  public void setLogQueryArgs(boolean logQueryArgs) {
+    this.logQueryArgs = logQueryArgs;
+  }
+
+}
@@ -0,0 +1,234 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs the database work out of the request threads: a fixed number of threads, a bounded queue (the tasks over it are
+ * rejected with a {@link RejectedExecutionException}) and a timeout (the future fails with a {@link TimeoutException}).
+ * A task that times out while waiting in the queue is not run. A running task isn't interrupted (the JDBC drivers
+ * don't handle well the interrupts), only their result is discarded.
+ *
+ * The futures are completed by other threads (the response threads), so their dependents (as the write of the
+ * response to a slow client) don't hold a database thread.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class DatabaseExecutor implements Closeable {
+
+  /**
+   * The threads running the tasks.
+   */
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * The threads completing the futures, out of the database threads (as many as the responses written at the same
+   * time, idle threads are released after a minute).
+   */
+  private final ThreadPoolExecutor responses;
+
+  /**
+   * The thread completing the tasks timed out.
+   */
+  private final ScheduledExecutorService timer;
+
+  /**
+   * The default timeout.
+   */
+  private final long timeoutMillis;
+
+  /**
+   * Number of tasks rejected.
+   */
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  /**
+   * Number of tasks timed out.
+   */
+  private final AtomicLong timeoutCount = new AtomicLong();
+
+  /**
+   * The Constructor.
+   *
+   * @param threads to run the tasks.
+   * @param queueSize max tasks waiting for a thread.
+   * @param timeoutMillis default time to complete a task, 0 to wait forever.
+   */
+  public DatabaseExecutor(int threads, int queueSize, long timeoutMillis) {
+
+    if (threads < 1 || queueSize < 1 || timeoutMillis < 0) {
+      throw new IllegalArgumentException("Invalid executor configuration!");
+    }
+
+    AtomicInteger counter = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(queueSize), runnable -> {
+        Thread thread = new Thread(runnable, "database-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }, new ThreadPoolExecutor.AbortPolicy());
+
+    AtomicInteger responseCounter = new AtomicInteger();
+    this.responses = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+      runnable -> {
+        Thread thread = new Thread(runnable, "database-response-" + responseCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
+    this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "database timeouts");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Run a task with the default timeout.
+   *
+   * @param task to run.
+   * @param <T> type of the result.
+   * @return the future result.
+   */
+  public <T> CompletableFuture<T> supply(Supplier<T> task) {
+    return this.supply(task, this.timeoutMillis);
+  }
+
+  /**
+   * Run a task.
+   *
+   * @param task to run.
+   * @param timeoutMillis time to complete the task, 0 to wait forever.
+   * @param <T> type of the result.
+   * @return the future result, failed with a {@link RejectedExecutionException} if the queue is full or with a
+   *   {@link TimeoutException} if the task didn't complete in time. Completed by a response thread.
+   */
+  public <T> CompletableFuture<T> supply(Supplier<T> task, long timeoutMillis) {
+
+    CompletableFuture<T> result = new CompletableFuture<>();
+
+    // The statements of the task are counted in the request that sent it
+    QueryMetrics.Request request = QueryMetrics.getRequest();
+
+    Future<?> running;
+    try {
+      running = this.executor.submit(() -> {
+        // Timed out while waiting
+        if (result.isDone()) {
+          return;
+        }
+        QueryMetrics.setRequest(request);
+        try {
+          result.complete(task.get());
+        } catch (Throwable throwable) {
+          result.completeExceptionally(throwable);
+        } finally {
+          // The next task (other request) counts their own statements, out of a request reads from the replicas
+          RoutingConnectionSource.clearStickiness();
+          QueryMetrics.setRequest(null);
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      this.rejectedCount.incrementAndGet();
+      result.completeExceptionally(ex);
+      return result;
+    }
+
+    // The dependents run in a response thread, counting their statements in the same request
+    CompletableFuture<T> response = new CompletableFuture<>();
+    result.whenComplete((value, throwable) -> this.responses.execute(() -> {
+      QueryMetrics.setRequest(request);
+      try {
+        if (throwable != null) {
+          response.completeExceptionally(throwable);
+        } else {
+          response.complete(value);
+        }
+      } finally {
+        QueryMetrics.setRequest(null);
+      }
+    }));
+
+    if (timeoutMillis > 0) {
+      ScheduledFuture<?> timeout = this.timer.schedule(() -> {
+        if (result.completeExceptionally(new TimeoutException("Database task timed out after " + timeoutMillis
+          + " ms"))) {
+          this.timeoutCount.incrementAndGet();
+          // Remove it from the queue, if still waiting
+          running.cancel(false);
+          this.executor.purge();
+        }
+      }, timeoutMillis, TimeUnit.MILLISECONDS);
+      result.whenComplete((value, throwable) -> timeout.cancel(false));
+    }
+
+    return response;
+  }
+
+  /**
+   * @return the metrics of the executor, by name.
+   */
+  public Map<String, Number> getMetrics() {
+    Map<String, Number> metrics = new LinkedHashMap<>();
+    metrics.put("active", this.executor.getActiveCount());
+    metrics.put("queued", this.executor.getQueue().size());
+    metrics.put("threads", this.executor.getMaximumPoolSize());
+    metrics.put("responding", this.responses.getActiveCount());
+    metrics.put("completed_total", this.executor.getCompletedTaskCount());
+    metrics.put("rejected_total", this.rejectedCount.get());
+    metrics.put("timeouts_total", this.timeoutCount.get());
+    return metrics;
+  }
+
+  /**
+   * Stop the threads, the tasks waiting aren't run.
+   */
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+    this.responses.shutdownNow();
+    this.timer.shutdownNow();
+  }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The tuning of each backend, added to the jdbc url as parameters of the driver.
+ *
+ * @author Miguel León Garrido.
+ */
+public enum DatabaseProfile {
+
+  /**
+   * SQLite: write ahead log (the readers don't block the writer), sync at checkpoints, wait for the lock instead of
+   * SQLITE_BUSY, 16 MB of page cache and 256 MB of memory mapped file.
+   */
+  SQLITE("jdbc:sqlite:", "jdbc:sqlite:fivet.db", "?", "&", parameters(
+    "journal_mode", "WAL",
+    "synchronous", "NORMAL",
+    "busy_timeout", "5000",
+    "cache_size", "-16000",
+    "mmap_size", "268435456")),
+
+  /**
+   * H2: 64 MB of MVStore cache and wait for the locked rows. The MVStore is multi-threaded by default (the
+   * MULTI_THREADED setting was removed in 1.4.200).
+   */
+  H2("jdbc:h2:", "jdbc:h2:./fivet", ";", ";", parameters(
+    "CACHE_SIZE", "65536",
+    "LOCK_TIMEOUT", "5000")),
+
+  /**
+   * Any other backend: the url as is.
+   */
+  GENERIC("jdbc:", null, "?", "&", Collections.emptyMap());
+
+  /**
+   * The prefix of the jdbc urls of the backend.
+   */
+  private final String prefix;
+
+  /**
+   * The url used if none is configured.
+   */
+  private final String defaultUrl;
+
+  /**
+   * Separator before the first parameter.
+   */
+  private final String start;
+
+  /**
+   * Separator between parameters.
+   */
+  private final String separator;
+
+  /**
+   * The parameters of the driver, by name.
+   */
+  private final Map<String, String> parameters;
+
+  /**
+   * The Constructor.
+   */
+  DatabaseProfile(String prefix, String defaultUrl, String start, String separator, Map<String, String> parameters) {
+    this.prefix = prefix;
+    this.defaultUrl = defaultUrl;
+    this.start = start;
+    this.separator = separator;
+    this.parameters = parameters;
+  }
+
+  /**
+   * @param url the jdbc url.
+   * @return the profile of the backend of the url.
+   */
+  public static DatabaseProfile of(String url) {
+    for (DatabaseProfile profile : values()) {
+      if (url.startsWith(profile.prefix)) {
+        return profile;
+      }
+    }
+    throw new IllegalArgumentException("Not a jdbc url: " + url);
+  }
+
+  /**
+   * @return the url used if none is configured, null if the backend hasn't one.
+   */
+  public String getDefaultUrl() {
+    return this.defaultUrl;
+  }
+
+  /**
+   * @return the parameters of the driver added to the url, by name.
+   */
+  public Map<String, String> getParameters() {
+    return Collections.unmodifiableMap(this.parameters);
+  }
+
+  /**
+   * Add the parameters of the profile to the url, the parameters already in the url are kept.
+   *
+   * @param url the jdbc url.
+   * @param overrides the parameters replacing the ones of the profile (or added), by name.
+   * @return the url with the parameters.
+   */
+  public String tune(String url, Map<String, String> overrides) {
+
+    Map<String, String> all = new LinkedHashMap<>(this.parameters);
+    all.putAll(overrides);
+
+    StringBuilder tuned = new StringBuilder(url);
+    String lower = url.toLowerCase(Locale.ROOT);
+    for (Map.Entry<String, String> parameter : all.entrySet()) {
+
+      // Already in the url
+      String name = parameter.getKey().toLowerCase(Locale.ROOT);
+      if (lower.contains(this.start + name + "=") || lower.contains(this.separator + name + "=")) {
+        continue;
+      }
+
+      tuned.append(tuned.indexOf(this.start) < 0 ? this.start : this.separator)
+        .append(parameter.getKey()).append('=').append(parameter.getValue());
+    }
+    return tuned.toString();
+  }
+
+  /**
+   * @return the parameters (name, value, name, value, ..) in order.
+   */
+  private static Map<String, String> parameters(String... namesAndValues) {
+    Map<String, String> parameters = new LinkedHashMap<>();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      parameters.put(namesAndValues[i], namesAndValues[i + 1]);
+    }
+    return parameters;
+  }
+
+}
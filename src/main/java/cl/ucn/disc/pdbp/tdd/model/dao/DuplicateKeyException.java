@@ -0,0 +1,94 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import java.sql.SQLException;
+
+/**
+ * A insert or update rejected by a unique index: the row already exists.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class DuplicateKeyException extends RuntimeException {
+
+  /**
+   * The version of the serialized form.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The SQLState of the integrity constraint violations.
+   */
+  private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+  /**
+   * The SQLState of a unique constraint violation (H2).
+   */
+  private static final String UNIQUE_VIOLATION = "23505";
+
+  /**
+   * The error code of a constraint violation (SQLite).
+   */
+  private static final int SQLITE_CONSTRAINT = 19;
+
+  /**
+   * The Constructor.
+   *
+   * @param message of the error.
+   * @param cause of the error.
+   */
+  public DuplicateKeyException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  /**
+   * @param exception to check, with their causes.
+   * @return true if the exception is a unique constraint violation.
+   */
+  public static boolean isDuplicateKey(SQLException exception) {
+
+    for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+      if (!(cause instanceof SQLException)) {
+        continue;
+      }
+      SQLException sqlException = (SQLException) cause;
+      String state = sqlException.getSQLState();
+
+      // H2 (and the standard)
+      if (UNIQUE_VIOLATION.equals(state)) {
+        return true;
+      }
+
+      // SQLite: the same error code for all the constraints
+      boolean constraint = sqlException.getErrorCode() == SQLITE_CONSTRAINT
+        || state != null && state.startsWith(INTEGRITY_CONSTRAINT_VIOLATION);
+      if (constraint && sqlException.getMessage() != null && sqlException.getMessage().contains("UNIQUE")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import com.j256.ormlite.support.ConnectionSource;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Check of the personas saved before the unique indexes of the rut: the ruts repeated (by their body, after the
+ * {@link RutNumeroMigration}) are reported, so the migration fails with the list of ruts to fix instead of failing
+ * inside the creation of the tables.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class DuplicateRutCheck implements Migration {
+
+  /**
+   * The table of the personas.
+   */
+  private static final String TABLE = "persona";
+
+  /**
+   * The max number of ruts reported.
+   */
+  private static final int MAX_REPORTED = 20;
+
+  /**
+   * The schema of the database.
+   */
+  private final Schema schema;
+
+  /**
+   * The Constructor.
+   *
+   * @param connectionSource to use.
+   */
+  public DuplicateRutCheck(ConnectionSource connectionSource) {
+    this.schema = new Schema(connectionSource);
+  }
+
+  /**
+   * @throws SQLException with the ruts repeated, if any.
+   */
+  @Override
+  public void migrate() throws SQLException {
+
+    // A new database: nothing to check
+    if (this.schema.columnType(TABLE, "rutNumero") == null) {
+      return;
+    }
+
+    String rutNumero = this.schema.escape("rutNumero");
+    String sql = "SELECT CAST(" + rutNumero + " AS VARCHAR) || ' (' || COUNT(*) || ' personas)' FROM "
+      + this.schema.escape(TABLE) + " WHERE " + rutNumero + " IS NOT NULL GROUP BY " + rutNumero
+      + " HAVING COUNT(*) > 1 ORDER BY " + rutNumero + " LIMIT " + (MAX_REPORTED + 1);
+
+    List<String> repeated = this.schema.query(TABLE, sql, 0);
+    if (repeated.isEmpty()) {
+      return;
+    }
+
+    String ruts = String.join(", ", repeated.subList(0, Math.min(MAX_REPORTED, repeated.size())));
+    throw new SQLException("The ruts " + ruts + (repeated.size() > MAX_REPORTED ? " and more" : "")
+      + " are repeated in " + TABLE + ": merge or delete the personas repeated before the unique index of the rut"
+      + " is created");
+  }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.DatabaseTableConfig;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Report the indexes missing: the foreign keys of the model without an index starting with them (from the annotations
+ * and the indexes in the database), and the queries of a log reading all the rows of a table (from their plans).
+ *
+ * @author Miguel León Garrido.
+ */
+public final class IndexAdvisor {
+
+  /**
+   * The connection to the database.
+   */
+  private final ConnectionSource connectionSource;
+
+  /**
+   * The schema of the database.
+   */
+  private final Schema schema;
+
+  /**
+   * The Constructor.
+   *
+   * @param connectionSource to inspect.
+   */
+  public IndexAdvisor(ConnectionSource connectionSource) {
+    this.connectionSource = connectionSource;
+    this.schema = new Schema(connectionSource);
+  }
+
+  /**
+   * @param classes of the model (the tables).
+   * @param queryLog the queries run (with ? as arguments).
+   * @return the indexes missing, a line each (empty if none).
+   */
+  public List<String> advise(Collection<Class<?>> classes, Collection<String> queryLog) throws SQLException {
+
+    List<String> advices = new ArrayList<>();
+
+    // The foreign keys, by the annotations
+    for (Class<?> theClass : classes) {
+      DatabaseTableConfig<?> config = DatabaseTableConfig.fromClass(this.connectionSource, theClass);
+      Set<String> indexed = this.schema.leadingIndexColumns(config.getTableName());
+
+      for (FieldType fieldType : config.getFieldTypes(this.connectionSource.getDatabaseType())) {
+        if (fieldType.isForeign() && !indexed.contains(fieldType.getColumnName().toLowerCase(Locale.ROOT))) {
+          advices.add("Foreign key without index: " + config.getTableName() + "." + fieldType.getColumnName()
+            + (fieldType.getIndexName() != null ? " (annotated as " + fieldType.getIndexName() + ")" : ""));
+        }
+      }
+    }
+
+    // The queries, by their plans
+    for (String query : queryLog) {
+      for (String line : this.schema.queryPlan(query)) {
+        if (this.schema.isFullScan(line)) {
+          advices.add("Full scan (" + line.trim() + "): " + query);
+        }
+      }
+    }
+
+    return advices;
+  }
+
+}
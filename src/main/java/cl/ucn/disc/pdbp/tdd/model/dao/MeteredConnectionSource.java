@@ -0,0 +1,632 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import com.j256.ormlite.dao.ObjectCache;
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.misc.IOUtils;
+import com.j256.ormlite.stmt.GenericRowMapper;
+import com.j256.ormlite.stmt.StatementBuilder.StatementType;
+import com.j256.ormlite.support.CompiledStatement;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.support.DatabaseConnectionProxy;
+import com.j256.ormlite.support.DatabaseResults;
+import com.j256.ormlite.support.GeneratedKeyHolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Measures all the statements run in the connections of other {@link ConnectionSource} (the methods of the
+ * repositories, the QueryBuilders and the raw queries) in a {@link QueryMetrics}. The time of a query is the time to
+ * run it plus the time reading their rows, not the time of the caller between the rows (a response written while
+ * reading).
+ *
+ * @author Miguel León Garrido.
+ */
+public final class MeteredConnectionSource implements ConnectionSource {
+
+  /**
+   * The database.
+   */
+  private final ConnectionSource connectionSource;
+
+  /**
+   * The metrics of the statements.
+   */
+  private final QueryMetrics metrics;
+
+  /**
+   * The Constructor.
+   *
+   * @param connectionSource the database to measure.
+   * @param metrics of the statements.
+   */
+  public MeteredConnectionSource(ConnectionSource connectionSource, QueryMetrics metrics) {
+
+    if (connectionSource == null || metrics == null) {
+      throw new IllegalArgumentException("Invalid metered configuration!");
+    }
+
+    this.connectionSource = connectionSource;
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return the database measured.
+   */
+  public ConnectionSource getConnectionSource() {
+    return this.connectionSource;
+  }
+
+  /**
+   * @return the metrics of the statements.
+   */
+  public QueryMetrics getQueryMetrics() {
+    return this.metrics;
+  }
+
+  @Override
+  public DatabaseConnection getReadOnlyConnection(String tableName) throws SQLException {
+    return this.metered(this.connectionSource.getReadOnlyConnection(tableName));
+  }
+
+  @Override
+  public DatabaseConnection getReadWriteConnection(String tableName) throws SQLException {
+    return this.metered(this.connectionSource.getReadWriteConnection(tableName));
+  }
+
+  /**
+   * Release the connection measured in the database that gave it.
+   */
+  @Override
+  public void releaseConnection(DatabaseConnection connection) throws SQLException {
+    this.connectionSource.releaseConnection(unwrap(connection));
+  }
+
+  @Override
+  public boolean saveSpecialConnection(DatabaseConnection connection) throws SQLException {
+    return this.connectionSource.saveSpecialConnection(unwrap(connection));
+  }
+
+  @Override
+  public void clearSpecialConnection(DatabaseConnection connection) {
+    this.connectionSource.clearSpecialConnection(unwrap(connection));
+  }
+
+  @Override
+  public DatabaseConnection getSpecialConnection(String tableName) {
+    DatabaseConnection connection = this.connectionSource.getSpecialConnection(tableName);
+    return connection == null ? null : this.metered(connection);
+  }
+
+  @Override
+  public DatabaseType getDatabaseType() {
+    return this.connectionSource.getDatabaseType();
+  }
+
+  @Override
+  public boolean isOpen(String tableName) {
+    return this.connectionSource.isOpen(tableName);
+  }
+
+  @Override
+  public boolean isSingleConnection(String tableName) {
+    return this.connectionSource.isSingleConnection(tableName);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.connectionSource.close();
+  }
+
+  @Override
+  public void closeQuietly() {
+    IOUtils.closeQuietly(this);
+  }
+
+  /**
+   * @param connection of the database.
+   * @return the connection measured.
+   */
+  private DatabaseConnection metered(DatabaseConnection connection) {
+    return new MeteredConnection(connection, this.metrics);
+  }
+
+  /**
+   * @param connection measured or not.
+   * @return the connection of the database.
+   */
+  private static DatabaseConnection unwrap(DatabaseConnection connection) {
+    return connection instanceof MeteredConnection ? ((MeteredConnection) connection).connection : connection;
+  }
+
+  /**
+   * A connection measuring their statements.
+   */
+  private static final class MeteredConnection extends DatabaseConnectionProxy {
+
+    /**
+     * The connection of the database.
+     */
+    private final DatabaseConnection connection;
+
+    /**
+     * The metrics of the statements.
+     */
+    private final QueryMetrics metrics;
+
+    /**
+     * The Constructor.
+     */
+    private MeteredConnection(DatabaseConnection connection, QueryMetrics metrics) {
+      super(connection);
+      this.connection = connection;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public int executeStatement(String statementStr, int resultFlags) throws SQLException {
+      long start = System.nanoTime();
+      boolean failed = true;
+      int rows = 0;
+      try {
+        rows = super.executeStatement(statementStr, resultFlags);
+        failed = false;
+        return rows;
+      } finally {
+        this.metrics.record(statementStr, null, Math.max(0, rows), System.nanoTime() - start, failed);
+      }
+    }
+
+    @Override
+    public CompiledStatement compileStatement(String statement, StatementType type, FieldType[] argFieldTypes,
+                                              int resultFlags, boolean cacheStore) throws SQLException {
+      CompiledStatement compiled = super.compileStatement(statement, type, argFieldTypes, resultFlags, cacheStore);
+      return new MeteredStatement(compiled, statement, argFieldTypes == null ? 0 : argFieldTypes.length, this.metrics);
+    }
+
+    @Override
+    public int insert(String statement, Object[] args, FieldType[] argfieldTypes, GeneratedKeyHolder keyHolder)
+      throws SQLException {
+      long start = System.nanoTime();
+      boolean failed = true;
+      int rows = 0;
+      try {
+        rows = super.insert(statement, args, argfieldTypes, keyHolder);
+        failed = false;
+        return rows;
+      } finally {
+        this.metrics.record(statement, args, rows, System.nanoTime() - start, failed);
+      }
+    }
+
+    @Override
+    public int update(String statement, Object[] args, FieldType[] argfieldTypes) throws SQLException {
+      long start = System.nanoTime();
+      boolean failed = true;
+      int rows = 0;
+      try {
+        rows = super.update(statement, args, argfieldTypes);
+        failed = false;
+        return rows;
+      } finally {
+        this.metrics.record(statement, args, rows, System.nanoTime() - start, failed);
+      }
+    }
+
+    @Override
+    public int delete(String statement, Object[] args, FieldType[] argfieldTypes) throws SQLException {
+      long start = System.nanoTime();
+      boolean failed = true;
+      int rows = 0;
+      try {
+        rows = super.delete(statement, args, argfieldTypes);
+        failed = false;
+        return rows;
+      } finally {
+        this.metrics.record(statement, args, rows, System.nanoTime() - start, failed);
+      }
+    }
+
+    @Override
+    public <T> Object queryForOne(String statement, Object[] args, FieldType[] argfieldTypes,
+                                  GenericRowMapper<T> rowMapper, ObjectCache objectCache) throws SQLException {
+      long start = System.nanoTime();
+      boolean failed = true;
+      Object result = null;
+      try {
+        result = super.queryForOne(statement, args, argfieldTypes, rowMapper, objectCache);
+        failed = false;
+        return result;
+      } finally {
+        this.metrics.record(statement, args, result == null ? 0 : 1, System.nanoTime() - start, failed);
+      }
+    }
+
+    @Override
+    public long queryForLong(String statement) throws SQLException {
+      return this.queryForLong(statement, null, null);
+    }
+
+    @Override
+    public long queryForLong(String statement, Object[] args, FieldType[] argFieldTypes) throws SQLException {
+      long start = System.nanoTime();
+      boolean failed = true;
+      try {
+        long result = args == null ? super.queryForLong(statement)
+          : super.queryForLong(statement, args, argFieldTypes);
+        failed = false;
+        return result;
+      } finally {
+        this.metrics.record(statement, args, failed ? 0 : 1, System.nanoTime() - start, failed);
+      }
+    }
+
+  }
+
+  /**
+   * A statement measuring the time to run it and to read their rows, recorded when closed.
+   */
+  private static final class MeteredStatement implements CompiledStatement {
+
+    /**
+     * The statement of the database.
+     */
+    private final CompiledStatement statement;
+
+    /**
+     * The SQL.
+     */
+    private final String sql;
+
+    /**
+     * The values of the arguments.
+     */
+    private final Object[] args;
+
+    /**
+     * The metrics of the statements.
+     */
+    private final QueryMetrics metrics;
+
+    /**
+     * The time running the statement and reading the rows.
+     */
+    private long nanos;
+
+    /**
+     * The rows read or written.
+     */
+    private long rows;
+
+    /**
+     * True if the statement was run.
+     */
+    private boolean run;
+
+    /**
+     * True if the statement failed.
+     */
+    private boolean failed;
+
+    /**
+     * The Constructor.
+     */
+    private MeteredStatement(CompiledStatement statement, String sql, int numArgs, QueryMetrics metrics) {
+      this.statement = statement;
+      this.sql = sql;
+      this.args = new Object[numArgs];
+      this.metrics = metrics;
+    }
+
+    @Override
+    public int getColumnCount() throws SQLException {
+      return this.statement.getColumnCount();
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) throws SQLException {
+      return this.statement.getColumnName(columnIndex);
+    }
+
+    @Override
+    public int runUpdate() throws SQLException {
+      long start = System.nanoTime();
+      this.run = true;
+      this.failed = true;
+      try {
+        int updated = this.statement.runUpdate();
+        this.rows += Math.max(0, updated);
+        this.failed = false;
+        return updated;
+      } finally {
+        this.nanos += System.nanoTime() - start;
+      }
+    }
+
+    @Override
+    public DatabaseResults runQuery(ObjectCache objectCache) throws SQLException {
+      long start = System.nanoTime();
+      this.run = true;
+      this.failed = true;
+      try {
+        DatabaseResults results = new MeteredResults(this.statement.runQuery(objectCache), this);
+        this.failed = false;
+        return results;
+      } finally {
+        this.nanos += System.nanoTime() - start;
+      }
+    }
+
+    @Override
+    public int runExecute() throws SQLException {
+      long start = System.nanoTime();
+      this.run = true;
+      this.failed = true;
+      try {
+        int executed = this.statement.runExecute();
+        this.rows += Math.max(0, executed);
+        this.failed = false;
+        return executed;
+      } finally {
+        this.nanos += System.nanoTime() - start;
+      }
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+      this.statement.cancel();
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object obj, SqlType sqlType) throws SQLException {
+      if (parameterIndex >= 0 && parameterIndex < this.args.length) {
+        this.args[parameterIndex] = obj;
+      }
+      this.statement.setObject(parameterIndex, obj, sqlType);
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+      this.statement.setMaxRows(max);
+    }
+
+    @Override
+    public void setQueryTimeout(long millis) throws SQLException {
+      this.statement.setQueryTimeout(millis);
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.record();
+      this.statement.close();
+    }
+
+    @Override
+    public void closeQuietly() {
+      this.record();
+      this.statement.closeQuietly();
+    }
+
+    /**
+     * Record the statement, once, if it was run.
+     */
+    private void record() {
+      if (this.run) {
+        this.run = false;
+        this.metrics.record(this.sql, this.args, this.rows, this.nanos, this.failed);
+      }
+    }
+
+  }
+
+  /**
+   * The rows of a query, measuring the time to read them.
+   */
+  private static final class MeteredResults implements DatabaseResults {
+
+    /**
+     * The rows of the database.
+     */
+    private final DatabaseResults results;
+
+    /**
+     * The statement of the query.
+     */
+    private final MeteredStatement statement;
+
+    /**
+     * The Constructor.
+     */
+    private MeteredResults(DatabaseResults results, MeteredStatement statement) {
+      this.results = results;
+      this.statement = statement;
+    }
+
+    /**
+     * @param moved true if the cursor is over a row.
+     * @param start of the move.
+     * @return moved.
+     */
+    private boolean read(boolean moved, long start) {
+      this.statement.nanos += System.nanoTime() - start;
+      if (moved) {
+        this.statement.rows++;
+      }
+      return moved;
+    }
+
+    @Override
+    public boolean first() throws SQLException {
+      long start = System.nanoTime();
+      return this.read(this.results.first(), start);
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+      long start = System.nanoTime();
+      return this.read(this.results.next(), start);
+    }
+
+    @Override
+    public int getColumnCount() throws SQLException {
+      return this.results.getColumnCount();
+    }
+
+    @Override
+    public String[] getColumnNames() throws SQLException {
+      return this.results.getColumnNames();
+    }
+
+    @Override
+    public boolean previous() throws SQLException {
+      return this.results.previous();
+    }
+
+    @Override
+    public boolean last() throws SQLException {
+      return this.results.last();
+    }
+
+    @Override
+    public boolean moveRelative(int offset) throws SQLException {
+      return this.results.moveRelative(offset);
+    }
+
+    @Override
+    public boolean moveAbsolute(int position) throws SQLException {
+      return this.results.moveAbsolute(position);
+    }
+
+    @Override
+    public int findColumn(String columnName) throws SQLException {
+      return this.results.findColumn(columnName);
+    }
+
+    @Override
+    public String getString(int columnIndex) throws SQLException {
+      return this.results.getString(columnIndex);
+    }
+
+    @Override
+    public boolean getBoolean(int columnIndex) throws SQLException {
+      return this.results.getBoolean(columnIndex);
+    }
+
+    @Override
+    public char getChar(int columnIndex) throws SQLException {
+      return this.results.getChar(columnIndex);
+    }
+
+    @Override
+    public byte getByte(int columnIndex) throws SQLException {
+      return this.results.getByte(columnIndex);
+    }
+
+    @Override
+    public byte[] getBytes(int columnIndex) throws SQLException {
+      return this.results.getBytes(columnIndex);
+    }
+
+    @Override
+    public short getShort(int columnIndex) throws SQLException {
+      return this.results.getShort(columnIndex);
+    }
+
+    @Override
+    public int getInt(int columnIndex) throws SQLException {
+      return this.results.getInt(columnIndex);
+    }
+
+    @Override
+    public long getLong(int columnIndex) throws SQLException {
+      return this.results.getLong(columnIndex);
+    }
+
+    @Override
+    public float getFloat(int columnIndex) throws SQLException {
+      return this.results.getFloat(columnIndex);
+    }
+
+    @Override
+    public double getDouble(int columnIndex) throws SQLException {
+      return this.results.getDouble(columnIndex);
+    }
+
+    @Override
+    public Timestamp getTimestamp(int columnIndex) throws SQLException {
+      return this.results.getTimestamp(columnIndex);
+    }
+
+    @Override
+    public InputStream getBlobStream(int columnIndex) throws SQLException {
+      return this.results.getBlobStream(columnIndex);
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+      return this.results.getBigDecimal(columnIndex);
+    }
+
+    @Override
+    public Object getObject(int columnIndex) throws SQLException {
+      return this.results.getObject(columnIndex);
+    }
+
+    @Override
+    public boolean wasNull(int columnIndex) throws SQLException {
+      return this.results.wasNull(columnIndex);
+    }
+
+    @Override
+    public ObjectCache getObjectCacheForRetrieve() {
+      return this.results.getObjectCacheForRetrieve();
+    }
+
+    @Override
+    public ObjectCache getObjectCacheForStore() {
+      return this.results.getObjectCacheForStore();
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.results.close();
+    }
+
+    @Override
+    public void closeQuietly() {
+      this.results.closeQuietly();
+    }
+
+  }
+
+}
@@ -0,0 +1,475 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The versions of the schema: the {@link Migration}s are applied in the order of their version, once, and recorded in
+ * the table schema_version, in the same transaction if the database has transactional DDL (SQLite, PostgreSQL; not
+ * H2, where each DDL statement commits). The {@link Backfill}s fill the rows by chunks, at startup or in a thread in the background
+ * (after the other migrations, with a pause between chunks to leave the database to the requests). A backfill in the
+ * background is recorded when finished, and continues in the next startup if interrupted: the later migrations can't
+ * depend on it.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class Migrator implements Closeable {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(Migrator.class);
+
+  /**
+   * The time to wait for the chunk of a backfill running when closed.
+   */
+  private static final long CLOSE_TIMEOUT_MILLIS = 30_000;
+
+  /**
+   * The connection to the database.
+   */
+  private final ConnectionSource connectionSource;
+
+  /**
+   * The schema of the database.
+   */
+  private final Schema schema;
+
+  /**
+   * True if the DDL statements run inside a transaction (rolled back with it).
+   */
+  private final boolean transactionalDdl;
+
+  /**
+   * The rows filled by chunk.
+   */
+  private final int chunkSize;
+
+  /**
+   * The pause between the chunks of the backfills in the background.
+   */
+  private final long pauseMillis;
+
+  /**
+   * The steps, by version.
+   */
+  private final SortedMap<Integer, Step> steps = new TreeMap<>();
+
+  /**
+   * The thread of the backfills in the background.
+   */
+  private final ExecutorService background = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "migrator-backfill");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Counted down when closed: stops the backfills in the background between chunks.
+   */
+  private final CountDownLatch closing = new CountDownLatch(1);
+
+  /**
+   * The last version applied.
+   */
+  private final AtomicInteger version = new AtomicInteger();
+
+  /**
+   * Number of migrations applied.
+   */
+  private final AtomicLong appliedCount = new AtomicLong();
+
+  /**
+   * Number of rows filled by the backfills.
+   */
+  private final AtomicLong rowsCount = new AtomicLong();
+
+  /**
+   * Number of backfills in the background not finished.
+   */
+  private final AtomicInteger pendingCount = new AtomicInteger();
+
+  /**
+   * Number of migrations failed.
+   */
+  private final AtomicLong failedCount = new AtomicLong();
+
+  /**
+   * The Constructor.
+   *
+   * @param connectionSource to migrate.
+   * @param chunkSize the rows filled by chunk.
+   * @param pauseMillis the pause between the chunks of the backfills in the background.
+   */
+  public Migrator(ConnectionSource connectionSource, int chunkSize, long pauseMillis) {
+    if (chunkSize < 1 || pauseMillis < 0) {
+      throw new IllegalArgumentException("Invalid size of chunk or pause!");
+    }
+    this.connectionSource = connectionSource;
+    this.schema = new Schema(connectionSource);
+    String database = connectionSource.getDatabaseType().getDatabaseName();
+    this.transactionalDdl = "SQLite".equals(database) || "Postgres".equals(database);
+    this.chunkSize = chunkSize;
+    this.pauseMillis = pauseMillis;
+  }
+
+  /**
+   * Add a migration.
+   *
+   * @param version of the migration, unique.
+   * @param description of the migration.
+   * @param migration to apply.
+   * @return this migrator.
+   */
+  public Migrator add(int version, String description, Migration migration) {
+    return this.add(new Step(version, description, migration, null, false, true));
+  }
+
+  /**
+   * Add a migration of statements (DDL or DML), executed in order.
+   *
+   * @param version of the migration, unique.
+   * @param description of the migration.
+   * @param statements to execute.
+   * @return this migrator.
+   */
+  public Migrator addSql(int version, String description, String... statements) {
+    return this.add(version, description, () -> {
+      for (String statement : statements) {
+        this.schema.execute(null, statement);
+      }
+    });
+  }
+
+  /**
+   * Add the creation of an index (if not exists). The index is created outside of a transaction: in SQLite (WAL) the
+   * readers continue while it is built, the writers wait (neither SQLite nor H2 build an index concurrently).
+   *
+   * @param version of the migration, unique.
+   * @param table of the index.
+   * @param name of the index.
+   * @param unique true for an unique index.
+   * @param columns of the index, in order.
+   * @return this migrator.
+   */
+  public Migrator addIndex(int version, String table, String name, boolean unique, String... columns) {
+    if (columns.length == 0) {
+      throw new IllegalArgumentException("Index without columns!");
+    }
+    return this.add(new Step(version, "Index " + name + " of " + table, () -> {
+      StringBuilder sql = new StringBuilder("CREATE ").append(unique ? "UNIQUE " : "").append("INDEX IF NOT EXISTS ")
+        .append(this.schema.escape(name)).append(" ON ").append(this.schema.escape(table)).append(" (");
+      for (int i = 0; i < columns.length; i++) {
+        sql.append(i > 0 ? ", " : "").append(this.schema.escape(columns[i]));
+      }
+      this.schema.execute(table, sql.append(')').toString());
+    }, null, false, false));
+  }
+
+  /**
+   * Add a backfill.
+   *
+   * @param version of the migration, unique.
+   * @param description of the migration.
+   * @param backfill to run.
+   * @param inBackground true to fill in the background (the startup doesn't wait), false to fill at startup.
+   * @return this migrator.
+   */
+  public Migrator addBackfill(int version, String description, Backfill backfill, boolean inBackground) {
+    return this.add(new Step(version, description, null, backfill, inBackground, false));
+  }
+
+  /**
+   * @param step to add.
+   * @return this migrator.
+   */
+  private Migrator add(Step step) {
+    if (step.version < 1) {
+      throw new IllegalArgumentException("The versions start at 1!");
+    }
+    if (this.steps.putIfAbsent(step.version, step) != null) {
+      throw new IllegalArgumentException("The version " + step.version + " already exists!");
+    }
+    return this;
+  }
+
+  /**
+   * Apply the migrations not recorded, in order, and start the backfills in the background. A migration failed stops
+   * the migrations after it.
+   *
+   * @return the number of migrations applied (the backfills in the background not included).
+   */
+  public int migrate() throws SQLException {
+
+    TableUtils.createTableIfNotExists(this.connectionSource, SchemaVersion.class);
+    Repository<SchemaVersion, Integer> repo = new RepositoryOrmLite<>(this.connectionSource, SchemaVersion.class);
+
+    Set<Integer> applied = new HashSet<>();
+    for (SchemaVersion schemaVersion : repo.findAll()) {
+      applied.add(schemaVersion.getVersion());
+      this.version.accumulateAndGet(schemaVersion.getVersion(), Math::max);
+    }
+    if (!this.steps.isEmpty() && this.version.get() > this.steps.lastKey()) {
+      log.warn("The database is in the version {}, newer than the last known {}.", this.version.get(),
+        this.steps.lastKey());
+    }
+
+    int count = 0;
+    List<Step> inBackground = new ArrayList<>();
+    for (Step step : this.steps.values()) {
+      if (applied.contains(step.version)) {
+        continue;
+      }
+
+      long start = System.currentTimeMillis();
+      try {
+        if (step.backfill == null && step.inTransaction && this.transactionalDdl) {
+          // The migration and their record, all or none
+          TransactionManager.callInTransaction(this.connectionSource, () -> {
+            step.migration.migrate();
+            this.record(repo, step, System.currentTimeMillis() - start, 0);
+            return null;
+          });
+        } else if (step.backfill == null) {
+          step.migration.migrate();
+          this.record(repo, step, System.currentTimeMillis() - start, 0);
+        } else {
+          step.backfill.prepare();
+          if (step.inBackground) {
+            inBackground.add(step);
+            continue;
+          }
+          long rows = this.fill(step, 0);
+          this.record(repo, step, System.currentTimeMillis() - start, rows);
+        }
+      } catch (SQLException | RuntimeException ex) {
+        this.failedCount.incrementAndGet();
+        throw new SQLException("Can't migrate to the version " + step.version + ": " + step.description, ex);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted in the version " + step.version + ": " + step.description, ex);
+      }
+      count++;
+    }
+
+    if (!inBackground.isEmpty()) {
+      this.pendingCount.addAndGet(inBackground.size());
+      this.background.execute(() -> this.fillInBackground(repo, inBackground));
+    }
+    return count;
+  }
+
+  /**
+   * Run the backfills in the background, in order. A backfill failed stops the backfills after it (until the next
+   * startup).
+   *
+   * @param repo of the versions.
+   * @param inBackground the backfills.
+   */
+  private void fillInBackground(Repository<SchemaVersion, Integer> repo, List<Step> inBackground) {
+    for (Step step : inBackground) {
+      long start = System.currentTimeMillis();
+      try {
+        long rows = this.fill(step, this.pauseMillis);
+        this.record(repo, step, System.currentTimeMillis() - start, rows);
+        this.pendingCount.decrementAndGet();
+      } catch (SQLException | RuntimeException ex) {
+        this.failedCount.incrementAndGet();
+        log.error("Can't fill the version {}: {}.", step.version, step.description, ex);
+        return;
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Fill by chunks, a transaction by chunk.
+   *
+   * @param step of the backfill.
+   * @param pauseMillis between the chunks.
+   * @return the rows filled.
+   */
+  private long fill(Step step, long pauseMillis) throws SQLException, InterruptedException {
+    long rows = 0;
+    int filled;
+    do {
+      filled = TransactionManager.callInTransaction(this.connectionSource, () -> step.backfill.fill(this.chunkSize));
+      rows += filled;
+      this.rowsCount.addAndGet(filled);
+
+      // The pause, unless closed: the next chunks in the next startup
+      if (filled == this.chunkSize && this.closing.await(pauseMillis, TimeUnit.MILLISECONDS)) {
+        throw new InterruptedException("The migrator was closed");
+      }
+    } while (filled == this.chunkSize);
+    return rows;
+  }
+
+  /**
+   * Record a migration applied.
+   *
+   * @param repo of the versions.
+   * @param step applied.
+   * @param durationMillis of the migration.
+   * @param rows filled.
+   */
+  private void record(Repository<SchemaVersion, Integer> repo, Step step, long durationMillis, long rows) {
+    repo.create(new SchemaVersion(step.version, step.description, durationMillis, rows));
+    this.version.accumulateAndGet(step.version, Math::max);
+    this.appliedCount.incrementAndGet();
+    log.info("Migrated to the version {}: {} ({} ms, {} rows).", step.version, step.description, durationMillis,
+      rows);
+  }
+
+  /**
+   * Wait for the backfills in the background.
+   *
+   * @param timeout to wait.
+   * @param unit of the timeout.
+   * @return true if finished, false if the timeout elapsed.
+   */
+  public boolean awaitBackfills(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (this.pendingCount.get() > 0 && this.failedCount.get() == 0) {
+      if (System.nanoTime() > deadline) {
+        return false;
+      }
+      Thread.sleep(10);
+    }
+    return this.pendingCount.get() == 0;
+  }
+
+  /**
+   * @return the last version applied.
+   */
+  public int getVersion() {
+    return this.version.get();
+  }
+
+  /**
+   * @return the metrics of the migrations, by name.
+   */
+  public Map<String, Number> getMetrics() {
+    Map<String, Number> metrics = new LinkedHashMap<>();
+    metrics.put("version", this.version.get());
+    metrics.put("applied_total", this.appliedCount.get());
+    metrics.put("failed_total", this.failedCount.get());
+    metrics.put("backfill_rows_total", this.rowsCount.get());
+    metrics.put("backfills_pending", this.pendingCount.get());
+    return metrics;
+  }
+
+  /**
+   * Stop the backfills in the background after their chunk running (they continue in the next startup), waiting for
+   * it so the connections can be closed.
+   */
+  @Override
+  public void close() {
+    this.closing.countDown();
+    this.background.shutdown();
+    try {
+      if (!this.background.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        log.warn("The backfills in the background didn't stop in {} ms.", CLOSE_TIMEOUT_MILLIS);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * A migration and their version.
+   */
+  private static final class Step {
+
+    /**
+     * The version.
+     */
+    private final int version;
+
+    /**
+     * What it does.
+     */
+    private final String description;
+
+    /**
+     * The migration, null in the backfills.
+     */
+    private final Migration migration;
+
+    /**
+     * The backfill, null in the migrations.
+     */
+    private final Backfill backfill;
+
+    /**
+     * True to fill in the background.
+     */
+    private final boolean inBackground;
+
+    /**
+     * True to apply the migration and their record in a transaction (if the DDL is transactional).
+     */
+    private final boolean inTransaction;
+
+    /**
+     * The Constructor.
+     */
+    private Step(int version, String description, Migration migration, Backfill backfill, boolean inBackground,
+                 boolean inTransaction) {
+      this.version = version;
+      this.description = description;
+      this.migration = migration;
+      this.backfill = backfill;
+      this.inBackground = inBackground;
+      this.inTransaction = inTransaction;
+    }
+
+  }
+
+}
@@ -0,0 +1,331 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of connections: the ORMLite {@link JdbcPooledConnectionSource} plus a max size (the threads wait for a free
+ * connection), min idle connections, a validation query, leak detection and metrics.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class PooledConnectionSource extends JdbcPooledConnectionSource {
+
+  /**
+   * The Logger.
+   */
+  private static final Logger log = LoggerFactory.getLogger(PooledConnectionSource.class);
+
+  /**
+   * The configuration.
+   */
+  private final DatabaseConfig config;
+
+  /**
+   * One permit by connection in use.
+   */
+  private final Semaphore permits;
+
+  /**
+   * The connections in use and when they were acquired (plus who acquired them, when detecting leaks).
+   */
+  private final Map<DatabaseConnection, Checkout> checkouts = new ConcurrentHashMap<>();
+
+  /**
+   * Number of connections acquired.
+   */
+  private final AtomicLong acquireCount = new AtomicLong();
+
+  /**
+   * Total time waiting for a connection.
+   */
+  private final AtomicLong waitNanos = new AtomicLong();
+
+  /**
+   * Max time waiting for a connection.
+   */
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+
+  /**
+   * Number of times the wait for a connection timed out.
+   */
+  private final AtomicLong timeoutCount = new AtomicLong();
+
+  /**
+   * Number of leaks detected.
+   */
+  private final AtomicLong leakCount = new AtomicLong();
+
+  /**
+   * The leak detector, null if disabled.
+   */
+  private final ScheduledExecutorService leakDetector;
+
+  /**
+   * The Constructor.
+   *
+   * @param config of the pool.
+   */
+  public PooledConnectionSource(DatabaseConfig config) throws SQLException {
+    this(config, config.getUrl());
+  }
+
+  /**
+   * The Constructor of a pool to other database (a replica) with the same configuration.
+   *
+   * @param config of the pool.
+   * @param url jdbc string to connect to backend.
+   */
+  public PooledConnectionSource(DatabaseConfig config, String url) throws SQLException {
+    super();
+
+    if (config.getMaxSize() < 1 || config.getMinIdle() > Math.min(config.getMaxIdle(), config.getMaxSize())) {
+      throw new IllegalArgumentException("Invalid pool size!");
+    }
+
+    this.config = config;
+    this.permits = new Semaphore(config.getMaxSize(), true);
+
+    this.setUrl(url);
+    this.setMaxConnectionsFree(config.getMaxIdle());
+    this.setMaxConnectionAgeMillis(config.getMaxConnectionAgeMillis());
+    this.setCheckConnectionsEveryMillis(config.getCheckConnectionsEveryMillis());
+    this.setTestBeforeGet(config.getValidationQuery() != null);
+    this.initialize();
+
+    // Opening the min idle connections
+    List<DatabaseConnection> connections = new ArrayList<>();
+    for (int i = 0; i < config.getMinIdle(); i++) {
+      connections.add(this.getReadWriteConnection(null));
+    }
+    for (DatabaseConnection connection : connections) {
+      this.releaseConnection(connection);
+    }
+
+    // The leak detector
+    long threshold = config.getLeakDetectionThresholdMillis();
+    if (threshold > 0) {
+      this.leakDetector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "connection leak detector");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.leakDetector.scheduleWithFixedDelay(this::detectLeaks, threshold, threshold, TimeUnit.MILLISECONDS);
+    } else {
+      this.leakDetector = null;
+    }
+  }
+
+  /**
+   * Wait for a free connection (up to the acquire timeout). The connection saved by a transaction is returned
+   * without waiting, the thread already has it.
+   *
+   * @see JdbcPooledConnectionSource#getReadWriteConnection(String)
+   */
+  @Override
+  public DatabaseConnection getReadWriteConnection(String tableName) throws SQLException {
+
+    if (this.getSavedConnection() != null) {
+      return super.getReadWriteConnection(tableName);
+    }
+
+    long start = System.nanoTime();
+    try {
+      if (!this.permits.tryAcquire(this.config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+        this.timeoutCount.incrementAndGet();
+        throw new SQLException("Timeout waiting for a connection, " + this.permits.getQueueLength() + " waiting");
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted waiting for a connection", ex);
+    }
+
+    long waited = System.nanoTime() - start;
+    this.acquireCount.incrementAndGet();
+    this.waitNanos.addAndGet(waited);
+    this.maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+    try {
+      DatabaseConnection connection = super.getReadWriteConnection(tableName);
+      this.checkouts.put(connection, new Checkout(this.config.getLeakDetectionThresholdMillis() > 0));
+      return connection;
+    } catch (SQLException | RuntimeException ex) {
+      this.permits.release();
+      throw ex;
+    }
+  }
+
+  /**
+   * @see JdbcPooledConnectionSource#releaseConnection(DatabaseConnection)
+   */
+  @Override
+  public void releaseConnection(DatabaseConnection connection) throws SQLException {
+
+    if (this.isSavedConnection(connection)) {
+      super.releaseConnection(connection);
+      return;
+    }
+
+    Checkout checkout = this.checkouts.remove(connection);
+    try {
+      super.releaseConnection(connection);
+    } finally {
+      if (checkout != null) {
+        this.permits.release();
+      }
+    }
+  }
+
+  /**
+   * Validate with the configured query instead of the ping statement of the database.
+   *
+   * @see JdbcPooledConnectionSource#testConnection(ConnectionMetaData)
+   */
+  @Override
+  protected boolean testConnection(ConnectionMetaData connMetaData) {
+    if (this.config.getValidationQuery() == null) {
+      return super.testConnection(connMetaData);
+    }
+    try {
+      connMetaData.connection.queryForLong(this.config.getValidationQuery());
+      return true;
+    } catch (Exception ex) {
+      log.debug("Connection {} failed the validation: {}", connMetaData, ex.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * @see JdbcPooledConnectionSource#close()
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.leakDetector != null) {
+      this.leakDetector.shutdownNow();
+    }
+    super.close();
+  }
+
+  /**
+   * @return the connections in use.
+   */
+  public int getActiveConnections() {
+    return this.checkouts.size();
+  }
+
+  /**
+   * @return the connections open and not in use.
+   */
+  public int getIdleConnections() {
+    return this.getCurrentConnectionsFree();
+  }
+
+  /**
+   * @return the threads waiting for a connection.
+   */
+  public int getWaitingThreads() {
+    return this.permits.getQueueLength();
+  }
+
+  /**
+   * @return the metrics of the pool, by name.
+   */
+  public Map<String, Number> getMetrics() {
+    Map<String, Number> metrics = new LinkedHashMap<>();
+    metrics.put("active", this.getActiveConnections());
+    metrics.put("idle", this.getIdleConnections());
+    metrics.put("max_size", this.config.getMaxSize());
+    metrics.put("waiting", this.getWaitingThreads());
+    metrics.put("acquired_total", this.acquireCount.get());
+    metrics.put("wait_seconds_total", this.waitNanos.get() / 1e9);
+    metrics.put("wait_seconds_max", this.maxWaitNanos.get() / 1e9);
+    metrics.put("timeouts_total", this.timeoutCount.get());
+    metrics.put("leaks_total", this.leakCount.get());
+    metrics.put("opened_total", this.getOpenCount());
+    metrics.put("closed_total", this.getCloseCount());
+    return metrics;
+  }
+
+  /**
+   * Report the connections in use for more time than the threshold.
+   */
+  private void detectLeaks() {
+    long threshold = this.config.getLeakDetectionThresholdMillis();
+    long now = System.currentTimeMillis();
+    for (Checkout checkout : this.checkouts.values()) {
+      if (!checkout.reported && now - checkout.acquiredMillis > threshold) {
+        checkout.reported = true;
+        this.leakCount.incrementAndGet();
+        log.warn("Connection in use for more than {} ms, possible leak. Acquired at:", threshold, checkout.acquiredBy);
+      }
+    }
+  }
+
+  /**
+   * A connection in use.
+   */
+  private static final class Checkout {
+
+    /**
+     * When was acquired.
+     */
+    private final long acquiredMillis = System.currentTimeMillis();
+
+    /**
+     * Who acquired it, null if not detecting leaks.
+     */
+    private final Exception acquiredBy;
+
+    /**
+     * true if already reported as leak.
+     */
+    private volatile boolean reported;
+
+    /**
+     * @param trace true to remember who acquired the connection.
+     */
+    private Checkout(boolean trace) {
+      this.acquiredBy = trace ? new Exception("Connection acquired") : null;
+    }
+  }
+
+}
@@ -0,0 +1,344 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.utils.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The metrics of the statements run by a {@link MeteredConnectionSource}: the latency and the rows by operation
+ * (select, insert, update, delete and other), the statements by request and the slow queries, logged with the SQL and
+ * the types of the arguments (their values, personal data, only if enabled) and the distinct selects (for the
+ * {@link IndexAdvisor}). A request is followed from {@link #beginRequest()} to {@link #endRequest(Request)} in
+ * the thread of the request and in the threads of the {@link DatabaseExecutor} running their tasks.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class QueryMetrics {
+
+  /**
+   * The Logger.
+   */
+  private static final Logger log = LoggerFactory.getLogger(QueryMetrics.class);
+
+  /**
+   * The operations, by the first word of the SQL (the rest are other).
+   */
+  private static final String[] OPERATIONS = {"select", "insert", "update", "delete", "other"};
+
+  /**
+   * The max number of distinct selects kept for {@link #getQueries()}.
+   */
+  private static final int MAX_QUERIES = 256;
+
+  /**
+   * The request followed by the thread, null if none.
+   */
+  private static final ThreadLocal<Request> REQUEST = new ThreadLocal<>();
+
+  /**
+   * The time of a statement to be logged as slow, 0 to not log.
+   */
+  private final long slowQueryNanos;
+
+  /**
+   * True to log the values of the arguments of the slow queries, false to log their types.
+   */
+  private final boolean logArgs;
+
+  /**
+   * The latency in nanoseconds, by operation.
+   */
+  private final Histogram[] latencies = new Histogram[OPERATIONS.length];
+
+  /**
+   * The rows read or written, by operation.
+   */
+  private final AtomicLongArray rows = new AtomicLongArray(OPERATIONS.length);
+
+  /**
+   * The statements failed.
+   */
+  private final AtomicLong errorCount = new AtomicLong();
+
+  /**
+   * The statements slower than {@link #slowQueryNanos}.
+   */
+  private final AtomicLong slowCount = new AtomicLong();
+
+  /**
+   * The statements by request.
+   */
+  private final Histogram requests = new Histogram();
+
+  /**
+   * The distinct selects run, up to {@link #MAX_QUERIES}.
+   */
+  private final Set<String> queries = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The Constructor, the slow queries logged without the values of the arguments.
+   *
+   * @param slowQueryMillis the time of a statement to be logged as slow, 0 to not log.
+   */
+  public QueryMetrics(long slowQueryMillis) {
+    this(slowQueryMillis, false);
+  }
+
+  /**
+   * The Constructor.
+   *
+   * @param slowQueryMillis the time of a statement to be logged as slow, 0 to not log.
+   * @param logArgs true to log the values of the arguments of the slow queries (personal data), false for their types.
+   */
+  public QueryMetrics(long slowQueryMillis, boolean logArgs) {
+
+    if (slowQueryMillis < 0) {
+      throw new IllegalArgumentException("Invalid slowQueryMillis!");
+    }
+
+    this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+    this.logArgs = logArgs;
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      this.latencies[i] = new Histogram();
+    }
+  }
+
+  /**
+   * Follow a new request in this thread.
+   *
+   * @return the request, to end it and to follow it in other threads.
+   */
+  public static Request beginRequest() {
+    Request request = new Request();
+    REQUEST.set(request);
+    return request;
+  }
+
+  /**
+   * @return the request followed by this thread, null if none.
+   */
+  public static Request getRequest() {
+    return REQUEST.get();
+  }
+
+  /**
+   * @param request to follow in this thread (the task of a request in other thread), null to stop.
+   */
+  public static void setRequest(Request request) {
+    if (request == null) {
+      REQUEST.remove();
+    } else {
+      REQUEST.set(request);
+    }
+  }
+
+  /**
+   * Stop following the request in this thread (any thread: the end of an async request) and record their statements.
+   *
+   * @param request begun by {@link #beginRequest()}.
+   */
+  public void endRequest(Request request) {
+    if (REQUEST.get() == request) {
+      REQUEST.remove();
+    }
+    this.requests.record(request.getStatements());
+  }
+
+  /**
+   * Record a statement.
+   *
+   * @param sql of the statement.
+   * @param args the values of the arguments, null if unknown.
+   * @param rows read or written.
+   * @param nanos running the statement (and reading the rows).
+   * @param failed true if the statement threw an exception.
+   */
+  void record(String sql, Object[] args, long rows, long nanos, boolean failed) {
+
+    int operation = operation(sql);
+    this.latencies[operation].record(nanos);
+    this.rows.addAndGet(operation, rows);
+    if (failed) {
+      this.errorCount.incrementAndGet();
+    }
+    if (operation == 0 && this.queries.size() < MAX_QUERIES) {
+      this.queries.add(sql);
+    }
+
+    Request request = REQUEST.get();
+    if (request != null) {
+      request.statements.incrementAndGet();
+      request.nanos.addAndGet(nanos);
+    }
+
+    if (this.slowQueryNanos > 0 && nanos >= this.slowQueryNanos) {
+      this.slowCount.incrementAndGet();
+      log.warn("Slow query ({} ms, {} rows{}): {} with {}", TimeUnit.NANOSECONDS.toMillis(nanos), rows,
+        failed ? ", failed" : "", sql, this.logArgs ? Arrays.toString(args) : types(args));
+    }
+  }
+
+  /**
+   * @param args of a statement.
+   * @return the number and the types of the arguments, without their values.
+   */
+  private static String types(Object[] args) {
+    StringBuilder sb = new StringBuilder().append(args.length).append(" args [");
+    for (int i = 0; i < args.length; i++) {
+      sb.append(i > 0 ? ", " : "").append(args[i] == null ? "null" : args[i].getClass().getSimpleName());
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * @param sql of the statement.
+   * @return the index of the operation in {@link #OPERATIONS}, by the first word of the sql (ignoring case).
+   */
+  private static int operation(String sql) {
+    int start = 0;
+    while (start < sql.length() && Character.isWhitespace(sql.charAt(start))) {
+      start++;
+    }
+    for (int i = 0; i < OPERATIONS.length - 1; i++) {
+      if (sql.regionMatches(true, start, OPERATIONS[i], 0, OPERATIONS[i].length())) {
+        return i;
+      }
+    }
+    return OPERATIONS.length - 1;
+  }
+
+  /**
+   * @return the latency in nanoseconds of the statements, by operation.
+   */
+  public Map<String, Histogram> getLatencies() {
+    Map<String, Histogram> latencies = new LinkedHashMap<>();
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      latencies.put(OPERATIONS[i], this.latencies[i]);
+    }
+    return latencies;
+  }
+
+  /**
+   * @return the distinct selects run (with ? as arguments), up to 256.
+   */
+  public Set<String> getQueries() {
+    return new TreeSet<>(this.queries);
+  }
+
+  /**
+   * @return the statements by request.
+   */
+  public Histogram getRequests() {
+    return this.requests;
+  }
+
+  /**
+   * @return the metrics of the statements (the count and rows by operation, the failed, the slow and by request), by
+   *   name.
+   */
+  public Map<String, Number> getMetrics() {
+    Map<String, Number> metrics = new LinkedHashMap<>();
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      metrics.put(OPERATIONS[i] + "_total", this.latencies[i].getCount());
+      metrics.put(OPERATIONS[i] + "_rows_total", this.rows.get(i));
+    }
+    metrics.put("errors_total", this.errorCount.get());
+    metrics.put("slow_total", this.slowCount.get());
+    metrics.put("requests_total", this.requests.getCount());
+    metrics.put("request_statements_max", this.requests.getMax());
+    return metrics;
+  }
+
+  /**
+   * The statements of a request, in any thread.
+   */
+  public static final class Request {
+
+    /**
+     * The statements run.
+     */
+    private final AtomicInteger statements = new AtomicInteger();
+
+    /**
+     * The time running the statements.
+     */
+    private final AtomicLong nanos = new AtomicLong();
+
+    /**
+     * True if the request wrote: their next reads go to the primary (see {@link RoutingConnectionSource}).
+     */
+    private volatile boolean sticky;
+
+    /**
+     * The Constructor.
+     */
+    private Request() {
+      // nothing
+    }
+
+    /**
+     * @return true if the reads of the request go to the primary.
+     */
+    boolean isSticky() {
+      return this.sticky;
+    }
+
+    /**
+     * The next reads of the request, in any thread, go to the primary.
+     */
+    void stick() {
+      this.sticky = true;
+    }
+
+    /**
+     * @return the statements run.
+     */
+    public int getStatements() {
+      return this.statements.get();
+    }
+
+    /**
+     * @return the time running the statements, in milliseconds.
+     */
+    public double getMillis() {
+      return this.nanos.get() / 1e6;
+    }
+
+  }
+
+}
@@ -24,8 +24,11 @@
 
 package cl.ucn.disc.pdbp.tdd.model.dao;
 
+import com.j256.ormlite.dao.CloseableIterator;
 import com.j256.ormlite.stmt.QueryBuilder;
 
+import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -40,6 +43,12 @@ public interface Repository<T, K> {
    */
   List<T> findAll();
 
+  /**
+   *
+   * @return a iterator over all the T, it must be closed
+   */
+  CloseableIterator<T> iterator();
+
   /**
    *
    * @param id to search
@@ -54,6 +63,13 @@ public interface Repository<T, K> {
    */
   boolean create(T t);
 
+  /**
+   *
+   * @param ts to save, all or none
+   * @return the number of T saved
+   */
+  int createAll(Collection<T> ts);
+
   /**
    *
    * @param t to update
@@ -76,9 +92,72 @@ public interface Repository<T, K> {
    */
   List<T> findAll(String key, Object value);
 
+  /**
+   *
+   * @param offset number of T to skip
+   * @param limit max number of T
+   * @return the List of T ordered by id
+   */
+  List<T> findAll(long offset, long limit);
+
+  /**
+   *
+   * @param lastId id of the last T of the previous page, null for the first page
+   * @param limit max number of T
+   * @return the List of T with id greater than lastId, ordered by id
+   */
+  List<T> findAllAfter(K lastId, long limit);
+
+  /**
+   *
+   * @param ts to complete
+   * @param foreignField name of the foreign field to load
+   */
+  void fetchForeign(Collection<T> ts, String foreignField);
+
+  /**
+   * Register a query by name: the SQL is generated once (by thread) and reused by {@link #query(String, Object...)}
+   * and {@link #count(String, Object...)}.
+   *
+   * @param name of the query
+   * @param preparer to build the query, with a {@link com.j256.ormlite.stmt.SelectArg} by argument
+   */
+  void prepare(String name, Preparer<T, K> preparer);
+
+  /**
+   *
+   * @param name of the query prepared
+   * @param args values of the arguments, in the order of the SQL
+   * @return the List of T
+   */
+  List<T> query(String name, Object... args);
+
+  /**
+   *
+   * @param name of the query prepared
+   * @param args values of the arguments, in the order of the SQL
+   * @return the number of T
+   */
+  long count(String name, Object... args);
+
   /**
    *
    * @return the QueryBuilder
    */
   QueryBuilder<T, K> getQuery();
+
+  /**
+   * Build a query to prepare.
+   *
+   * @param <T> type of the rows.
+   * @param <K> type of the id.
+   */
+  @FunctionalInterface
+  interface Preparer<T, K> {
+
+    /**
+     * @param query to build.
+     */
+    void prepare(QueryBuilder<T, K> query) throws SQLException;
+  }
 }
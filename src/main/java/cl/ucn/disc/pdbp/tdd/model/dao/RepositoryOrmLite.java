@@ -24,15 +24,27 @@
 
 package cl.ucn.disc.pdbp.tdd.model.dao;
 
-import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.CloseableIterator;
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.stmt.PreparedQuery;
 import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.misc.TransactionManager;
 import com.j256.ormlite.support.ConnectionSource;
 
-import java.sql.Connection;
+import java.lang.reflect.Field;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Capa de acceso a los datos.
@@ -40,11 +52,36 @@ import java.util.List;
  */
 public class RepositoryOrmLite<T,K> implements Repository<T, K> {
 
+  /**
+   * The max number of ids in a IN clause.
+   */
+  private static final int IN_CHUNK_SIZE = 500;
+
   /**
    * The Dao
    */
   private final Dao<T,K> theDao;
 
+  /**
+   * The name of the id column.
+   */
+  private final String idColumn;
+
+  /**
+   * The queries registered, by name.
+   */
+  private final Map<String, Preparer<T, K>> preparers = new ConcurrentHashMap<>();
+
+  /**
+   * The queries prepared, by name. By thread: the values of the arguments are kept in the query.
+   */
+  private final ThreadLocal<Map<String, PreparedQuery<T>>> queries = ThreadLocal.withInitial(HashMap::new);
+
+  /**
+   * The count of the queries prepared, by name. By thread.
+   */
+  private final ThreadLocal<Map<String, PreparedQuery<T>>> counts = ThreadLocal.withInitial(HashMap::new);
+
   /**
    * The Constructor.
    *
@@ -54,6 +91,7 @@ public class RepositoryOrmLite<T,K> implements Repository<T, K> {
   public RepositoryOrmLite(ConnectionSource connectionSource,Class<T> theClass) {
     try{
       this.theDao = DaoManager.createDao(connectionSource,theClass);
+      this.idColumn = ((BaseDaoImpl<T, K>) this.theDao).getTableInfo().getIdField().getColumnName();
     }catch (SQLException throwables) {
       throw new RuntimeException(throwables);
     }
@@ -71,6 +109,14 @@ public class RepositoryOrmLite<T,K> implements Repository<T, K> {
     }
   }
 
+  /**
+   * @return a iterator over all the T, it must be closed
+   */
+  @Override
+  public CloseableIterator<T> iterator() {
+    return theDao.iterator();
+  }
+
   /**
    * @param id to search
    * @return the T with id
@@ -87,6 +133,8 @@ public class RepositoryOrmLite<T,K> implements Repository<T, K> {
   }
 
   /**
+   * Insert-or-fail: a T rejected by a unique index throws a {@link DuplicateKeyException}.
+   *
    * @param t to save
    * @return true if t was inserted, false otherwise.
    */
@@ -97,11 +145,37 @@ public class RepositoryOrmLite<T,K> implements Repository<T, K> {
     try {
       return theDao.create(t) == 1;
     } catch(SQLException throwables) {
-      throw new RuntimeException(throwables);
+      throw unchecked(throwables);
     }
 
   }
 
+  /**
+   * All the inserts run in a single transaction, with auto-commit disabled (no commit per row). If any insert fails
+   * the transaction is rolled back and none of the T is saved (a T rejected by a unique index throws a
+   * {@link DuplicateKeyException}).
+   *
+   * @param ts to save, all or none
+   * @return the number of T saved
+   */
+  @Override
+  public int createAll(Collection<T> ts) {
+    if(ts == null || ts.contains(null))
+      throw new RuntimeException();
+    try {
+      return TransactionManager.callInTransaction(theDao.getConnectionSource(),
+        () -> theDao.callBatchTasks(() -> {
+          int created = 0;
+          for (T t : ts) {
+            created += theDao.create(t);
+          }
+          return created;
+        }));
+    } catch(SQLException throwables) {
+      throw unchecked(throwables);
+    }
+  }
+
   /**
    * @param t to update
    * @return true if t was inserted, false otherwise.
@@ -113,7 +187,7 @@ public class RepositoryOrmLite<T,K> implements Repository<T, K> {
     try {
       return theDao.update(t) == 1;
     } catch(SQLException throwables) {
-      throw new RuntimeException(throwables);
+      throw unchecked(throwables);
     }
   }
 
@@ -146,6 +220,224 @@ public class RepositoryOrmLite<T,K> implements Repository<T, K> {
     }
   }
 
+  /**
+   * @param offset number of T to skip
+   * @param limit  max number of T
+   * @return the List of T ordered by id
+   */
+  @Override
+  public List<T> findAll(long offset, long limit) {
+    try {
+      return theDao.queryBuilder()
+        .orderBy(idColumn, true)
+        .offset(offset)
+        .limit(limit)
+        .query();
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+  /**
+   * Keyset pagination: the cost doesn't grow with the number of pages skipped.
+   *
+   * @param lastId id of the last T of the previous page, null for the first page
+   * @param limit  max number of T
+   * @return the List of T with id greater than lastId, ordered by id
+   */
+  @Override
+  public List<T> findAllAfter(K lastId, long limit) {
+    try {
+      QueryBuilder<T, K> query = theDao.queryBuilder();
+      if (lastId != null) {
+        query.where().gt(idColumn, lastId);
+      }
+      return query
+        .orderBy(idColumn, true)
+        .limit(limit)
+        .query();
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+  /**
+   * Batch fetch: the foreign rows of all the T are loaded with a single IN query (by chunk of ids) instead of a query
+   * by T. The T sharing a foreign id share the same foreign object.
+   *
+   * @param ts           to complete
+   * @param foreignField name of the foreign field to load
+   */
+  @Override
+  public void fetchForeign(Collection<T> ts, String foreignField) {
+    if(ts == null || foreignField == null)
+      throw new RuntimeException();
+
+    FieldType fieldType = this.foreignFieldType(foreignField);
+    FieldType foreignId = fieldType.getForeignRefField();
+
+    try {
+      // The ids of the foreign rows
+      Set<Object> ids = new LinkedHashSet<>();
+      for (T t : ts) {
+        Object id = fieldType.extractJavaFieldValue(t);
+        if (id != null) {
+          ids.add(id);
+        }
+      }
+
+      // The foreign rows by id, in chunks to keep the IN clause short
+      Dao<?, ?> foreignDao = DaoManager.createDao(theDao.getConnectionSource(), fieldType.getType());
+      Map<Object, Object> foreigns = new HashMap<>();
+      List<Object> chunk = new ArrayList<>(IN_CHUNK_SIZE);
+      for (Iterator<Object> it = ids.iterator(); it.hasNext(); ) {
+        chunk.add(it.next());
+        if (chunk.size() == IN_CHUNK_SIZE || !it.hasNext()) {
+          for (Object foreign : foreignDao.queryBuilder().where().in(foreignId.getColumnName(), chunk).query()) {
+            foreigns.put(foreignId.extractJavaFieldValue(foreign), foreign);
+          }
+          chunk.clear();
+        }
+      }
+
+      // Replace the foreign objects (with the id only) with the rows loaded
+      for (T t : ts) {
+        Object foreign = foreigns.get(fieldType.extractJavaFieldValue(t));
+        if (foreign != null) {
+          fieldType.assignField(t, foreign, true, null);
+        }
+      }
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+  /**
+   * A shallow copy of a T: a new T with the same values of the fields persisted.
+   *
+   * @param t to copy.
+   * @return the copy, null if t is null.
+   */
+  public T copy(T t) {
+    if (t == null) {
+      return null;
+    }
+    try {
+      BaseDaoImpl<T, K> dao = (BaseDaoImpl<T, K>) this.theDao;
+      T copy = dao.getTableInfo().createObject();
+      for (FieldType fieldType : dao.getTableInfo().getFieldTypes()) {
+        Field field = fieldType.getField();
+        field.setAccessible(true);
+        field.set(copy, field.get(t));
+      }
+      return copy;
+    } catch (SQLException | IllegalAccessException exception) {
+      throw new RuntimeException(exception);
+    }
+  }
+
+  /**
+   * @param exception thrown by the database.
+   * @return a {@link DuplicateKeyException} if a unique index rejected the row, a RuntimeException otherwise.
+   */
+  private static RuntimeException unchecked(SQLException exception) {
+    if (DuplicateKeyException.isDuplicateKey(exception)) {
+      return new DuplicateKeyException("Duplicate key", exception);
+    }
+    return new RuntimeException(exception);
+  }
+
+  /**
+   * @param fieldName of the foreign field.
+   * @return the {@link FieldType} of the foreign field.
+   */
+  private FieldType foreignFieldType(String fieldName) {
+    for (FieldType fieldType : ((BaseDaoImpl<T, K>) this.theDao).getTableInfo().getFieldTypes()) {
+      if (fieldType.getFieldName().equals(fieldName)) {
+        if (!fieldType.isForeign()) {
+          throw new IllegalArgumentException("The field " + fieldName + " isn't foreign!");
+        }
+        return fieldType;
+      }
+    }
+    throw new IllegalArgumentException("The field " + fieldName + " doesn't exist!");
+  }
+
+  /**
+   * @param name     of the query
+   * @param preparer to build the query, with a {@link com.j256.ormlite.stmt.SelectArg} by argument
+   */
+  @Override
+  public void prepare(String name, Preparer<T, K> preparer) {
+    if(name == null || preparer == null)
+      throw new RuntimeException();
+    if (this.preparers.putIfAbsent(name, preparer) != null) {
+      throw new IllegalArgumentException("The query " + name + " already exists!");
+    }
+  }
+
+  /**
+   * @param name of the query prepared
+   * @param args values of the arguments, in the order of the SQL
+   * @return the List of T
+   */
+  @Override
+  public List<T> query(String name, Object... args) {
+    try {
+      return theDao.query(this.prepared(this.queries, name, false, args));
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+  /**
+   * @param name of the query prepared
+   * @param args values of the arguments, in the order of the SQL
+   * @return the number of T
+   */
+  @Override
+  public long count(String name, Object... args) {
+    try {
+      return theDao.countOf(this.prepared(this.counts, name, true, args));
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+  /**
+   * @param cache   of the queries prepared by this thread.
+   * @param name    of the query.
+   * @param countOf true to count the rows.
+   * @param args    values of the arguments.
+   * @return the query prepared, with the arguments.
+   */
+  private PreparedQuery<T> prepared(ThreadLocal<Map<String, PreparedQuery<T>>> cache, String name, boolean countOf,
+                                    Object[] args) throws SQLException {
+
+    PreparedQuery<T> query = cache.get().get(name);
+
+    // The first time in this thread
+    if (query == null) {
+      Preparer<T, K> preparer = this.preparers.get(name);
+      if (preparer == null) {
+        throw new IllegalArgumentException("The query " + name + " doesn't exist!");
+      }
+      QueryBuilder<T, K> builder = theDao.queryBuilder();
+      preparer.prepare(builder);
+      if (countOf) {
+        // setCountOf(false) counts too
+        builder.setCountOf(true);
+      }
+      query = builder.prepare();
+      cache.get().put(name, query);
+    }
+
+    for (int i = 0; i < args.length; i++) {
+      query.setArgumentHolderValue(i, args[i]);
+    }
+    return query;
+  }
+
   /**
    * @return the QueryBuilder
    */
@@ -0,0 +1,472 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import com.j256.ormlite.dao.ObjectCache;
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.misc.IOUtils;
+import com.j256.ormlite.stmt.GenericRowMapper;
+import com.j256.ormlite.stmt.StatementBuilder.StatementType;
+import com.j256.ormlite.support.CompiledStatement;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.support.DatabaseConnectionProxy;
+import com.j256.ormlite.support.DatabaseResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sends the reads ({@link #getReadOnlyConnection(String)}) to the replicas, in turns, and the writes and transactions
+ * to the primary. A request ({@link QueryMetrics.Request}) that wrote reads from the primary (read your writes) until
+ * it ends, in all their threads; out of a request, the thread that wrote until {@link #clearStickiness()}, called at
+ * the end of each database task. A replica that fails to give a connection or to run a query is skipped during the
+ * retry time, without replicas up the reads go to the primary.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class RoutingConnectionSource implements ConnectionSource {
+
+  /**
+   * The Logger.
+   */
+  private static final Logger log = LoggerFactory.getLogger(RoutingConnectionSource.class);
+
+  /**
+   * True if the thread wrote since the last {@link #clearStickiness()}, out of a request.
+   */
+  private static final ThreadLocal<Boolean> STICKY = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+  /**
+   * The database receiving the writes.
+   */
+  private final ConnectionSource primary;
+
+  /**
+   * The copies of the primary receiving the reads.
+   */
+  private final List<ConnectionSource> replicas;
+
+  /**
+   * Time to skip a replica after a failure.
+   */
+  private final long retryMillis;
+
+  /**
+   * Until when each replica is skipped (0 if up).
+   */
+  private final AtomicLongArray downUntil;
+
+  /**
+   * The next replica to use.
+   */
+  private final AtomicInteger next = new AtomicInteger();
+
+  /**
+   * Reads sent to the primary.
+   */
+  private final AtomicLong primaryReads = new AtomicLong();
+
+  /**
+   * Reads sent to the replicas.
+   */
+  private final AtomicLong replicaReads = new AtomicLong();
+
+  /**
+   * Failures of the replicas.
+   */
+  private final AtomicLong failovers = new AtomicLong();
+
+  /**
+   * The Constructor.
+   *
+   * @param primary the database receiving the writes.
+   * @param replicas the copies of the primary receiving the reads.
+   * @param retryMillis time to skip a replica after a failure.
+   */
+  public RoutingConnectionSource(ConnectionSource primary, List<ConnectionSource> replicas, long retryMillis) {
+
+    if (primary == null || replicas == null || retryMillis < 0) {
+      throw new IllegalArgumentException("Invalid routing configuration!");
+    }
+
+    this.primary = primary;
+    this.replicas = new ArrayList<>(replicas);
+    this.retryMillis = retryMillis;
+    this.downUntil = new AtomicLongArray(replicas.size());
+  }
+
+  /**
+   * The reads of the thread (out of a request) go to the replicas again, the writes done were replicated or are not
+   * needed.
+   */
+  public static void clearStickiness() {
+    STICKY.remove();
+  }
+
+  /**
+   * The next reads of the request (or of the thread, out of a request) go to the primary, as after a write.
+   */
+  public static void stickToPrimary() {
+    QueryMetrics.Request request = QueryMetrics.getRequest();
+    if (request != null) {
+      request.stick();
+    } else {
+      STICKY.set(Boolean.TRUE);
+    }
+  }
+
+  /**
+   * @return true if the reads of the request (or of the thread, out of a request) go to the primary.
+   */
+  private static boolean isSticky() {
+    QueryMetrics.Request request = QueryMetrics.getRequest();
+    return request != null ? request.isSticky() : STICKY.get();
+  }
+
+  /**
+   * @return a connection to a replica up, to the primary if the request wrote, is in a transaction or no replica is up.
+   */
+  @Override
+  public DatabaseConnection getReadOnlyConnection(String tableName) throws SQLException {
+
+    if (!isSticky() && this.primary.getSpecialConnection(tableName) == null) {
+      int size = this.replicas.size();
+      int first = size == 0 ? 0 : Math.floorMod(this.next.getAndIncrement(), size);
+      for (int i = 0; i < size; i++) {
+        int index = (first + i) % size;
+        if (this.downUntil.get(index) > System.currentTimeMillis()) {
+          continue;
+        }
+
+        ConnectionSource replica = this.replicas.get(index);
+        try {
+          DatabaseConnection connection = replica.getReadOnlyConnection(tableName);
+          this.downUntil.set(index, 0);
+          this.replicaReads.incrementAndGet();
+          return new ReplicaConnection(connection, replica, index);
+        } catch (SQLException | RuntimeException ex) {
+          this.markDown(index, ex);
+        }
+      }
+    }
+
+    this.primaryReads.incrementAndGet();
+    return this.primary.getReadOnlyConnection(tableName);
+  }
+
+  /**
+   * @return a connection to the primary, the next reads of the request go to the primary too.
+   */
+  @Override
+  public DatabaseConnection getReadWriteConnection(String tableName) throws SQLException {
+    stickToPrimary();
+    return this.primary.getReadWriteConnection(tableName);
+  }
+
+  /**
+   * Skip a replica during the retry time.
+   *
+   * @param index of the replica.
+   * @param ex the failure.
+   */
+  private void markDown(int index, Exception ex) {
+    this.failovers.incrementAndGet();
+    this.downUntil.set(index, System.currentTimeMillis() + this.retryMillis);
+    log.warn("Replica {} down for {} ms: {}", index, this.retryMillis, ex.getMessage());
+  }
+
+  /**
+   * Release the connection in the database that gave it.
+   */
+  @Override
+  public void releaseConnection(DatabaseConnection connection) throws SQLException {
+    if (connection instanceof ReplicaConnection) {
+      ReplicaConnection replicaConnection = (ReplicaConnection) connection;
+      replicaConnection.owner.releaseConnection(replicaConnection.connection);
+    } else {
+      this.primary.releaseConnection(connection);
+    }
+  }
+
+  /**
+   * The transactions are in the primary.
+   */
+  @Override
+  public boolean saveSpecialConnection(DatabaseConnection connection) throws SQLException {
+    return this.primary.saveSpecialConnection(connection);
+  }
+
+  /**
+   * The transactions are in the primary.
+   */
+  @Override
+  public void clearSpecialConnection(DatabaseConnection connection) {
+    this.primary.clearSpecialConnection(connection);
+  }
+
+  /**
+   * The transactions are in the primary.
+   */
+  @Override
+  public DatabaseConnection getSpecialConnection(String tableName) {
+    return this.primary.getSpecialConnection(tableName);
+  }
+
+  @Override
+  public DatabaseType getDatabaseType() {
+    return this.primary.getDatabaseType();
+  }
+
+  @Override
+  public boolean isOpen(String tableName) {
+    return this.primary.isOpen(tableName);
+  }
+
+  @Override
+  public boolean isSingleConnection(String tableName) {
+    return this.primary.isSingleConnection(tableName);
+  }
+
+  /**
+   * @return the replicas not skipped by a failure.
+   */
+  public int getReplicasUp() {
+    int up = 0;
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < this.replicas.size(); i++) {
+      if (this.downUntil.get(i) <= now) {
+        up++;
+      }
+    }
+    return up;
+  }
+
+  /**
+   * @return the metrics of the routing, by name.
+   */
+  public Map<String, Number> getMetrics() {
+    Map<String, Number> metrics = new LinkedHashMap<>();
+    metrics.put("replicas", this.replicas.size());
+    metrics.put("replicas_up", this.getReplicasUp());
+    metrics.put("reads_primary_total", this.primaryReads.get());
+    metrics.put("reads_replica_total", this.replicaReads.get());
+    metrics.put("failovers_total", this.failovers.get());
+    return metrics;
+  }
+
+  /**
+   * Close the primary and the replicas.
+   */
+  @Override
+  public void close() throws IOException {
+    for (ConnectionSource replica : this.replicas) {
+      IOUtils.closeQuietly(replica);
+    }
+    this.primary.close();
+  }
+
+  @Override
+  public void closeQuietly() {
+    IOUtils.closeQuietly(this);
+  }
+
+  /**
+   * A connection of a replica, knows where to be released. A query failed marks the replica down (the query fails,
+   * the next reads go to other replica or to the primary).
+   */
+  private final class ReplicaConnection extends DatabaseConnectionProxy {
+
+    /**
+     * The connection of the replica.
+     */
+    private final DatabaseConnection connection;
+
+    /**
+     * The replica.
+     */
+    private final ConnectionSource owner;
+
+    /**
+     * The index of the replica.
+     */
+    private final int index;
+
+    /**
+     * The Constructor.
+     */
+    private ReplicaConnection(DatabaseConnection connection, ConnectionSource owner, int index) {
+      super(connection);
+      this.connection = connection;
+      this.owner = owner;
+      this.index = index;
+    }
+
+    /**
+     * @param ex the failure of a query, marks the replica down.
+     * @return the same failure.
+     */
+    private SQLException failed(SQLException ex) {
+      markDown(this.index, ex);
+      return ex;
+    }
+
+    @Override
+    public CompiledStatement compileStatement(String statement, StatementType type, FieldType[] argFieldTypes,
+                                              int resultFlags, boolean cacheStore) throws SQLException {
+      try {
+        return new ReplicaStatement(super.compileStatement(statement, type, argFieldTypes, resultFlags, cacheStore),
+          this);
+      } catch (SQLException ex) {
+        throw this.failed(ex);
+      }
+    }
+
+    @Override
+    public <T> Object queryForOne(String statement, Object[] args, FieldType[] argfieldTypes,
+                                  GenericRowMapper<T> rowMapper, ObjectCache objectCache) throws SQLException {
+      try {
+        return super.queryForOne(statement, args, argfieldTypes, rowMapper, objectCache);
+      } catch (SQLException ex) {
+        throw this.failed(ex);
+      }
+    }
+
+    @Override
+    public long queryForLong(String statement) throws SQLException {
+      try {
+        return super.queryForLong(statement);
+      } catch (SQLException ex) {
+        throw this.failed(ex);
+      }
+    }
+
+    @Override
+    public long queryForLong(String statement, Object[] args, FieldType[] argFieldTypes) throws SQLException {
+      try {
+        return super.queryForLong(statement, args, argFieldTypes);
+      } catch (SQLException ex) {
+        throw this.failed(ex);
+      }
+    }
+
+  }
+
+  /**
+   * A statement of a replica, marks the replica down if the query fails.
+   */
+  private static final class ReplicaStatement implements CompiledStatement {
+
+    /**
+     * The statement of the replica.
+     */
+    private final CompiledStatement statement;
+
+    /**
+     * The connection of the replica.
+     */
+    private final ReplicaConnection connection;
+
+    /**
+     * The Constructor.
+     */
+    private ReplicaStatement(CompiledStatement statement, ReplicaConnection connection) {
+      this.statement = statement;
+      this.connection = connection;
+    }
+
+    @Override
+    public int getColumnCount() throws SQLException {
+      return this.statement.getColumnCount();
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) throws SQLException {
+      return this.statement.getColumnName(columnIndex);
+    }
+
+    @Override
+    public int runUpdate() throws SQLException {
+      return this.statement.runUpdate();
+    }
+
+    @Override
+    public DatabaseResults runQuery(ObjectCache objectCache) throws SQLException {
+      try {
+        return this.statement.runQuery(objectCache);
+      } catch (SQLException ex) {
+        throw this.connection.failed(ex);
+      }
+    }
+
+    @Override
+    public int runExecute() throws SQLException {
+      return this.statement.runExecute();
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+      this.statement.cancel();
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object obj, SqlType sqlType) throws SQLException {
+      this.statement.setObject(parameterIndex, obj, sqlType);
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+      this.statement.setMaxRows(max);
+    }
+
+    @Override
+    public void setQueryTimeout(long millis) throws SQLException {
+      this.statement.setQueryTimeout(millis);
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.statement.close();
+    }
+
+    @Override
+    public void closeQuietly() {
+      this.statement.closeQuietly();
+    }
+
+  }
+
+}
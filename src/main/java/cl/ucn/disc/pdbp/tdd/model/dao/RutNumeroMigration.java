@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.utils.Validation;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.stmt.StatementBuilder.StatementType;
+import com.j256.ormlite.support.CompiledStatement;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.support.DatabaseResults;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Migration of the personas saved before the column rutNumero: the column is added and filled by chunks with the body
+ * of the rut (the rut normalized too), before the unique index over it is created. The migration can run again: only
+ * the rows without rutNumero are filled.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class RutNumeroMigration implements Backfill {
+
+  /**
+   * The table of the personas.
+   */
+  private static final String TABLE = "persona";
+
+  /**
+   * The connection to the database.
+   */
+  private final ConnectionSource connectionSource;
+
+  /**
+   * The schema of the database.
+   */
+  private final Schema schema;
+
+  /**
+   * False in a new database (the table is created with the column).
+   */
+  private boolean tableExists;
+
+  /**
+   * The Constructor.
+   *
+   * @param connectionSource to use.
+   */
+  public RutNumeroMigration(ConnectionSource connectionSource) {
+    if (connectionSource == null) {
+      throw new IllegalArgumentException("ConnectionSource is Null!");
+    }
+    this.connectionSource = connectionSource;
+    this.schema = new Schema(connectionSource);
+  }
+
+  /**
+   * Add the column rutNumero (if the table exists).
+   */
+  @Override
+  public void prepare() throws SQLException {
+    this.tableExists = this.schema.columnType(TABLE, "rut") != null;
+    if (this.tableExists && this.schema.columnType(TABLE, "rutNumero") == null) {
+      this.schema.addColumn(TABLE, "rutNumero", "BIGINT");
+    }
+  }
+
+  /**
+   * Fill the rutNumero (and normalize the rut) of the next personas without rutNumero, in order of id.
+   *
+   * @param chunkSize the maximum number of personas to fill.
+   * @return the number of personas filled.
+   */
+  @Override
+  public int fill(int chunkSize) throws SQLException {
+
+    if (!this.tableExists) {
+      return 0;
+    }
+
+    String id = this.schema.escape("id");
+    String rut = this.schema.escape("rut");
+    String rutNumero = this.schema.escape("rutNumero");
+    String select = "SELECT " + id + ", " + rut + " FROM " + this.schema.escape(TABLE) + " WHERE " + rutNumero
+      + " IS NULL ORDER BY " + id + " LIMIT " + chunkSize;
+    String update = "UPDATE " + this.schema.escape(TABLE) + " SET " + rut + " = ?, " + rutNumero + " = ? WHERE "
+      + id + " = ?";
+
+    DatabaseConnection connection = this.connectionSource.getReadWriteConnection(TABLE);
+    try (CompiledStatement write = connection.compileStatement(update, StatementType.UPDATE, Schema.NO_FIELD_TYPES,
+      DatabaseConnection.DEFAULT_RESULT_FLAGS, false)) {
+
+      int filled = 0;
+      CompiledStatement query = connection.compileStatement(select, StatementType.SELECT_RAW, Schema.NO_FIELD_TYPES,
+        DatabaseConnection.DEFAULT_RESULT_FLAGS, false);
+      DatabaseResults results = query.runQuery(null);
+      try {
+        while (results.next()) {
+          long idPersona = results.getLong(0);
+          String value = results.getString(1);
+
+          long key = Validation.parseRut(value);
+          if (key < 0) {
+            throw new SQLException("Invalid rut in " + TABLE + " of id " + idPersona + ": " + value);
+          }
+
+          write.setObject(0, Validation.formatRut(key), SqlType.STRING);
+          write.setObject(1, key / 10, SqlType.LONG);
+          write.setObject(2, idPersona, SqlType.LONG);
+          write.runUpdate();
+          filled++;
+        }
+      } finally {
+        results.closeQuietly();
+        query.closeQuietly();
+      }
+
+      return filled;
+
+    } catch (IOException ex) {
+      throw new SQLException("Can't close the statement", ex);
+    } finally {
+      this.connectionSource.releaseConnection(connection);
+    }
+  }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.stmt.StatementBuilder.StatementType;
+import com.j256.ormlite.support.CompiledStatement;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.support.DatabaseResults;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The schema of the database (H2 or SQLite) as the migrations see it: the columns, their renames, the indexes, the
+ * plans of the queries and the DDL, always in the primary.
+ *
+ * @author Miguel León Garrido.
+ */
+final class Schema {
+
+  /**
+   * The statements without arguments of fields.
+   */
+  static final FieldType[] NO_FIELD_TYPES = new FieldType[0];
+
+  /**
+   * The connection to the database.
+   */
+  private final ConnectionSource connectionSource;
+
+  /**
+   * True in H2, false in SQLite.
+   */
+  private final boolean h2;
+
+  /**
+   * The Constructor.
+   *
+   * @param connectionSource to use.
+   */
+  Schema(ConnectionSource connectionSource) {
+    if (connectionSource == null) {
+      throw new IllegalArgumentException("ConnectionSource is Null!");
+    }
+    this.connectionSource = connectionSource;
+    this.h2 = "H2".equals(connectionSource.getDatabaseType().getDatabaseName());
+  }
+
+  /**
+   * @param table of the column.
+   * @param column to find.
+   * @return the type of the column, null if not exists.
+   */
+  String columnType(String table, String column) throws SQLException {
+
+    String sql;
+    if (this.h2) {
+      // H2 saves the names in upper case
+      sql = "SELECT TYPE_NAME FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = SCHEMA()"
+        + " AND UPPER(TABLE_NAME) = UPPER(?) AND UPPER(COLUMN_NAME) = UPPER(?)";
+    } else {
+      sql = "SELECT type FROM pragma_table_info(?) WHERE name = ? COLLATE NOCASE";
+    }
+
+    // The schema of the primary, not of a replica
+    DatabaseConnection connection = this.connectionSource.getReadWriteConnection(table);
+    try (CompiledStatement statement = connection.compileStatement(sql, StatementType.SELECT_RAW, NO_FIELD_TYPES,
+      DatabaseConnection.DEFAULT_RESULT_FLAGS, false)) {
+
+      statement.setObject(0, table, SqlType.STRING);
+      statement.setObject(1, column, SqlType.STRING);
+      DatabaseResults results = statement.runQuery(null);
+      try {
+        return results.first() ? results.getString(0) : null;
+      } finally {
+        results.closeQuietly();
+      }
+
+    } catch (IOException ex) {
+      throw new SQLException("Can't close the statement", ex);
+    } finally {
+      this.connectionSource.releaseConnection(connection);
+    }
+  }
+
+  /**
+   * @param table of the indexes.
+   * @return the first column of each index of the table (in lower case).
+   */
+  Set<String> leadingIndexColumns(String table) throws SQLException {
+
+    String sql;
+    if (this.h2) {
+      sql = "SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.INDEXES WHERE TABLE_SCHEMA = SCHEMA()"
+        + " AND UPPER(TABLE_NAME) = UPPER(?) AND ORDINAL_POSITION = 1";
+    } else {
+      sql = "SELECT ii.name FROM pragma_index_list(?) il, pragma_index_info(il.name) ii WHERE ii.seqno = 0";
+    }
+
+    Set<String> columns = new HashSet<>();
+    for (String column : this.query(table, sql, 0, table)) {
+      columns.add(column.toLowerCase(Locale.ROOT));
+    }
+    return columns;
+  }
+
+  /**
+   * The plan of a query: EXPLAIN QUERY PLAN in SQLite, EXPLAIN in H2. The arguments (?) are null.
+   *
+   * @param sql of the query.
+   * @return the lines of the plan.
+   */
+  List<String> queryPlan(String sql) throws SQLException {
+
+    String[] args = new String[StringUtils.countMatches(sql, '?')];
+    if (!this.h2) {
+      return this.query(null, "EXPLAIN QUERY PLAN " + sql, 3, args);
+    }
+
+    List<String> lines = new ArrayList<>();
+    for (String plan : this.query(null, "EXPLAIN " + sql, 0, args)) {
+      lines.addAll(Arrays.asList(plan.split("\n")));
+    }
+    return lines;
+  }
+
+  /**
+   * @param line of a {@link #queryPlan(String)}.
+   * @return true if the line reads all the rows of a table (without index).
+   */
+  boolean isFullScan(String line) {
+    if (this.h2) {
+      return line.contains(".tableScan");
+    }
+    return line.startsWith("SCAN") && !line.contains(" INDEX ");
+  }
+
+  /**
+   * Run a query.
+   *
+   * @param table of the query, can be null.
+   * @param sql of the query.
+   * @param column to read.
+   * @param args of the query, as strings.
+   * @return the values of the column.
+   */
+  List<String> query(String table, String sql, int column, String... args) throws SQLException {
+
+    DatabaseConnection connection = this.connectionSource.getReadWriteConnection(table);
+    try (CompiledStatement statement = connection.compileStatement(sql, StatementType.SELECT_RAW, NO_FIELD_TYPES,
+      DatabaseConnection.DEFAULT_RESULT_FLAGS, false)) {
+
+      for (int i = 0; i < args.length; i++) {
+        statement.setObject(i, args[i], SqlType.STRING);
+      }
+      List<String> values = new ArrayList<>();
+      DatabaseResults results = statement.runQuery(null);
+      try {
+        while (results.next()) {
+          values.add(results.getString(column));
+        }
+      } finally {
+        results.closeQuietly();
+      }
+      return values;
+
+    } catch (IOException ex) {
+      throw new SQLException("Can't close the statement", ex);
+    } finally {
+      this.connectionSource.releaseConnection(connection);
+    }
+  }
+
+  /**
+   * Rename a column.
+   *
+   * @param table of the column.
+   * @param from the name.
+   * @param to the new name.
+   */
+  void rename(String table, String from, String to) throws SQLException {
+    if (this.h2) {
+      this.execute(table, "ALTER TABLE " + this.escape(table) + " ALTER COLUMN " + this.escape(from)
+        + " RENAME TO " + this.escape(to));
+    } else {
+      this.execute(table, "ALTER TABLE " + this.escape(table) + " RENAME COLUMN " + this.escape(from)
+        + " TO " + this.escape(to));
+    }
+  }
+
+  /**
+   * Add a column (nullable, the rows are filled later).
+   *
+   * @param table of the column.
+   * @param column to add.
+   * @param type of the column.
+   */
+  void addColumn(String table, String column, String type) throws SQLException {
+    this.execute(table, "ALTER TABLE " + this.escape(table) + " ADD COLUMN " + this.escape(column) + " " + type);
+  }
+
+  /**
+   * Execute a statement (DDL).
+   *
+   * @param table of the statement.
+   * @param sql to execute.
+   */
+  void execute(String table, String sql) throws SQLException {
+    DatabaseConnection connection = this.connectionSource.getReadWriteConnection(table);
+    try {
+      connection.executeStatement(sql, DatabaseConnection.DEFAULT_RESULT_FLAGS);
+    } finally {
+      this.connectionSource.releaseConnection(connection);
+    }
+  }
+
+  /**
+   * @param name of a table or column.
+   * @return the name escaped.
+   */
+  String escape(String name) {
+    StringBuilder sb = new StringBuilder();
+    this.connectionSource.getDatabaseType().appendEscapedEntityName(sb, name);
+    return sb.toString();
+  }
+
+}
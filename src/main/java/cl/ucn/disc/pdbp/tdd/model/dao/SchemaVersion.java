@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * A migration applied by the {@link Migrator}: a row of the table schema_version.
+ *
+ * @author Miguel León Garrido.
+ */
+@DatabaseTable(tableName = "schema_version")
+final class SchemaVersion {
+
+  /**
+   * The version: Primary Key.
+   */
+  @DatabaseField(id = true)
+  private Integer version;
+
+  /**
+   * What the migration does.
+   */
+  @DatabaseField(canBeNull = false)
+  private String description;
+
+  /**
+   * When the migration was finished (epoch millis).
+   */
+  @DatabaseField(canBeNull = false)
+  private long installedOn;
+
+  /**
+   * The time of the migration (millis).
+   */
+  @DatabaseField(canBeNull = false)
+  private long durationMillis;
+
+  /**
+   * The rows filled (backfills).
+   */
+  @DatabaseField(canBeNull = false)
+  private long rows;
+
+  /**
+   * Empty constructor.
+   */
+  SchemaVersion() {
+    //nothing
+  }
+
+  /**
+   * The Constructor.
+   *
+   * @param version of the migration.
+   * @param description of the migration.
+   * @param durationMillis of the migration.
+   * @param rows filled by the migration.
+   */
+  SchemaVersion(int version, String description, long durationMillis, long rows) {
+    this.version = version;
+    this.description = description;
+    this.installedOn = System.currentTimeMillis();
+    this.durationMillis = durationMillis;
+    this.rows = rows;
+  }
+
+  /**
+   * @return the version.
+   */
+  Integer getVersion() {
+    return this.version;
+  }
+
+  /**
+   * @return the rows filled.
+   */
+  long getRows() {
+    return this.rows;
+  }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.dao;
+
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.StatementBuilder.StatementType;
+import com.j256.ormlite.support.CompiledStatement;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.support.DatabaseResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Migration of the columns saved by {@link ZonedDateTimeType} (ISO strings) to {@link ZonedDateTimeEpochType}
+ * (numbers). The column is converted to a new column (column_epoch) by chunks in a transaction, then the old column is
+ * renamed to column_iso and the new column takes the name of the old one. The migration can run again: the columns
+ * already migrated are skipped and a rename interrupted is finished.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class ZonedDateTimeMigration {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(ZonedDateTimeMigration.class);
+
+  /**
+   * Rows converted by query.
+   */
+  private static final int CHUNK_SIZE = 1000;
+
+  /**
+   * The connection to the database.
+   */
+  private final ConnectionSource connectionSource;
+
+  /**
+   * The schema of the database.
+   */
+  private final Schema schema;
+
+  /**
+   * The Constructor.
+   *
+   * @param connectionSource to use.
+   */
+  public ZonedDateTimeMigration(ConnectionSource connectionSource) {
+    if (connectionSource == null) {
+      throw new IllegalArgumentException("ConnectionSource is Null!");
+    }
+    this.connectionSource = connectionSource;
+    this.schema = new Schema(connectionSource);
+  }
+
+  /**
+   * Migrate a column from ISO strings to numbers.
+   *
+   * @param table of the column.
+   * @param column to migrate.
+   * @return the number of dates converted.
+   */
+  public int migrate(String table, String column) throws SQLException {
+
+    String epoch = column + "_epoch";
+    String type = this.schema.columnType(table, column);
+
+    // The column was renamed, but not the new one
+    if (type == null) {
+      if (this.schema.columnType(table, epoch) != null) {
+        this.schema.rename(table, epoch, column);
+      }
+      return 0;
+    }
+
+    // Already migrated
+    String upper = type.toUpperCase(Locale.ROOT);
+    if (!upper.contains("CHAR") && !upper.contains("TEXT") && !upper.contains("CLOB")) {
+      return 0;
+    }
+
+    if (this.schema.columnType(table, epoch) == null) {
+      this.schema.addColumn(table, epoch, "BIGINT");
+    }
+
+    // All the dates, or none
+    int converted = TransactionManager.callInTransaction(this.connectionSource,
+      () -> this.convert(table, column, epoch));
+
+    // Without DROP COLUMN in SQLite the old column is kept
+    this.schema.rename(table, column, column + "_iso");
+    this.schema.rename(table, epoch, column);
+
+    log.info("Migrated {}.{}: {} dates.", table, column, converted);
+    return converted;
+  }
+
+  /**
+   * Convert the strings of the column to numbers in the epoch column, by chunks of ids.
+   *
+   * @param table of the column.
+   * @param column with the strings.
+   * @param epoch the column of the numbers.
+   * @return the number of dates converted.
+   */
+  private int convert(String table, String column, String epoch) throws SQLException {
+
+    String id = this.schema.escape("id");
+    String select = "SELECT " + id + ", " + this.schema.escape(column) + " FROM " + this.schema.escape(table)
+      + " WHERE " + id + " > ? ORDER BY " + id + " LIMIT " + CHUNK_SIZE;
+    String update = "UPDATE " + this.schema.escape(table) + " SET " + this.schema.escape(epoch) + " = ? WHERE "
+      + id + " = ?";
+
+    DatabaseConnection connection = this.connectionSource.getReadWriteConnection(table);
+    try (CompiledStatement write = connection.compileStatement(update, StatementType.UPDATE, Schema.NO_FIELD_TYPES,
+      DatabaseConnection.DEFAULT_RESULT_FLAGS, false)) {
+
+      int converted = 0;
+      long last = Long.MIN_VALUE;
+      int read;
+      do {
+        read = 0;
+
+        // A query by chunk: SQLite closes the statement at the end of the results
+        CompiledStatement query = connection.compileStatement(select, StatementType.SELECT_RAW, Schema.NO_FIELD_TYPES,
+          DatabaseConnection.DEFAULT_RESULT_FLAGS, false);
+        query.setObject(0, last, SqlType.LONG);
+        DatabaseResults results = query.runQuery(null);
+        try {
+          while (results.next()) {
+            read++;
+            last = results.getLong(0);
+            String value = results.getString(1);
+            if (value == null) {
+              continue;
+            }
+
+            write.setObject(0, encode(table, column, last, value), SqlType.LONG);
+            write.setObject(1, last, SqlType.LONG);
+            write.runUpdate();
+            converted++;
+          }
+        } finally {
+          results.closeQuietly();
+          query.closeQuietly();
+        }
+      } while (read == CHUNK_SIZE);
+
+      return converted;
+
+    } catch (IOException ex) {
+      throw new SQLException("Can't close the statement", ex);
+    } finally {
+      this.connectionSource.releaseConnection(connection);
+    }
+  }
+
+  /**
+   * @param table of the column.
+   * @param column of the value.
+   * @param id of the row.
+   * @param value the ISO string.
+   * @return the number of the date.
+   */
+  private static long encode(String table, String column, long id, String value) throws SQLException {
+    try {
+      return ZonedDateTimeEpochType.encode(ZonedDateTime.parse(value));
+    } catch (DateTimeParseException | IllegalArgumentException ex) {
+      throw new SQLException("Invalid date in " + table + "." + column + " of id " + id + ": " + value, ex);
+    }
+  }
+
+}
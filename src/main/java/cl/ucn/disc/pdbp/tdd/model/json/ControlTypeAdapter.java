@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.json;
+
+import cl.ucn.disc.pdbp.tdd.model.main.Control;
+import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+
+/**
+ * The JSON of a {@link Control}, with the id, the fechas (ISO) and the id of the ficha.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class ControlTypeAdapter extends TypeAdapter<Control> {
+
+  /**
+   * @see TypeAdapter#write(JsonWriter, Object)
+   */
+  @Override
+  public void write(JsonWriter out, Control control) throws IOException {
+    out.beginObject();
+    out.name("id").value(control.getId());
+    out.name("fecha");
+    ModelTypeAdapters.writeDate(out, control.getFecha());
+    out.name("fechaProximoControl");
+    ModelTypeAdapters.writeDate(out, control.getFechaProximoControl());
+    out.name("temperatura");
+    ModelTypeAdapters.writeFloat(out, control.getTemperatura());
+    out.name("peso");
+    ModelTypeAdapters.writeFloat(out, control.getPeso());
+    out.name("altura");
+    ModelTypeAdapters.writeFloat(out, control.getAltura());
+    out.name("diagnostico").value(control.getDiagnostico());
+    out.name("nombreVeterinario").value(control.getNombreVeterinario());
+    out.name("ficha").value(control.getFicha() == null ? null : control.getFicha().getId());
+    out.endObject();
+  }
+
+  /**
+   * The id is ignored, the control read is new. The ficha is a reference with only the id.
+   *
+   * @see TypeAdapter#read(JsonReader)
+   */
+  @Override
+  public Control read(JsonReader in) throws IOException {
+
+    ZonedDateTime fecha = null;
+    ZonedDateTime fechaProximoControl = null;
+    float temperatura = 0;
+    float peso = 0;
+    float altura = 0;
+    String diagnostico = null;
+    String nombreVeterinario = null;
+    Long ficha = null;
+
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "fecha":
+          fecha = ModelTypeAdapters.readDate(in);
+          break;
+        case "fechaProximoControl":
+          fechaProximoControl = ModelTypeAdapters.readDate(in);
+          break;
+        case "temperatura":
+          temperatura = (float) in.nextDouble();
+          break;
+        case "peso":
+          peso = (float) in.nextDouble();
+          break;
+        case "altura":
+          altura = (float) in.nextDouble();
+          break;
+        case "diagnostico":
+          diagnostico = ModelTypeAdapters.readString(in);
+          break;
+        case "nombreVeterinario":
+          nombreVeterinario = ModelTypeAdapters.readString(in);
+          break;
+        case "ficha":
+          ficha = ModelTypeAdapters.readLong(in);
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+
+    return new Control(fecha, fechaProximoControl, temperatura, peso, altura, diagnostico, nombreVeterinario,
+      ficha == null ? null : Ficha.reference(ficha));
+  }
+
+}
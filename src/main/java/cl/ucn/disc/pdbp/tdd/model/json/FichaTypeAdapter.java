@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.json;
+
+import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import cl.ucn.disc.pdbp.tdd.model.main.Sexo;
+import cl.ucn.disc.pdbp.tdd.model.main.Tipo;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+
+/**
+ * The JSON of a {@link Ficha}, with the id, the fechaNacimiento (ISO) and the id of the duenio (the controles aren't
+ * written).
+ *
+ * @author Miguel León Garrido.
+ */
+public final class FichaTypeAdapter extends TypeAdapter<Ficha> {
+
+  /**
+   * @see TypeAdapter#write(JsonWriter, Object)
+   */
+  @Override
+  public void write(JsonWriter out, Ficha ficha) throws IOException {
+    out.beginObject();
+    out.name("id").value(ficha.getId());
+    out.name("numero").value(ficha.getNumero());
+    out.name("nombrePaciente").value(ficha.getNombrePaciente());
+    out.name("especie").value(ficha.getEspecie());
+    out.name("fechaNacimiento");
+    ModelTypeAdapters.writeDate(out, ficha.getFechaNacimiento());
+    out.name("raza").value(ficha.getRaza());
+    out.name("sexo").value(ficha.getSexo() == null ? null : ficha.getSexo().name());
+    out.name("color").value(ficha.getColor());
+    out.name("tipo").value(ficha.getTipo() == null ? null : ficha.getTipo().name());
+    out.name("duenio").value(ficha.getDuenio() == null ? null : ficha.getDuenio().getId());
+    out.endObject();
+  }
+
+  /**
+   * The id is ignored, the ficha read is new. The duenio is a reference with only the id.
+   *
+   * @see TypeAdapter#read(JsonReader)
+   */
+  @Override
+  public Ficha read(JsonReader in) throws IOException {
+
+    Long numero = null;
+    String nombrePaciente = null;
+    String especie = null;
+    ZonedDateTime fechaNacimiento = null;
+    String raza = null;
+    Sexo sexo = null;
+    String color = null;
+    Tipo tipo = null;
+    Long duenio = null;
+
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "numero":
+          numero = ModelTypeAdapters.readLong(in);
+          break;
+        case "nombrePaciente":
+          nombrePaciente = ModelTypeAdapters.readString(in);
+          break;
+        case "especie":
+          especie = ModelTypeAdapters.readString(in);
+          break;
+        case "fechaNacimiento":
+          fechaNacimiento = ModelTypeAdapters.readDate(in);
+          break;
+        case "raza":
+          raza = ModelTypeAdapters.readString(in);
+          break;
+        case "sexo":
+          sexo = ModelTypeAdapters.readEnum(in, Sexo.class);
+          break;
+        case "color":
+          color = ModelTypeAdapters.readString(in);
+          break;
+        case "tipo":
+          tipo = ModelTypeAdapters.readEnum(in, Tipo.class);
+          break;
+        case "duenio":
+          duenio = ModelTypeAdapters.readLong(in);
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+
+    if (numero == null) {
+      throw new JsonParseException("Missing numero!");
+    }
+    return new Ficha(numero, nombrePaciente, especie, fechaNacimiento, raza, sexo, color, tipo,
+      duenio == null ? null : Persona.reference(duenio));
+  }
+
+}
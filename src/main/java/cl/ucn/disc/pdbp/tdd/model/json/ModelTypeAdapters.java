@@ -0,0 +1,146 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.json;
+
+import cl.ucn.disc.pdbp.tdd.model.main.Control;
+import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * The {@link com.google.gson.TypeAdapter}s of the model, written by hand: the fields are written with the getters,
+ * without reflection, including the ids, the dates (ISO) and the ids of the rows referenced. The rows read are new
+ * (without id), the rows referenced are read as references with only the id.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class ModelTypeAdapters {
+
+  private ModelTypeAdapters() {
+    //nothing
+  }
+
+  /**
+   * Register the adapters of {@link Persona}, {@link Ficha} and {@link Control}.
+   *
+   * @param builder of the Gson.
+   * @return the same builder.
+   */
+  public static GsonBuilder register(GsonBuilder builder) {
+    return builder
+      .registerTypeAdapter(Persona.class, new PersonaTypeAdapter().nullSafe())
+      .registerTypeAdapter(Ficha.class, new FichaTypeAdapter().nullSafe())
+      .registerTypeAdapter(Control.class, new ControlTypeAdapter().nullSafe());
+  }
+
+  /**
+   * @param writer to write.
+   * @param date to write as ISO string (as {@link ZonedDateTime#toString()}, read by {@link ZonedDateTime#parse}),
+   *             can be null.
+   */
+  static void writeDate(JsonWriter writer, ZonedDateTime date) throws IOException {
+    if (date == null) {
+      writer.nullValue();
+    } else {
+      writer.value(date.toString());
+    }
+  }
+
+  /**
+   * @param writer to write.
+   * @param value to write as the float it is (not widened to double: 36.6 and not 36.599998474121094).
+   */
+  static void writeFloat(JsonWriter writer, float value) throws IOException {
+    if (Float.isNaN(value) || Float.isInfinite(value)) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    writer.jsonValue(Float.toString(value));
+  }
+
+  /**
+   * @param reader to read.
+   * @return the string, null if null.
+   */
+  static String readString(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    return reader.nextString();
+  }
+
+  /**
+   * @param reader to read.
+   * @return the long, null if null.
+   */
+  static Long readLong(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    return reader.nextLong();
+  }
+
+  /**
+   * @param reader to read.
+   * @return the date of the ISO string, null if null.
+   */
+  static ZonedDateTime readDate(JsonReader reader) throws IOException {
+    String date = readString(reader);
+    try {
+      return date == null ? null : ZonedDateTime.parse(date);
+    } catch (DateTimeParseException ex) {
+      throw new JsonParseException("Invalid date: " + date, ex);
+    }
+  }
+
+  /**
+   * @param reader to read.
+   * @param type of the enum.
+   * @param <E> the enum.
+   * @return the constant with the name (ignoring case), null if null.
+   */
+  static <E extends Enum<E>> E readEnum(JsonReader reader, Class<E> type) throws IOException {
+    String name = readString(reader);
+    if (name == null) {
+      return null;
+    }
+    for (E constant : type.getEnumConstants()) {
+      if (constant.name().equalsIgnoreCase(name)) {
+        return constant;
+      }
+    }
+    throw new JsonParseException("Invalid " + type.getSimpleName() + ": " + name);
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.json;
+
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * The JSON of a {@link Persona}, with the id (the fichas aren't written).
+ *
+ * @author Miguel León Garrido.
+ */
+public final class PersonaTypeAdapter extends TypeAdapter<Persona> {
+
+  /**
+   * @see TypeAdapter#write(JsonWriter, Object)
+   */
+  @Override
+  public void write(JsonWriter out, Persona persona) throws IOException {
+    out.beginObject();
+    out.name("id").value(persona.getId());
+    out.name("nombre").value(persona.getNombre());
+    out.name("apellido").value(persona.getApellido());
+    out.name("rut").value(persona.getRut());
+    out.name("direccion").value(persona.getDireccion());
+    out.name("telefonoFijo").value(persona.getTelefonoFijo().intValue());
+    out.name("telefonoMovil").value(persona.getTelefonoMovil().intValue());
+    out.name("email").value(persona.getEmail());
+    out.endObject();
+  }
+
+  /**
+   * The id is ignored, the persona read is new (validated by the constructor).
+   *
+   * @see TypeAdapter#read(JsonReader)
+   */
+  @Override
+  public Persona read(JsonReader in) throws IOException {
+
+    String nombre = null;
+    String apellido = null;
+    String rut = null;
+    String direccion = null;
+    Integer telefonoFijo = null;
+    Integer telefonoMovil = null;
+    String email = null;
+
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "nombre":
+          nombre = in.nextString();
+          break;
+        case "apellido":
+          apellido = in.nextString();
+          break;
+        case "rut":
+          rut = in.nextString();
+          break;
+        case "direccion":
+          direccion = in.nextString();
+          break;
+        case "telefonoFijo":
+          telefonoFijo = in.nextInt();
+          break;
+        case "telefonoMovil":
+          telefonoMovil = in.nextInt();
+          break;
+        case "email":
+          email = in.nextString();
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+
+    try {
+      return new Persona(nombre, apellido, rut, direccion, telefonoFijo, telefonoMovil, email);
+    } catch (RuntimeException ex) {
+      throw new JsonParseException(ex.getMessage(), ex);
+    }
+  }
+
+}
@@ -24,7 +24,7 @@
 
 package cl.ucn.disc.pdbp.tdd.model.main;
 
-import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeType;
+import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeEpochType;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
 
@@ -44,16 +44,24 @@ public class Control {
   @DatabaseField(generatedId = true)
   private transient Long id;
 
+  /**
+   * ficha a la cual pertenece este control (only the id is read with the control, the repository fetches the rest).
+   * Indexed with the fecha (ficha_id, fecha): the controles of a ficha, by fecha. Declared first: the order of the
+   * columns of the index is the order of the fields.
+   */
+  @DatabaseField(foreign = true, canBeNull = false, indexName = "control_ficha_fecha_idx")
+  private transient Ficha ficha;
+
   /**
    * fecha del control.
    */
-  @DatabaseField(persisterClass = ZonedDateTimeType.class)
+  @DatabaseField(persisterClass = ZonedDateTimeEpochType.class, indexName = "control_ficha_fecha_idx")
   private transient ZonedDateTime fecha;
 
   /**
-   * fecha del proximo control.
+   * fecha del proximo control (indexed, to find the next controles by range).
    */
-  @DatabaseField(persisterClass = ZonedDateTimeType.class)
+  @DatabaseField(persisterClass = ZonedDateTimeEpochType.class, index = true)
   private transient ZonedDateTime fechaProximoControl;
 
   /**
@@ -86,12 +94,6 @@ public class Control {
   @DatabaseField(canBeNull = false)
   private String nombreVeterinario;
 
-  /**
-   * ficha a la cual pertenece este control.
-   */
-  @DatabaseField(foreign = true, canBeNull = false, foreignAutoRefresh = true)
-  private transient Ficha ficha;
-
   /**
    * Empty Constructor.
    */
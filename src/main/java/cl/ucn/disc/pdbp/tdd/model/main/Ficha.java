@@ -24,7 +24,7 @@
 
 package cl.ucn.disc.pdbp.tdd.model.main;
 
-import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeType;
+import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeEpochType;
 import com.j256.ormlite.dao.ForeignCollection;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.field.ForeignCollectionField;
@@ -55,7 +55,7 @@ public final class Ficha {
   /**
    * Nombre del paciente.
    */
-  @DatabaseField(canBeNull = false)
+  @DatabaseField(canBeNull = false, index = true)
   private String nombrePaciente;
 
   /**
@@ -67,7 +67,7 @@ public final class Ficha {
   /**
    * fecha de nacimiento del animal.
    */
-  @DatabaseField(persisterClass = ZonedDateTimeType.class)
+  @DatabaseField(persisterClass = ZonedDateTimeEpochType.class)
   private transient ZonedDateTime fechaNacimiento;
 
   /**
@@ -95,9 +95,9 @@ public final class Ficha {
   private Tipo tipo;
 
   /**
-   * The duenio.
+   * The duenio (only the id is read with the ficha, the repository fetches the rest). Indexed: the fichas of a persona.
    */
-  @DatabaseField(foreign = true, canBeNull = false, foreignAutoRefresh = true)
+  @DatabaseField(foreign = true, canBeNull = false, index = true)
   private transient Persona duenio;
 
   /**
@@ -113,6 +113,16 @@ public final class Ficha {
     // nothing here
   }
 
+  /**
+   * @param id of the ficha.
+   * @return a reference to the ficha with only the id (as the foreign fields read by ORMLite).
+   */
+  public static Ficha reference(Long id) {
+    Ficha reference = new Ficha();
+    reference.id = id;
+    return reference;
+  }
+
   /**
    * The Constructor.
    *
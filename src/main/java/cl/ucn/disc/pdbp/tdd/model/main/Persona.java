@@ -57,11 +57,17 @@ public class Persona {
   private String apellido;
 
   /**
-   * The rut.
+   * The rut (unique: a new name, so the index is created over the old databases too).
    */
-  @DatabaseField(canBeNull = false, index = true)
+  @DatabaseField(canBeNull = false, uniqueIndexName = "persona_rut_unique")
   private String rut;
 
+  /**
+   * The body of the rut (without the check digit), the key of the lookups by rut.
+   */
+  @DatabaseField(canBeNull = false, uniqueIndexName = "persona_rutnumero_unique")
+  private transient long rutNumero;
+
   /**
    * The direccion.
    */
@@ -100,11 +106,21 @@ public class Persona {
     //nothing
   }
 
+  /**
+   * @param id of the persona.
+   * @return a reference to the persona with only the id (as the foreign fields read by ORMLite).
+   */
+  public static Persona reference(Long id) {
+    Persona reference = new Persona();
+    reference.id = id;
+    return reference;
+  }
+
   /** Constructor.
    *
    * @param nombre nombre de la persona
    * @param apellido apellido de la persona
-   * @param rut rut de la persona
+   * @param rut rut de la persona, compact or formatted (15.253.287-3)
    * @param direccion direccion de la persona
    * @param telefonoFijo telefono fijo de la persona
    * @param telefonoMovil telefono movil de la persona
@@ -118,7 +134,9 @@ public class Persona {
       throw new NullPointerException("Null parameter!");
     }
 
-    if (!v.isRutValid(rut)) {
+    // The rut is stored in the canonical compact form, and their body as number
+    long rutKey = Validation.parseRut(rut);
+    if (rutKey < 0) {
       throw new RuntimeException("Invalid Rut!");
     }
 
@@ -148,7 +166,8 @@ public class Persona {
 
     this.nombre = nombre;
     this.apellido = apellido;
-    this.rut = rut;
+    this.rut = Validation.formatRut(rutKey);
+    this.rutNumero = rutKey / 10;
     this.direccion = direccion;
     this.telefonoFijo = telefonoFijo;
     this.telefonoMovil = telefonoMovil;
@@ -194,6 +213,13 @@ public class Persona {
     return rut;
   }
 
+  /**
+   * @return el cuerpo del rut (sin digito verificador)
+   */
+  public long getRutNumero() {
+    return this.rutNumero;
+  }
+
   /** Getter.
    *
    * @return la direccion
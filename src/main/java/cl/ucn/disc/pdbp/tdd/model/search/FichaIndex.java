@@ -0,0 +1,282 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.search;
+
+import cl.ucn.disc.pdbp.tdd.model.dao.Repository;
+import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import cl.ucn.disc.pdbp.tdd.model.utils.Validation;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In memory index to find the {@link Ficha} by numero, name of paciente, rut and name of duenio.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class FichaIndex {
+
+  /**
+   * The names of paciente, by id of ficha.
+   */
+  private final TrigramIndex pacientes = new TrigramIndex();
+
+  /**
+   * The name of duenios, by id of persona.
+   */
+  private final TrigramIndex duenios = new TrigramIndex();
+
+  /**
+   * The id of persona, by rutNumero (ordered: the prefixes of rut are ranges).
+   */
+  private final NavigableMap<Long, Long> ruts = new TreeMap<>();
+
+  /**
+   * The rutNumero, by id of persona.
+   */
+  private final Map<Long, Long> rutByPersona = new HashMap<>();
+
+  /**
+   * The id of ficha, by numero.
+   */
+  private final Map<Long, Long> numeros = new HashMap<>();
+
+  /**
+   * The numero, by id of ficha.
+   */
+  private final Map<Long, Long> numeroByFicha = new HashMap<>();
+
+  /**
+   * The ids of fichas, by id of duenio.
+   */
+  private final Map<Long, Set<Long>> fichasByDuenio = new HashMap<>();
+
+  /**
+   * The id of duenio, by id of ficha.
+   */
+  private final Map<Long, Long> duenioByFicha = new HashMap<>();
+
+  /**
+   * The lock (many readers, one writer).
+   */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Index (or re-index) a persona.
+   *
+   * @param persona to index.
+   */
+  public void putPersona(Persona persona) {
+    this.lock.writeLock().lock();
+    try {
+      this.unlinkPersona(persona.getId());
+
+      this.duenios.put(persona.getId(), persona.getNombre());
+      this.ruts.put(persona.getRutNumero(), persona.getId());
+      this.rutByPersona.put(persona.getId(), persona.getRutNumero());
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Remove a persona (and not their fichas) from the index.
+   *
+   * @param id of the persona.
+   */
+  public void removePersona(long id) {
+    this.lock.writeLock().lock();
+    try {
+      this.duenios.remove(id);
+      this.unlinkPersona(id);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Index (or re-index) a ficha.
+   *
+   * @param ficha to index.
+   */
+  public void putFicha(Ficha ficha) {
+    this.lock.writeLock().lock();
+    try {
+      this.unlink(ficha.getId());
+
+      this.pacientes.put(ficha.getId(), ficha.getNombrePaciente());
+      this.numeros.put(ficha.getNumero(), ficha.getId());
+      this.numeroByFicha.put(ficha.getId(), ficha.getNumero());
+
+      Long idDuenio = ficha.getDuenio().getId();
+      this.fichasByDuenio.computeIfAbsent(idDuenio, key -> new HashSet<>()).add(ficha.getId());
+      this.duenioByFicha.put(ficha.getId(), idDuenio);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Remove a ficha from the index.
+   *
+   * @param id of the ficha.
+   */
+  public void removeFicha(long id) {
+    this.lock.writeLock().lock();
+    try {
+      this.pacientes.remove(id);
+      this.unlink(id);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Find the fichas with numero equals to the query, with the query inside the name of paciente or the name of duenio
+   * (ignoring case), or with the rut of duenio matched by the query (see {@link Validation#rutRanges(String)}).
+   *
+   * @param query to search.
+   * @return the ids of the fichas found, null if the query is too short to be answered by the index.
+   */
+  public Set<Long> search(String query) {
+
+    if (query.length() < TrigramIndex.MIN_QUERY_LENGTH) {
+      return null;
+    }
+
+    this.lock.readLock().lock();
+    try {
+      Set<Long> found = new HashSet<>(this.pacientes.search(query));
+
+      if (StringUtils.isNumeric(query)) {
+        try {
+          Long id = this.numeros.get(Long.valueOf(query));
+          if (id != null) {
+            found.add(id);
+          }
+        } catch (NumberFormatException ex) {
+          // Too long to be a numero
+        }
+      }
+
+      Set<Long> idDuenios = new HashSet<>(this.duenios.search(query));
+      long[] ranges = Validation.rutRanges(query);
+      for (int i = 0; i < ranges.length; i += 2) {
+        if (ranges[i] < ranges[i + 1]) {
+          idDuenios.addAll(this.ruts.subMap(ranges[i], ranges[i + 1]).values());
+        }
+      }
+
+      for (Long idDuenio : idDuenios) {
+        found.addAll(this.fichasByDuenio.getOrDefault(idDuenio, Collections.emptySet()));
+      }
+
+      return found;
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Index again all the personas and fichas.
+   *
+   * @param repoFicha the {@link Repository} of {@link Ficha}.
+   * @param repoPersona the {@link Repository} of {@link Persona}.
+   */
+  public void rebuild(Repository<Ficha, Long> repoFicha, Repository<Persona, Long> repoPersona) {
+    this.lock.writeLock().lock();
+    try {
+      this.pacientes.clear();
+      this.duenios.clear();
+      this.ruts.clear();
+      this.rutByPersona.clear();
+      this.numeros.clear();
+      this.numeroByFicha.clear();
+      this.fichasByDuenio.clear();
+      this.duenioByFicha.clear();
+
+      repoPersona.findAll().forEach(this::putPersona);
+      repoFicha.findAll().forEach(this::putFicha);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @return the number of fichas indexed.
+   */
+  public int size() {
+    this.lock.readLock().lock();
+    try {
+      return this.pacientes.size();
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Remove the link of a persona with their rut.
+   *
+   * @param id of the persona.
+   */
+  private void unlinkPersona(Long id) {
+    Long rutNumero = this.rutByPersona.remove(id);
+    if (rutNumero != null) {
+      this.ruts.remove(rutNumero);
+    }
+  }
+
+  /**
+   * Remove the links of a ficha with their numero and duenio.
+   *
+   * @param id of the ficha.
+   */
+  private void unlink(Long id) {
+
+    Long numero = this.numeroByFicha.remove(id);
+    if (numero != null) {
+      this.numeros.remove(numero);
+    }
+
+    Long idDuenio = this.duenioByFicha.remove(id);
+    if (idDuenio != null) {
+      Set<Long> fichas = this.fichasByDuenio.get(idDuenio);
+      fichas.remove(id);
+      if (fichas.isEmpty()) {
+        this.fichasByDuenio.remove(idDuenio);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index of trigrams (3 chars) for case-insensitive substring search.
+ * Not thread safe, the caller must synchronize.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class TrigramIndex {
+
+  /**
+   * The minimum size of a query that can be answered by the index.
+   */
+  public static final int MIN_QUERY_LENGTH = 3;
+
+  /**
+   * The ids of the documents that contains each trigram.
+   */
+  private final Map<Long, Set<Long>> postings = new HashMap<>();
+
+  /**
+   * The texts (in lower case) of each document.
+   */
+  private final Map<Long, String[]> documents = new HashMap<>();
+
+  /**
+   * Index (or re-index) a document.
+   *
+   * @param id of the document.
+   * @param texts to index.
+   */
+  public void put(long id, String... texts) {
+
+    // Re-index
+    this.remove(id);
+
+    String[] normalized = new String[texts.length];
+    for (int i = 0; i < texts.length; i++) {
+      normalized[i] = normalize(texts[i]);
+      for (long trigram : trigrams(normalized[i])) {
+        this.postings.computeIfAbsent(trigram, key -> new HashSet<>()).add(id);
+      }
+    }
+    this.documents.put(id, normalized);
+  }
+
+  /**
+   * Remove a document from the index.
+   *
+   * @param id of the document.
+   */
+  public void remove(long id) {
+
+    String[] texts = this.documents.remove(id);
+    if (texts == null) {
+      return;
+    }
+
+    for (String text : texts) {
+      for (long trigram : trigrams(text)) {
+        Set<Long> ids = this.postings.get(trigram);
+        if (ids != null) {
+          ids.remove(id);
+          if (ids.isEmpty()) {
+            this.postings.remove(trigram);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Find the documents with some text containing the query.
+   *
+   * @param query to search, at least {@link #MIN_QUERY_LENGTH} chars.
+   * @return the ids of the documents.
+   */
+  public Set<Long> search(String query) {
+
+    if (query == null || query.length() < MIN_QUERY_LENGTH) {
+      throw new IllegalArgumentException("Query too short for the index!");
+    }
+
+    String normalized = normalize(query);
+
+    // The posting lists of every trigram, the smallest first
+    List<Set<Long>> lists = new ArrayList<>();
+    for (long trigram : trigrams(normalized)) {
+      Set<Long> ids = this.postings.get(trigram);
+      if (ids == null) {
+        return Collections.emptySet();
+      }
+      lists.add(ids);
+    }
+    lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+    // Intersection and verification (the trigrams could be in different positions)
+    Set<Long> found = new HashSet<>();
+    for (Long id : lists.get(0)) {
+
+      boolean inAll = true;
+      for (int i = 1; i < lists.size() && inAll; i++) {
+        inAll = lists.get(i).contains(id);
+      }
+
+      if (inAll && this.contains(id, normalized)) {
+        found.add(id);
+      }
+    }
+
+    return found;
+  }
+
+  /**
+   * @return the number of documents indexed.
+   */
+  public int size() {
+    return this.documents.size();
+  }
+
+  /**
+   * Remove all the documents.
+   */
+  public void clear() {
+    this.postings.clear();
+    this.documents.clear();
+  }
+
+  /**
+   * @param id of the document.
+   * @param normalized query.
+   * @return true if some text of the document contains the query.
+   */
+  private boolean contains(Long id, String normalized) {
+    for (String text : this.documents.get(id)) {
+      if (text.contains(normalized)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param text to normalize.
+   * @return the text in lower case, empty if null.
+   */
+  private static String normalize(String text) {
+    return text == null ? "" : text.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * @param text normalized.
+   * @return the trigrams of the text, each one packed in a long (16 bits per char).
+   */
+  private static Set<Long> trigrams(String text) {
+
+    Set<Long> trigrams = new HashSet<>();
+    for (int i = 0; i + MIN_QUERY_LENGTH <= text.length(); i++) {
+      trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+    }
+    return trigrams;
+  }
+
+}
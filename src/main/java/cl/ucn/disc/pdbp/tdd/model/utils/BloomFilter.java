@@ -0,0 +1,234 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over keys (strings or numbers): {@link #mightContain(long)} false means the key was never added, true
+ * means it maybe was (false positive with probability fpp). The keys can't be removed. Thread safe, without locks.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class BloomFilter {
+
+  /**
+   * The bits, in words of 64.
+   */
+  private final AtomicLongArray bits;
+
+  /**
+   * The number of bits.
+   */
+  private final long numBits;
+
+  /**
+   * The number of hashes by key.
+   */
+  private final int numHashes;
+
+  /**
+   * The keys expected.
+   */
+  private final long expectedInsertions;
+
+  /**
+   * The false positive probability expected, with the keys expected.
+   */
+  private final double fpp;
+
+  /**
+   * The keys added.
+   */
+  private final AtomicLong insertions = new AtomicLong();
+
+  /**
+   * The keys checked.
+   */
+  private final AtomicLong checks = new AtomicLong();
+
+  /**
+   * The keys checked and not found.
+   */
+  private final AtomicLong negatives = new AtomicLong();
+
+  /**
+   * The Constructor.
+   *
+   * @param expectedInsertions the keys expected, the memory used grows with them.
+   * @param fpp the false positive probability, with the keys expected.
+   */
+  public BloomFilter(long expectedInsertions, double fpp) {
+
+    if (expectedInsertions <= 0) {
+      throw new IllegalArgumentException("Invalid expectedInsertions!");
+    }
+    if (!(fpp > 0 && fpp < 1)) {
+      throw new IllegalArgumentException("Invalid fpp!");
+    }
+
+    // m = -n ln(p) / ln(2)^2, in words of 64 bits
+    long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+    int words = (int) Math.max(1, (optimalBits + 63) / 64);
+
+    this.bits = new AtomicLongArray(words);
+    this.numBits = words * 64L;
+
+    // k = m / n ln(2)
+    this.numHashes = (int) Math.max(1, Math.round((double) this.numBits / expectedInsertions * Math.log(2)));
+    this.expectedInsertions = expectedInsertions;
+    this.fpp = fpp;
+  }
+
+  /**
+   * @param key to add.
+   */
+  public void put(String key) {
+    this.putHash(hash(key));
+  }
+
+  /**
+   * @param key to add.
+   */
+  public void put(long key) {
+    this.putHash(mix(key));
+  }
+
+  /**
+   * @param key to check.
+   * @return false if the key was never added, true if maybe was.
+   */
+  public boolean mightContain(String key) {
+    return this.mightContainHash(hash(key));
+  }
+
+  /**
+   * @param key to check.
+   * @return false if the key was never added, true if maybe was.
+   */
+  public boolean mightContain(long key) {
+    return this.mightContainHash(mix(key));
+  }
+
+  /**
+   * @return the metrics of the filter, by name.
+   */
+  public Map<String, Number> getMetrics() {
+    Map<String, Number> metrics = new LinkedHashMap<>();
+    metrics.put("bytes", this.numBits / 8);
+    metrics.put("hashes", this.numHashes);
+    metrics.put("expected_insertions", this.expectedInsertions);
+    metrics.put("insertions_total", this.insertions.get());
+    metrics.put("fpp_configured", this.fpp);
+    metrics.put("fpp_estimated", this.estimatedFpp());
+    metrics.put("checks_total", this.checks.get());
+    metrics.put("negatives_total", this.negatives.get());
+    return metrics;
+  }
+
+  /**
+   * @return the false positive probability with the keys added: (1 - e^(-k n / m))^k.
+   */
+  public double estimatedFpp() {
+    return Math.pow(1 - Math.exp(-this.numHashes * (double) this.insertions.get() / this.numBits), this.numHashes);
+  }
+
+  /**
+   * Set the bits of a hash (double hashing: h1 + i * h2).
+   *
+   * @param hash of the key.
+   */
+  private void putHash(long hash) {
+
+    long h1 = hash;
+    long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+
+    for (int i = 0; i < this.numHashes; i++) {
+      long bit = Math.floorMod(h1 + i * h2, this.numBits);
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+
+      // Set the bit (compare and set, without locks)
+      long old = this.bits.get(word);
+      while ((old & mask) == 0 && !this.bits.compareAndSet(word, old, old | mask)) {
+        old = this.bits.get(word);
+      }
+    }
+    this.insertions.incrementAndGet();
+  }
+
+  /**
+   * @param hash of the key.
+   * @return true if all the bits of the hash are set.
+   */
+  private boolean mightContainHash(long hash) {
+
+    this.checks.incrementAndGet();
+
+    long h1 = hash;
+    long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+
+    for (int i = 0; i < this.numHashes; i++) {
+      long bit = Math.floorMod(h1 + i * h2, this.numBits);
+      if ((this.bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        this.negatives.incrementAndGet();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param key to hash.
+   * @return the 64 bits hash of the key (FNV-1a of the UTF-8 bytes, mixed).
+   */
+  private static long hash(String key) {
+    long hash = 0xCBF29CE484222325L;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xFF;
+      hash *= 0x100000001B3L;
+    }
+    return mix(hash);
+  }
+
+  /**
+   * @param value to mix.
+   * @return the bits of the value mixed (the finalizer of MurmurHash3).
+   */
+  private static long mix(long value) {
+    long hash = value;
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    hash *= 0xC4CEB93F53A3FE85L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of values (latencies in nanoseconds, rows, ..) with log-linear buckets, as HdrHistogram: each power of two
+ * is split in {@link #SUB_BUCKETS} buckets, so the quantiles have a relative error under 1 / {@link #SUB_BUCKETS}
+ * with a fixed memory (the values over 2^{@link #MAX_EXPONENT} share the last bucket). Thread safe, without locks.
+ *
+ * @author Miguel León Garrido.
+ */
+public final class Histogram {
+
+  /**
+   * The bits of the buckets by power of two.
+   */
+  private static final int SUB_BITS = 4;
+
+  /**
+   * The buckets by power of two.
+   */
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+  /**
+   * The values recorded in buckets are under 2^MAX_EXPONENT (18 minutes in nanoseconds).
+   */
+  private static final int MAX_EXPONENT = 40;
+
+  /**
+   * The quantiles of {@link #getMetrics()}.
+   */
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  /**
+   * The names of the {@link #QUANTILES}.
+   */
+  private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+  /**
+   * The count of values by bucket.
+   */
+  private final AtomicLongArray counts = new AtomicLongArray(index((1L << MAX_EXPONENT) - 1) + 1);
+
+  /**
+   * The number of values.
+   */
+  private final AtomicLong count = new AtomicLong();
+
+  /**
+   * The sum of the values.
+   */
+  private final AtomicLong sum = new AtomicLong();
+
+  /**
+   * The max value.
+   */
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param value to record, the negatives as 0.
+   */
+  public void record(long value) {
+    long positive = Math.max(0, value);
+    this.counts.incrementAndGet(index(Math.min(positive, (1L << MAX_EXPONENT) - 1)));
+    this.count.incrementAndGet();
+    this.sum.addAndGet(positive);
+    this.max.accumulateAndGet(positive, Math::max);
+  }
+
+  /**
+   * @param quantile between 0 and 1.
+   * @return the highest value of the bucket of the quantile (the max if it's in the last bucket), 0 if empty.
+   */
+  public long getValueAtQuantile(double quantile) {
+
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("Invalid quantile!");
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(quantile * this.count.get()));
+    long seen = 0;
+    for (int i = 0; i < this.counts.length(); i++) {
+      seen += this.counts.get(i);
+      if (seen >= rank && i < this.counts.length() - 1) {
+        return Math.min(lowest(i + 1) - 1, this.max.get());
+      }
+    }
+    return this.max.get();
+  }
+
+  /**
+   * @return the number of values.
+   */
+  public long getCount() {
+    return this.count.get();
+  }
+
+  /**
+   * @return the sum of the values.
+   */
+  public long getSum() {
+    return this.sum.get();
+  }
+
+  /**
+   * @return the max value.
+   */
+  public long getMax() {
+    return this.max.get();
+  }
+
+  /**
+   * @return the count, sum, max and quantiles (p50, p90, p99 and p999), by name.
+   */
+  public Map<String, Number> getMetrics() {
+    Map<String, Number> metrics = new LinkedHashMap<>();
+    metrics.put("count", this.getCount());
+    metrics.put("sum", this.getSum());
+    metrics.put("max", this.getMax());
+    for (int i = 0; i < QUANTILES.length; i++) {
+      metrics.put(QUANTILE_NAMES[i], this.getValueAtQuantile(QUANTILES[i]));
+    }
+    return metrics;
+  }
+
+  /**
+   * @param value positive, under 2^{@link #MAX_EXPONENT}.
+   * @return the bucket of the value: the values under {@link #SUB_BUCKETS} have their own bucket, then each power of
+   *   two has {@link #SUB_BUCKETS} buckets.
+   */
+  private static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+    return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * @param index of a bucket.
+   * @return the lowest value of the bucket.
+   */
+  private static long lowest(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+    long sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+    return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+  }
+
+}
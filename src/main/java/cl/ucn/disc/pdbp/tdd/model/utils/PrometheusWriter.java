@@ -0,0 +1,166 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model.utils;
+
+import java.util.Map;
+
+/**
+ * Writes the metrics in the text format of Prometheus (version 0.0.4): the metrics by name (as
+ * {@link BloomFilter#getMetrics()}) as counters (the names ending in _total) or gauges, and the {@link Histogram}s as
+ * summaries (the quantiles, the sum and the count).
+ *
+ * @author Miguel León Garrido.
+ */
+public final class PrometheusWriter {
+
+  /**
+   * The content type of the text format.
+   */
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  /**
+   * The quantiles of the summaries.
+   */
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  /**
+   * The text written.
+   */
+  private final StringBuilder out = new StringBuilder();
+
+  /**
+   * The prefix of all the names.
+   */
+  private final String namespace;
+
+  /**
+   * The Constructor.
+   *
+   * @param namespace the prefix of all the names (the application).
+   */
+  public PrometheusWriter(String namespace) {
+    if (namespace == null || namespace.isEmpty()) {
+      throw new IllegalArgumentException("Invalid namespace!");
+    }
+    this.namespace = namespace;
+  }
+
+  /**
+   * Write the metrics as counters (the names ending in _total) or gauges.
+   *
+   * @param prefix of the names (the component), after the namespace.
+   * @param metrics by name.
+   */
+  public void write(String prefix, Map<String, Number> metrics) {
+    metrics.forEach((name, value) -> {
+      String fullName = this.namespace + '_' + prefix + '_' + name;
+      this.type(fullName, name.endsWith("_total") ? "counter" : "gauge");
+      this.out.append(fullName).append(' ').append(format(value)).append('\n');
+    });
+  }
+
+  /**
+   * Write the histograms as a summary with a label (the quantiles, the sum and the count), and their max as a gauge.
+   *
+   * @param name of the summary, after the namespace.
+   * @param label of the histograms.
+   * @param histograms by value of the label.
+   * @param scale of the values (1e-9 from nanoseconds to seconds).
+   */
+  public void write(String name, String label, Map<String, Histogram> histograms, double scale) {
+
+    String fullName = this.namespace + '_' + name;
+    this.type(fullName, "summary");
+    histograms.forEach((value, histogram) -> {
+      String labels = label + "=\"" + value + '"';
+      for (double quantile : QUANTILES) {
+        this.out.append(fullName).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+          .append(format(histogram.getValueAtQuantile(quantile) * scale)).append('\n');
+      }
+      this.out.append(fullName).append("_sum{").append(labels).append("} ")
+        .append(format(histogram.getSum() * scale)).append('\n');
+      this.out.append(fullName).append("_count{").append(labels).append("} ")
+        .append(histogram.getCount()).append('\n');
+    });
+
+    this.type(fullName + "_max", "gauge");
+    histograms.forEach((value, histogram) -> this.out.append(fullName).append("_max{").append(label).append("=\"")
+      .append(value).append("\"} ").append(format(histogram.getMax() * scale)).append('\n'));
+  }
+
+  /**
+   * Write the histogram as a summary without labels.
+   *
+   * @param name of the summary, after the namespace.
+   * @param histogram to write.
+   * @param scale of the values.
+   */
+  public void write(String name, Histogram histogram, double scale) {
+
+    String fullName = this.namespace + '_' + name;
+    this.type(fullName, "summary");
+    for (double quantile : QUANTILES) {
+      this.out.append(fullName).append("{quantile=\"").append(quantile).append("\"} ")
+        .append(format(histogram.getValueAtQuantile(quantile) * scale)).append('\n');
+    }
+    this.out.append(fullName).append("_sum ").append(format(histogram.getSum() * scale)).append('\n');
+    this.out.append(fullName).append("_count ").append(histogram.getCount()).append('\n');
+  }
+
+  /**
+   * @param name of the metric.
+   * @param type counter, gauge or summary.
+   */
+  private void type(String name, String type) {
+    this.out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  /**
+   * @param value of a metric.
+   * @return the value in the text format: the integers without decimals.
+   */
+  private static String format(Number value) {
+    if (value instanceof Double || value instanceof Float) {
+      double number = value.doubleValue();
+      if (Double.isNaN(number)) {
+        return "NaN";
+      }
+      if (Double.isInfinite(number)) {
+        return number > 0 ? "+Inf" : "-Inf";
+      }
+      return Double.toString(number);
+    }
+    return value.toString();
+  }
+
+  /**
+   * @return the text written.
+   */
+  @Override
+  public String toString() {
+    return this.out.toString();
+  }
+
+}
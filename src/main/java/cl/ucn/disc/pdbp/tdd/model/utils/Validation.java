@@ -45,48 +45,210 @@ public class Validation {
    */
   private static final Pattern PATTERN = Pattern.compile(REGEX);
 
+  /**
+   * The minimum body of a rut (7 digits, without leading zeros).
+   */
+  private static final long MIN_RUT_BODY = 1_000_000L;
+
+  /**
+   * The maximum number of digits of the body of a rut.
+   */
+  private static final int MAX_RUT_DIGITS = 8;
+
   /**
    * Validation of the rut.
-   * @param rut rut de la persona
+   * @param rut rut de la persona, compact (152532873) or formatted (15.253.287-3).
    * @return true if valid, false otherwise.
    */
   public static boolean isRutValid(String rut) {
-    if (rut == null) {
-      return false;
+    return parseRut(rut) >= 0;
+  }
+
+  /**
+   * Parse a rut, compact (152532873) or formatted (15.253.287-3), without allocations: the body (7 or 8 digits, without
+   * dots or with a dot between every group of three) and the check digit (modulo 11, K in any case, after an optional
+   * hyphen).
+   *
+   * @param rut to parse.
+   * @return the numeric key of the rut (the body * 10 + the check digit, see {@link #rutKey(long)}), -1 if invalid.
+   */
+  public static long parseRut(String rut) {
+    if (rut == null || rut.length() < 2) {
+      return -1;
+    }
+
+    // The check digit: 0 .. 9 or 10 (K)
+    int last = rut.length() - 1;
+    char dv = rut.charAt(last);
+    int digit;
+    if (dv >= '0' && dv <= '9') {
+      digit = dv - '0';
+    } else if (dv == 'K' || dv == 'k') {
+      digit = 10;
+    } else {
+      return -1;
+    }
+
+    int end = last - 1;
+    if (rut.charAt(end) == '-') {
+      end--;
+    }
+
+    // The body, from the right: the value and the sum of modulo 11 (factors 2, 3, .., 7, 2, 3, ..)
+    long body = 0;
+    long weight = 1;
+    int digits = 0;
+    int dots = 0;
+    int sum = 0;
+    int factor = 2;
+    for (int i = end; i >= 0; i--) {
+      char c = rut.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (++digits > MAX_RUT_DIGITS) {
+          return -1;
+        }
+        body += (c - '0') * weight;
+        weight *= 10;
+        sum += (c - '0') * factor;
+        factor = factor == 7 ? 2 : factor + 1;
+      } else if (c != '.' || i == 0 || digits == 0 || digits % 3 != 0 || rut.charAt(i + 1) == '.') {
+        return -1;
+      } else {
+        dots++;
+      }
+    }
+
+    // The dots (each one after a group of three): none or all
+    if (dots != 0 && dots != (digits - 1) / 3) {
+      return -1;
+    }
+
+    if (body < MIN_RUT_BODY || checkDigitOfSum(sum) != digit) {
+      return -1;
+    }
+    return body * 10 + digit % 10;
+  }
+
+  /**
+   * The number of ranges of {@link #rutRanges(String)}.
+   */
+  public static final int RUT_RANGES = 3;
+
+  /**
+   * The ranges of the bodies of the ruts matched by a query: the rut (compact or formatted) and the ruts of 7 and 8
+   * digits starting with the query (digits and dots). The ranges not used are empty (0, 0).
+   *
+   * @param query to match.
+   * @return the {@link #RUT_RANGES} ranges [from, to) as from0, to0, from1, to1, ..
+   */
+  public static long[] rutRanges(String query) {
+
+    long[] ranges = new long[2 * RUT_RANGES];
+
+    // The rut
+    long key = parseRut(query);
+    if (key >= 0) {
+      ranges[0] = key / 10;
+      ranges[1] = key / 10 + 1;
     }
 
-    int rutLength = rut.length();
-    if (rutLength != 8 && rutLength != 9) {
-      return false;
+    // The prefix, without leading zeros
+    long prefix = 0;
+    int digits = 0;
+    for (int i = 0; query != null && i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (c >= '0' && c <= '9') {
+        prefix = prefix * 10 + (c - '0');
+        if (prefix == 0 || ++digits > MAX_RUT_DIGITS) {
+          return ranges;
+        }
+      } else if (c != '.' || digits == 0) {
+        return ranges;
+      }
     }
 
-    int totalSum = 0;
-    for (int i = rutLength - 2;i >= 0;i--) {
-      int digitNumber = 0;
-      try {
-        digitNumber = Integer.parseInt(rut.substring(i,i + 1));
-      } catch (Exception e) {
-        return false;
+    // The bodies of 7 and 8 digits
+    for (int length = MAX_RUT_DIGITS - 1, range = 1; length <= MAX_RUT_DIGITS; length++, range++) {
+      if (digits > 0 && digits <= length) {
+        long scale = 1;
+        for (int i = digits; i < length; i++) {
+          scale *= 10;
+        }
+        ranges[2 * range] = prefix * scale;
+        ranges[2 * range + 1] = (prefix + 1) * scale;
       }
+    }
+    return ranges;
+  }
 
-      int toMultiply = rutLength - i;
-      if (toMultiply > 7) {
-        toMultiply -= 6;
+  /**
+   * @param ranges of {@link #rutRanges(String)}.
+   * @param body of a rut.
+   * @return true if the body is inside any range.
+   */
+  public static boolean isRutInRanges(long[] ranges, long body) {
+    for (int i = 0; i < ranges.length; i += 2) {
+      if (body >= ranges[i] && body < ranges[i + 1]) {
+        return true;
       }
-      int toSum = digitNumber * toMultiply;
-      totalSum += toSum;
     }
+    return false;
+  }
 
-    int number = 11 - (totalSum % 11);
-    String correctValidationNumber;
-    if (number == 10) {
-      correctValidationNumber = "K";
-    } else {
-      correctValidationNumber = Integer.toString(number);
+  /**
+   * Normalize a rut to the canonical compact form: the body without dots and the check digit (K in upper case),
+   * 15.253.287-3 to 152532873.
+   *
+   * @param rut to normalize.
+   * @return the rut normalized, null if invalid.
+   */
+  public static String normalizeRut(String rut) {
+    long key = parseRut(rut);
+    return key < 0 ? null : formatRut(key);
+  }
+
+  /**
+   * The numeric key of a rut is the body * 10 + the check digit: ordered as the body and equals to the compact rut
+   * when the check digit is a number. The K is stored as 0 (10 modulo 10), unique anyway because the check digit
+   * depends on the body.
+   *
+   * @param body of the rut.
+   * @return the numeric key of the rut.
+   */
+  public static long rutKey(long body) {
+    return body * 10 + checkDigit(body) % 10;
+  }
+
+  /**
+   * @param key of the rut (see {@link #rutKey(long)}).
+   * @return the rut in the canonical compact form.
+   */
+  public static String formatRut(long key) {
+    long body = key / 10;
+    int digit = checkDigit(body);
+    return Long.toString(body) + (digit == 10 ? 'K' : (char) ('0' + digit));
+  }
+
+  /**
+   * @param body of the rut.
+   * @return the check digit of the body, 0 .. 9 or 10 (K).
+   */
+  private static int checkDigit(long body) {
+    int sum = 0;
+    int factor = 2;
+    for (long rest = body; rest > 0; rest /= 10) {
+      sum += (int) (rest % 10) * factor;
+      factor = factor == 7 ? 2 : factor + 1;
     }
+    return checkDigitOfSum(sum);
+  }
 
-    String validationNumber = rut.substring(rutLength - 1);
-    return correctValidationNumber.equalsIgnoreCase(validationNumber);
+  /**
+   * @param sum of the digits of the body by their factors.
+   * @return the check digit, 0 .. 9 or 10 (K).
+   */
+  private static int checkDigitOfSum(int sum) {
+    return (11 - sum % 11) % 11;
   }
 
   /**
@@ -24,18 +24,29 @@
 
 package cl.ucn.disc.pdbp.tdd;
 
+import cl.ucn.disc.pdbp.tdd.model.dao.DatabaseConfig;
+import cl.ucn.disc.pdbp.tdd.model.dao.DuplicateKeyException;
+import cl.ucn.disc.pdbp.tdd.model.main.Control;
 import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
 import cl.ucn.disc.pdbp.tdd.model.main.Persona;
 import cl.ucn.disc.pdbp.tdd.model.main.Sexo;
 import cl.ucn.disc.pdbp.tdd.model.main.Tipo;
 import cl.ucn.disc.pdbp.tdd.model.utils.Entity;
+import com.j256.ormlite.dao.CloseableIterator;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
 
 /**
  * Class for testing Contratos
@@ -134,4 +145,397 @@ public final class TestContratosImpl {
 
   }
 
+  /**
+   * Testing the contrato 03 : the fichas are ranked by match type
+   */
+  @Test
+  public void testContrato3Ranking(){
+
+    ContratosImpl testContratos = new ContratosImpl("jdbc:h2:mem:ranking");
+
+    //Creating the duenios
+    Persona duenio1 = new Persona("Andrea", "Contreras", "187910366", "michimalongo 1826",
+      2244397, 63887303, "asd123@gmail.com");
+    testContratos.registrarPersona(duenio1);
+
+    Persona duenio2 = new Persona("Pedro", "Contreras", "152532873", "michimalongo 1826",
+      2244397, 63887303, "asd123@gmail.com");
+    testContratos.registrarPersona(duenio2);
+
+    //Creating fichas: matching by name of duenio, name of paciente, numero and rut
+    testContratos.registrarPaciente(new Ficha(1L,"ita","felino", ZonedDateTime.now(),"gato siames",
+      Sexo.HEMBRA,"blanco", Tipo.INTERNO,duenio1));
+    testContratos.registrarPaciente(new Ficha(2L,"Pedro","canino", ZonedDateTime.now(),"quiltro",
+      Sexo.MACHO,"negro", Tipo.INTERNO,duenio1));
+    testContratos.registrarPaciente(new Ficha(15L,"toby","canino", ZonedDateTime.now(),"quiltro",
+      Sexo.MACHO,"negro", Tipo.EXTERNO,duenio1));
+    testContratos.registrarPaciente(new Ficha(3L,"cachupin","canino", ZonedDateTime.now(),"quiltro",
+      Sexo.MACHO,"cafe", Tipo.EXTERNO,duenio2));
+
+    //By name: the paciente first, then the fichas of the duenio
+    List<Ficha> fichas = testContratos.buscarFicha("Pedro");
+    Assertions.assertEquals(2, fichas.size(), "Wrong size");
+    Assertions.assertEquals(2L, fichas.get(0).getNumero(), "Paciente should be first");
+    Assertions.assertEquals(3L, fichas.get(1).getNumero(), "Duenio should be last");
+
+    //By number: the numero first, then the fichas with the number in the rut of the duenio
+    fichas = testContratos.buscarFicha("15");
+    Assertions.assertEquals(2, fichas.size(), "Wrong size");
+    Assertions.assertEquals(15L, fichas.get(0).getNumero(), "Numero should be first");
+    Assertions.assertEquals(3L, fichas.get(1).getNumero(), "Rut should be last");
+
+    //By rut, formatted: the fichas of the duenio, but not the ruts with the query inside
+    fichas = testContratos.buscarFicha("15.253.287-3");
+    Assertions.assertEquals(1, fichas.size(), "Wrong size");
+    Assertions.assertEquals(3L, fichas.get(0).getNumero(), "Wrong ficha");
+    Assertions.assertEquals(0, testContratos.buscarFicha("5253").size(), "The rut matches by prefix");
+
+    //Nothing
+    Assertions.assertEquals(0, testContratos.buscarFicha("nadie").size(), "Should be empty");
+
+  }
+
+  /**
+   * Testing the contrato 03 : the index and the database give the same fichas
+   */
+  @Test
+  public void testContrato3Index(){
+
+    // The index, with a single writer
+    DatabaseConfig config = new DatabaseConfig("jdbc:h2:mem:index");
+    config.setSingleWriter(true);
+    config.setSearchIndex(true);
+    ContratosImpl withIndex = new ContratosImpl(config);
+
+    //Creating the duenio
+    Persona duenio = new Persona("Andrea", "Contreras", "187910366", "michimalongo 1826",
+      2244397, 63887303, "asd123@gmail.com");
+    withIndex.registrarPersona(duenio);
+
+    //Creating fichas
+    withIndex.registrarPaciente(new Ficha(123L,"ita","felino", ZonedDateTime.now(),"gato siames",
+      Sexo.HEMBRA,"blanco", Tipo.INTERNO,duenio));
+    withIndex.registrarPaciente(new Ficha(212345L,"Andrea","canino", ZonedDateTime.now(),"san bernardo",
+      Sexo.HEMBRA,"cafe", Tipo.INTERNO,duenio));
+
+    //Same database, without index (and a index rebuilt from the database)
+    ContratosImpl withoutIndex = new ContratosImpl("jdbc:h2:mem:index");
+    ContratosImpl rebuilt = new ContratosImpl(config);
+
+    for (String query : new String[]{"Andrea", "123", "212345", "ita", "910", "1879", "18.791", "18.791.036-6",
+      "187910366", "nadie"}) {
+      List<Long> expected = numeros(withoutIndex.buscarFicha(query));
+      Assertions.assertEquals(expected, numeros(withIndex.buscarFicha(query)), "Index != database: " + query);
+      Assertions.assertEquals(expected, numeros(rebuilt.buscarFicha(query)), "Rebuilt != database: " + query);
+    }
+
+    // Ignoring case in both paths: the index (3 chars or more) and the database (shorter or without index)
+    for (String query : new String[]{"aNDREA", "ITA", "An", "iT"}) {
+      List<Long> expected = numeros(withIndex.buscarFicha(query.toLowerCase()));
+      Assertions.assertFalse(expected.isEmpty(), "Not found: " + query);
+      Assertions.assertEquals(expected, numeros(withIndex.buscarFicha(query)), "Case with index: " + query);
+      Assertions.assertEquals(expected, numeros(withoutIndex.buscarFicha(query)), "Case without index: " + query);
+    }
+
+    // Without a single writer the index isn't used: the fichas written by other instance are found
+    DatabaseConfig shared = new DatabaseConfig("jdbc:h2:mem:index");
+    shared.setSearchIndex(true);
+    ContratosImpl notSingle = new ContratosImpl(shared);
+    withoutIndex.registrarPaciente(new Ficha(31337L,"Garfield","felino", ZonedDateTime.now(),"persa",
+      Sexo.MACHO,"naranjo", Tipo.EXTERNO,duenio));
+    Assertions.assertEquals(Collections.singletonList(31337L), numeros(notSingle.buscarFicha("garfield")),
+      "Written by other instance not found");
+
+  }
+
+  /**
+   * Testing the pagination of personas (by page and by cursor)
+   */
+  @Test
+  public void testGetPersonas(){
+
+    ContratosImpl testContratos = new ContratosImpl("jdbc:h2:mem:personas");
+
+    //Creating the personas
+    for (String rut : new String[]{"152532873", "21195194K", "121244071", "198127949", "202294316"}) {
+      testContratos.registrarPersona(new Persona("Andrea", "Contreras", rut, "michimalongo 1826",
+        2244397, 63887303, "asd123@gmail.com"));
+    }
+
+    //By page
+    Assertions.assertEquals(2, testContratos.getPersonas(2, 0).size(), "First page");
+    Assertions.assertEquals("198127949", testContratos.getPersonas(2, 1).get(1).getRut(), "Wrong page");
+    Assertions.assertEquals(1, testContratos.getPersonas(2, 2).size(), "Last page");
+    Assertions.assertEquals(0, testContratos.getPersonas(2, 10).size(), "After the last page");
+    Assertions.assertThrows(IllegalArgumentException.class, () -> testContratos.getPersonas(null, 0));
+
+    //By cursor: walking all the pages
+    List<Persona> all = new ArrayList<>();
+    List<Persona> page = testContratos.getPersonasAfter(null, 2);
+    while (!page.isEmpty()) {
+      all.addAll(page);
+      page = testContratos.getPersonasAfter(page.get(page.size() - 1).getId(), 2);
+    }
+    Assertions.assertEquals(5, all.size(), "Wrong number of personas");
+    Assertions.assertEquals("202294316", all.get(4).getRut(), "Wrong order");
+
+  }
+
+  /**
+   * Testing the bulk registrations: all or none
+   */
+  @Test
+  public void testRegistrarBulk(){
+
+    ContratosImpl testContratos = new ContratosImpl("jdbc:h2:mem:bulk");
+
+    //Creating the personas in a single transaction
+    List<Persona> personas = new ArrayList<>();
+    for (String rut : new String[]{"152532873", "21195194K", "121244071"}) {
+      personas.add(new Persona("Andrea", "Contreras", rut, "michimalongo 1826", 2244397, 63887303,
+        "asd123@gmail.com"));
+    }
+    Assertions.assertEquals(3, testContratos.registrarPersonas(personas).size(), "Personas not inserted");
+    Assertions.assertNotNull(personas.get(2).getId(), "Id not assigned");
+
+    //A persona repeated: none is inserted
+    List<Persona> repeated = new ArrayList<>();
+    repeated.add(new Persona("Andrea", "Contreras", "198127949", "michimalongo 1826", 2244397, 63887303,
+      "asd123@gmail.com"));
+    repeated.add(new Persona("Andrea", "Contreras", "152532873", "michimalongo 1826", 2244397, 63887303,
+      "asd123@gmail.com"));
+    Assertions.assertThrows(RuntimeException.class, () -> testContratos.registrarPersonas(repeated));
+    Assertions.assertEquals(3, testContratos.getAllPersonas().size(), "Partial insert");
+
+    //Creating the fichas, searchable after the insert
+    List<Ficha> fichas = new ArrayList<>();
+    for (long numero = 1; numero <= 3; numero++) {
+      fichas.add(new Ficha(numero, "Firulais", "Perro", ZonedDateTime.now(), "Pastor", Sexo.MACHO, "Negro",
+        Tipo.INTERNO, personas.get((int) numero - 1)));
+    }
+    Assertions.assertEquals(3, testContratos.registrarPacientes(fichas).size(), "Fichas not inserted");
+    Assertions.assertEquals(3, testContratos.buscarFicha("Firulais").size(), "Fichas not found");
+
+    //The same numero twice in the list
+    List<Ficha> twice = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      twice.add(new Ficha(4, "Cachupin", "Perro", ZonedDateTime.now(), "Pastor", Sexo.MACHO, "Negro",
+        Tipo.INTERNO, personas.get(0)));
+    }
+    Assertions.assertThrows(RuntimeException.class, () -> testContratos.registrarPacientes(twice));
+    Assertions.assertEquals(3, testContratos.getAllFichas().size(), "Partial insert");
+    Assertions.assertThrows(IllegalArgumentException.class, () -> testContratos.registrarPacientes(null));
+
+  }
+
+  /**
+   * Testing the duplicates rejected by the unique indexes, in H2 and SQLite.
+   */
+  @Test
+  public void testDuplicates() throws IOException {
+
+    File file = File.createTempFile("duplicates", ".db");
+    try {
+      for (String url : new String[]{"jdbc:h2:mem:duplicates", "jdbc:sqlite:" + file.getAbsolutePath()}) {
+
+        ContratosImpl testContratos = new ContratosImpl(url);
+
+        //The same rut twice
+        Persona persona = testContratos.registrarPersona(new Persona("Andrea", "Contreras", "152532873",
+          "michimalongo 1826", 2244397, 63887303, "asd123@gmail.com"));
+        Assertions.assertThrows(DuplicateKeyException.class, () -> testContratos.registrarPersona(
+          new Persona("Bruno", "Contreras", "152532873", "michimalongo 1826", 2244397, 63887303,
+            "asd123@gmail.com")));
+
+        //The same numero twice
+        testContratos.registrarPaciente(new Ficha(1, "Firulais", "Perro", ZonedDateTime.now(), "Pastor",
+          Sexo.MACHO, "Negro", Tipo.INTERNO, persona));
+        Assertions.assertThrows(DuplicateKeyException.class, () -> testContratos.registrarPaciente(
+          new Ficha(1, "Cachupin", "Perro", ZonedDateTime.now(), "Pastor", Sexo.MACHO, "Negro", Tipo.INTERNO,
+            persona)));
+
+        //A rut repeated in the list: none is inserted
+        List<Persona> personas = new ArrayList<>();
+        for (String rut : new String[]{"21195194K", "121244071", "21195194K"}) {
+          personas.add(new Persona("Andrea", "Contreras", rut, "michimalongo 1826", 2244397, 63887303,
+            "asd123@gmail.com"));
+        }
+        Assertions.assertThrows(DuplicateKeyException.class, () -> testContratos.registrarPersonas(personas));
+        Assertions.assertEquals(1, testContratos.getAllPersonas().size(), "Partial insert in " + url);
+
+        //Other constraints aren't duplicates
+        Assertions.assertFalse(DuplicateKeyException.class.isInstance(Assertions.assertThrows(RuntimeException.class,
+          () -> testContratos.registrarPaciente(new Ficha(2, null, "Perro", ZonedDateTime.now(), "Pastor",
+            Sexo.MACHO, "Negro", Tipo.INTERNO, persona)))), "Not null as duplicate in " + url);
+      }
+    } finally {
+      Assertions.assertTrue(file.delete(), "Can't delete the database");
+    }
+
+  }
+
+  /**
+   * Testing the bloom filters: a hint of the numeros and ruts not registered, certain only with a single writer.
+   */
+  @Test
+  public void testBloomFilters() {
+
+    DatabaseConfig config = new DatabaseConfig("jdbc:h2:mem:bloom");
+    config.setBloomExpectedInsertions(1000);
+    ContratosImpl testContratos = new ContratosImpl(config, true);
+
+    Persona persona = testContratos.registrarPersona(new Persona("Andrea", "Contreras", "152532873",
+      "michimalongo 1826", 2244397, 63887303, "asd123@gmail.com"));
+    testContratos.registrarPaciente(new Ficha(7, "Firulais", "Perro", ZonedDateTime.now(), "Pastor", Sexo.MACHO,
+      "Negro", Tipo.INTERNO, persona));
+
+    //Registered: maybe exist
+    Assertions.assertTrue(testContratos.mightExistPersona("152532873"), "False negative");
+    Assertions.assertTrue(testContratos.mightExistPersona("15.253.287-3"), "False negative (formatted)");
+    Assertions.assertFalse(testContratos.mightExistPersona("15.253.287-4"), "Invalid rut can't exist");
+    Assertions.assertTrue(testContratos.mightExistFicha(7), "False negative");
+    Assertions.assertEquals(7, testContratos.getFicha(7L).getNumero(), "Wrong ficha");
+
+    //Not registered: the ficha doesn't exist
+    Assertions.assertThrows(NoSuchElementException.class, () -> testContratos.getFicha(8L));
+    Assertions.assertThrows(NoSuchElementException.class, () -> testContratos.getPersonaFromFicha(8L));
+
+    //Built from the database at startup
+    ContratosImpl restarted = new ContratosImpl(config, true);
+    Assertions.assertTrue(restarted.mightExistPersona("152532873"), "False negative after restart");
+    Assertions.assertTrue(restarted.mightExistFicha(7), "False negative after restart");
+    Assertions.assertEquals(1L, restarted.getMetrics().get("bloom_numero_insertions_total"));
+
+    //Written by other instance: unknown by the filter, found in the database
+    DatabaseConfig singleWriter = new DatabaseConfig("jdbc:h2:mem:bloom");
+    singleWriter.setBloomExpectedInsertions(1000);
+    singleWriter.setSingleWriter(true);
+    ContratosImpl single = new ContratosImpl(singleWriter, true);
+    restarted.registrarPaciente(new Ficha(8, "Cachupin", "Perro", ZonedDateTime.now(), "Pastor", Sexo.MACHO,
+      "Negro", Tipo.INTERNO, persona));
+    Assertions.assertFalse(testContratos.mightExistFicha(8), "Seen by other instance");
+    Assertions.assertEquals(8, testContratos.getFicha(8L).getNumero(), "Negative of the filter not checked");
+
+    //Only writer: the negative of the filter without query
+    Assertions.assertThrows(NoSuchElementException.class, () -> single.getFicha(8L));
+
+    //Disabled by default
+    ContratosImpl disabled = new ContratosImpl("jdbc:h2:mem:bloom");
+    Assertions.assertNull(disabled.getMetrics().get("bloom_numero_insertions_total"), "Enabled by default");
+    Assertions.assertTrue(disabled.mightExistPersona("15.253.287-4"), "Without filter");
+
+  }
+
+  /**
+   * Testing the controles by range of fechaProximoControl.
+   */
+  @Test
+  public void testControlesProximos() throws IOException {
+
+    ContratosImpl testContratos = new ContratosImpl("jdbc:h2:mem:proximos");
+
+    Persona persona = testContratos.registrarPersona(new Persona("Andrea", "Contreras", "152532873",
+      "michimalongo 1826", 2244397, 63887303, "asd123@gmail.com"));
+    Ficha ficha = testContratos.registrarPaciente(new Ficha(1, "Firulais", "Perro", ZonedDateTime.now(), "Pastor",
+      Sexo.MACHO, "Negro", Tipo.INTERNO, persona));
+
+    //The controles, inserted out of order and with different offsets
+    ZonedDateTime from = ZonedDateTime.of(2020, 6, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    ZonedDateTime[] proximos = {
+      from.plusDays(3).withZoneSameInstant(ZoneOffset.ofHours(-4)),
+      from.minusNanos(1_000_000),
+      from.withZoneSameInstant(ZoneOffset.ofHours(5)),
+      from.plusDays(7),
+      from.plusDays(1).withZoneSameInstant(ZoneOffset.ofHours(-10)),
+      from.plusDays(7).minusNanos(1_000_000).withZoneSameInstant(ZoneOffset.ofHours(14)),
+    };
+    for (ZonedDateTime proximo : proximos) {
+      testContratos.registrarControl(new Control(from.minusDays(7), proximo, 38.5f, 20, 50, "Sano", "Dr. Lopez",
+        ficha));
+    }
+
+    //Only the controles in [from, from + 7 days), ordered by instant
+    List<ZonedDateTime> found = new ArrayList<>();
+    try (CloseableIterator<Control> controles = testContratos.getControlesProximos(from, from.plusDays(7))) {
+      controles.forEachRemaining(control -> found.add(control.getFechaProximoControl()));
+    }
+    List<ZonedDateTime> expected = new ArrayList<>();
+    expected.add(proximos[2]);
+    expected.add(proximos[4]);
+    expected.add(proximos[0]);
+    expected.add(proximos[5]);
+    Assertions.assertEquals(expected, found, "Wrong controles");
+
+    //The same controles by pages, after the last of the previous page
+    List<Control> first = testContratos.getControlesProximos(from, from.plusDays(7), null, null, 3);
+    Assertions.assertEquals(3, first.size(), "Wrong first page");
+    Control last = first.get(2);
+    List<Control> second = testContratos.getControlesProximos(from, from.plusDays(7),
+      last.getFechaProximoControl(), last.getId(), 3);
+    List<ZonedDateTime> paged = new ArrayList<>();
+    first.forEach(control -> paged.add(control.getFechaProximoControl()));
+    second.forEach(control -> paged.add(control.getFechaProximoControl()));
+    Assertions.assertEquals(expected, paged, "Wrong pages");
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> testContratos.getControlesProximos(from, null));
+    Assertions.assertThrows(IllegalArgumentException.class,
+      () -> testContratos.getControlesProximos(from, from.plusDays(7), from, null, 3));
+
+  }
+
+  /**
+   * Testing the pages of controles of a ficha, newest first, with controles sharing the fecha.
+   */
+  @Test
+  public void testControlesPaginados() {
+
+    ContratosImpl testContratos = new ContratosImpl("jdbc:h2:mem:paginados");
+
+    Persona persona = testContratos.registrarPersona(new Persona("Andrea", "Contreras", "152532873",
+      "michimalongo 1826", 2244397, 63887303, "asd123@gmail.com"));
+    Ficha ficha = testContratos.registrarPaciente(new Ficha(1, "Firulais", "Perro", ZonedDateTime.now(), "Pastor",
+      Sexo.MACHO, "Negro", Tipo.INTERNO, persona));
+    Ficha other = testContratos.registrarPaciente(new Ficha(2, "Cachupin", "Perro", ZonedDateTime.now(), "Pastor",
+      Sexo.MACHO, "Negro", Tipo.INTERNO, persona));
+
+    //25 controles, every 5 in the same fecha, and one of other ficha
+    ZonedDateTime first = ZonedDateTime.of(2020, 6, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    for (int i = 0; i < 25; i++) {
+      testContratos.registrarControl(new Control(first.plusDays(i / 5), first.plusDays(30), 38.5f, 20, 50, "Sano",
+        "Dr. Lopez", ficha));
+    }
+    testContratos.registrarControl(new Control(first.plusDays(10), first.plusDays(30), 38.5f, 20, 50, "Sano",
+      "Dr. Lopez", other));
+
+    //Pages of 7: all the controles once, ordered by fecha desc and id desc
+    List<Control> all = new ArrayList<>();
+    List<Control> page = testContratos.getControlesFromFicha(1L, null, null, 7);
+    while (!page.isEmpty()) {
+      all.addAll(page);
+      Control last = page.get(page.size() - 1);
+      page = testContratos.getControlesFromFicha(1L, last.getFecha(), last.getId(), 7);
+    }
+    Assertions.assertEquals(25, all.size(), "Wrong number of controles");
+    for (int i = 1; i < all.size(); i++) {
+      Control previous = all.get(i - 1);
+      Control control = all.get(i);
+      Assertions.assertTrue(previous.getFecha().isAfter(control.getFecha())
+        || previous.getFecha().isEqual(control.getFecha()) && previous.getId() > control.getId(), "Wrong order");
+    }
+    Assertions.assertEquals(first.plusDays(4).toInstant(), all.get(0).getFecha().toInstant(), "Not newest first");
+
+    Assertions.assertThrows(NoSuchElementException.class, () -> testContratos.getControlesFromFicha(3L, null, null, 7));
+    Assertions.assertThrows(IllegalArgumentException.class,
+      () -> testContratos.getControlesFromFicha(1L, first, null, 7));
+
+  }
+
+  /**
+   * @param fichas to map.
+   * @return the numeros of the fichas.
+   */
+  private static List<Long> numeros(List<Ficha> fichas) {
+    return fichas.stream().map(Ficha::getNumero).collect(Collectors.toList());
+  }
+
 }
@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.dao.CachingRepository;
+import cl.ucn.disc.pdbp.tdd.model.dao.RepositoryOrmLite;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The Test of the cache of repositories.
+ *
+ * @author Miguel León Garrido
+ */
+public final class CachingRepositoryTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(CachingRepositoryTest.class);
+
+  /**
+   * Testing the hits, misses, evictions and the write-through.
+   */
+  @Test
+  public void testCache() throws SQLException, IOException, InterruptedException {
+
+    try (ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:h2:mem:cache")) {
+
+      TableUtils.createTableIfNotExists(connectionSource, Persona.class);
+      RepositoryOrmLite<Persona, Long> database = new RepositoryOrmLite<>(connectionSource, Persona.class);
+      CachingRepository<Persona, Long> cache = new CachingRepository<>(database, Persona::getId, database::copy,
+        2, 200);
+
+      // Write-through: the persona created is in the cache
+      Persona persona1 = new Persona("Andrea", "Contreras", "152532873", "michimalongo 1826",
+        2244397, 63887303, "asd123@gmail.com");
+      cache.create(persona1);
+      Assertions.assertEquals(persona1.getRut(), cache.findById(persona1.getId()).getRut(), "Not cached on create");
+      Assertions.assertEquals(1L, cache.getMetrics().get("hits_total"), "Hits != 1");
+
+      // Read-through: the first read goes to the database, the second to the cache
+      Persona persona2 = new Persona("Pedro", "Contreras", "121244071", "michimalongo 1826",
+        2244397, 63887303, "asd123@gmail.com");
+      database.create(persona2);
+      Persona found = cache.findById(persona2.getId());
+      Persona cached = cache.findById(persona2.getId());
+      Assertions.assertEquals(found.getRut(), cached.getRut(), "Not cached on read");
+      Assertions.assertEquals(1L, cache.getMetrics().get("misses_total"), "Misses != 1");
+
+      // Copies: the changes to the persona returned don't change the cache
+      Assertions.assertNotSame(found, cached, "Shared instance");
+      cached.setEmail("otro@gmail.com");
+      Assertions.assertEquals("asd123@gmail.com", cache.findById(persona2.getId()).getEmail(), "Cache changed");
+
+      // Queries: the write invalidates the results
+      Assertions.assertEquals(2, cache.findAll("apellido", "Contreras").size(), "Wrong query");
+      Persona persona3 = new Persona("Juan", "Contreras", "198127949", "michimalongo 1826",
+        2244397, 63887303, "asd123@gmail.com");
+      cache.create(persona3);
+      Assertions.assertEquals(3, cache.findAll("apellido", "Contreras").size(), "Query not invalidated");
+
+      // Size: only 2 entries by id, the least recently used is evicted
+      Assertions.assertTrue(cache.getMetrics().get("evictions_total").longValue() > 0, "No evictions");
+
+      // Delete: removed from the cache
+      cache.delete(persona3.getId());
+      Assertions.assertNull(cache.findById(persona3.getId()), "Deleted persona in the cache");
+
+      // Ttl: after 200 ms the entry is read from the database again
+      cache.findById(persona1.getId());
+      long misses = cache.getMetrics().get("misses_total").longValue();
+      cache.findById(persona1.getId());
+      Assertions.assertEquals(misses, cache.getMetrics().get("misses_total").longValue(), "Not cached");
+      Thread.sleep(250);
+      cache.findById(persona1.getId());
+      Assertions.assertEquals(misses + 1, cache.getMetrics().get("misses_total").longValue(), "Not expired");
+
+      log.debug("Metrics: {}.", cache.getMetrics());
+    }
+  }
+
+  /**
+   * Testing the read that ends after a write: the result read isn't cached.
+   */
+  @Test
+  public void testStaleRead() throws SQLException, IOException {
+
+    try (ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:h2:mem:stale")) {
+
+      TableUtils.createTableIfNotExists(connectionSource, Persona.class);
+
+      // The write runs in the middle of the first query
+      AtomicReference<Runnable> during = new AtomicReference<>();
+      RepositoryOrmLite<Persona, Long> database = new RepositoryOrmLite<Persona, Long>(connectionSource,
+        Persona.class) {
+        @Override
+        public List<Persona> findAll(String key, Object value) {
+          List<Persona> list = super.findAll(key, value);
+          Runnable runnable = during.getAndSet(null);
+          if (runnable != null) {
+            runnable.run();
+          }
+          return list;
+        }
+      };
+      CachingRepository<Persona, Long> cache = new CachingRepository<>(database, Persona::getId, database::copy,
+        10, 60_000);
+
+      cache.create(new Persona("Andrea", "Contreras", "152532873", "michimalongo 1826",
+        2244397, 63887303, "asd123@gmail.com"));
+      during.set(() -> cache.create(new Persona("Pedro", "Contreras", "121244071", "michimalongo 1826",
+        2244397, 63887303, "asd123@gmail.com")));
+
+      Assertions.assertEquals(1, cache.findAll("apellido", "Contreras").size(), "Wrong query");
+      Assertions.assertEquals(2, cache.findAll("apellido", "Contreras").size(), "Stale result cached");
+    }
+  }
+
+}
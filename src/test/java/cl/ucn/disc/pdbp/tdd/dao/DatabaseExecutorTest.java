@@ -0,0 +1,166 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.dao.DatabaseConfig;
+import cl.ucn.disc.pdbp.tdd.model.dao.DatabaseExecutor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The Test of the executor of the database work.
+ *
+ * @author Miguel León Garrido
+ */
+public final class DatabaseExecutorTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(DatabaseExecutorTest.class);
+
+  /**
+   * Testing the results, the rejections and the timeouts.
+   */
+  @Test
+  public void testExecutor() throws Exception {
+
+    DatabaseConfig config = new DatabaseConfig("jdbc:h2:mem:executor");
+    config.setExecutorThreads(1);
+    config.setExecutorQueueSize(1);
+    config.setExecutorTimeoutMillis(200);
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new DatabaseExecutor(0, 1, 0));
+
+    try (DatabaseExecutor executor = config.createExecutor()) {
+
+      log.debug("Testing the result ..");
+      Assertions.assertEquals("ok", executor.supply(() -> "ok").get(), "Wrong result");
+
+      log.debug("Testing a exception ..");
+      ExecutionException failed = Assertions.assertThrows(ExecutionException.class,
+        () -> executor.supply(() -> {
+          throw new IllegalStateException("The ficha already exists");
+        }).get());
+      Assertions.assertTrue(failed.getCause() instanceof IllegalStateException, "Wrong exception");
+
+      // The thread is busy until released
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      CompletableFuture<String> running = executor.supply(() -> {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        return "slow";
+      }, 0);
+      started.await();
+
+      log.debug("Testing the queue ..");
+      AtomicBoolean queuedRun = new AtomicBoolean();
+      CompletableFuture<String> queued = executor.supply(() -> {
+        queuedRun.set(true);
+        return "queued";
+      });
+
+      log.debug("Testing the rejection ..");
+      CompletableFuture<String> rejected = executor.supply(() -> "rejected");
+      ExecutionException full = Assertions.assertThrows(ExecutionException.class, rejected::get);
+      Assertions.assertTrue(full.getCause() instanceof RejectedExecutionException, "Not rejected");
+
+      log.debug("Testing the timeout ..");
+      ExecutionException late = Assertions.assertThrows(ExecutionException.class, queued::get);
+      Assertions.assertTrue(late.getCause() instanceof TimeoutException, "Not timed out");
+
+      // The task timed out in the queue is never run
+      release.countDown();
+      Assertions.assertEquals("slow", running.get(), "Wrong result");
+      Assertions.assertEquals("ok", executor.supply(() -> "ok").get(), "Wrong result");
+      Assertions.assertFalse(queuedRun.get(), "Task timed out was run");
+
+      Assertions.assertEquals(1L, executor.getMetrics().get("rejected_total"), "Wrong rejected");
+      Assertions.assertEquals(1L, executor.getMetrics().get("timeouts_total"), "Wrong timeouts");
+    }
+  }
+
+  /**
+   * Testing the futures completed out of the database threads.
+   */
+  @Test
+  public void testResponses() throws Exception {
+
+    try (DatabaseExecutor executor = new DatabaseExecutor(1, 1, 1_000)) {
+
+      log.debug("Testing the thread of the dependents ..");
+      CountDownLatch registered = new CountDownLatch(1);
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicReference<String> thread = new AtomicReference<>();
+
+      // The task waits for the dependent, so it doesn't run in this thread
+      CompletableFuture<String> slowClient = executor.supply(() -> {
+        try {
+          registered.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        return "first";
+      }).thenApply(value -> {
+        thread.set(Thread.currentThread().getName());
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        return value;
+      });
+      registered.countDown();
+
+      // The only database thread is free while the dependent waits
+      started.await();
+      Assertions.assertEquals("second", executor.supply(() -> "second").get(5, TimeUnit.SECONDS),
+        "Database thread held by a dependent");
+      Assertions.assertTrue(thread.get().startsWith("database-response-"), "Wrong thread: " + thread.get());
+
+      release.countDown();
+      Assertions.assertEquals("first", slowClient.get(), "Wrong result");
+    }
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.dao.DatabaseConfig;
+import cl.ucn.disc.pdbp.tdd.model.dao.DatabaseProfile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The Test of the profiles of the backends.
+ *
+ * @author Miguel León Garrido
+ */
+public final class DatabaseProfileTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(DatabaseProfileTest.class);
+
+  /**
+   * Testing the parameters added to the url and the configuration from properties.
+   */
+  @Test
+  public void testProfiles() {
+
+    Assertions.assertEquals(DatabaseProfile.SQLITE, DatabaseProfile.of("jdbc:sqlite:fivet.db"));
+    Assertions.assertEquals(DatabaseProfile.H2, DatabaseProfile.of("jdbc:h2:mem:"));
+    Assertions.assertEquals(DatabaseProfile.GENERIC, DatabaseProfile.of("jdbc:postgresql://localhost/fivet"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> DatabaseProfile.of("fivet.db"));
+
+    // The parameters of the url are kept, the overrides replace the ones of the profile
+    String url = DatabaseProfile.SQLITE.tune("jdbc:sqlite:fivet.db?synchronous=FULL",
+      Collections.singletonMap("busy_timeout", "100"));
+    log.debug("Url: {}.", url);
+    Assertions.assertEquals("jdbc:sqlite:fivet.db?synchronous=FULL&journal_mode=WAL&busy_timeout=100"
+      + "&cache_size=-16000&mmap_size=268435456", url);
+    Assertions.assertEquals("jdbc:h2:mem:test;CACHE_SIZE=65536;LOCK_TIMEOUT=5000",
+      DatabaseProfile.H2.tune("jdbc:h2:mem:test", Collections.emptyMap()));
+
+    // From properties
+    Properties properties = new Properties();
+    properties.setProperty("db.profile", "h2");
+    properties.setProperty("db.param.CACHE_SIZE", "1024");
+    properties.setProperty("db.pooled", "true");
+    properties.setProperty("db.maxSize", "4");
+    DatabaseConfig config = DatabaseConfig.fromProperties(properties);
+    Assertions.assertEquals("jdbc:h2:./fivet;CACHE_SIZE=1024;LOCK_TIMEOUT=5000", config.getUrl());
+    Assertions.assertTrue(config.isPooled(), "Not pooled");
+    Assertions.assertEquals(4, config.getMaxSize());
+    Assertions.assertFalse(config.isLogQueryArgs(), "Personal data logged by default");
+    Assertions.assertFalse(config.isSingleWriter(), "Single writer by default");
+    Assertions.assertFalse(config.isSearchIndex(), "Search index by default");
+
+    // The generic profile needs the url
+    properties.setProperty("db.profile", "generic");
+    Assertions.assertThrows(IllegalArgumentException.class, () -> DatabaseConfig.fromProperties(properties));
+
+    // The invalid values fail in the setters
+    properties.setProperty("db.profile", "h2");
+    properties.setProperty("db.maxSize", "-1");
+    Assertions.assertThrows(IllegalArgumentException.class, () -> DatabaseConfig.fromProperties(properties));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> config.setExecutorTimeoutMillis(-1));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> config.setCacheSize(-1));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> config.setBloomFpp(1));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> config.setSlowQueryMillis(-1));
+    Assertions.assertEquals(4, config.getMaxSize(), "Invalid value saved");
+  }
+
+  /**
+   * Testing the SQLite profile: write ahead log and concurrent writers waiting for the lock (not SQLITE_BUSY).
+   */
+  @Test
+  public void testSqliteWal() throws Exception {
+
+    File file = File.createTempFile("fivet-wal", ".db");
+    file.deleteOnExit();
+    String url = DatabaseProfile.SQLITE.tune("jdbc:sqlite:" + file.getAbsolutePath(), Collections.emptyMap());
+
+    try (Connection connection = DriverManager.getConnection(url); Statement statement = connection.createStatement()) {
+      try (ResultSet rs = statement.executeQuery("PRAGMA journal_mode")) {
+        rs.next();
+        Assertions.assertEquals("wal", rs.getString(1), "Not in WAL mode");
+      }
+      try (ResultSet rs = statement.executeQuery("PRAGMA busy_timeout")) {
+        rs.next();
+        Assertions.assertEquals(5000, rs.getInt(1), "Busy timeout not set");
+      }
+      statement.execute("CREATE TABLE numeros (numero INTEGER)");
+    }
+
+    // 4 writers, each with a connection
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<Void>> writers = new ArrayList<>();
+    for (int w = 0; w < 4; w++) {
+      writers.add(executor.submit(() -> {
+        try (Connection connection = DriverManager.getConnection(url)) {
+          for (int i = 0; i < 50; i++) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO numeros VALUES (?)")) {
+              insert.setInt(1, i);
+              insert.executeUpdate();
+            }
+            connection.commit();
+          }
+        }
+        return null;
+      }));
+    }
+    for (Future<Void> writer : writers) {
+      writer.get();
+    }
+    executor.shutdown();
+
+    try (Connection connection = DriverManager.getConnection(url); Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM numeros")) {
+      rs.next();
+      Assertions.assertEquals(200, rs.getInt(1), "Rows lost");
+    }
+  }
+
+  /**
+   * Testing the H2 profile: the cache size of the MVStore.
+   */
+  @Test
+  public void testH2() throws SQLException {
+
+    String url = DatabaseProfile.H2.tune("jdbc:h2:mem:profile", Collections.emptyMap());
+    try (Connection connection = DriverManager.getConnection(url); Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery(
+           "SELECT VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE NAME = 'CACHE_SIZE'")) {
+      Assertions.assertTrue(rs.next(), "No cache size");
+      log.debug("Cache size: {}.", rs.getString(1));
+      Assertions.assertEquals(65536, Integer.parseInt(rs.getString(1)), "Cache size not set");
+    }
+  }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.ContratosImpl;
+import cl.ucn.disc.pdbp.tdd.model.dao.IndexAdvisor;
+import cl.ucn.disc.pdbp.tdd.model.main.Control;
+import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import cl.ucn.disc.pdbp.tdd.model.main.Sexo;
+import cl.ucn.disc.pdbp.tdd.model.main.Tipo;
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.dao.GenericRawResults;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.stmt.SelectArg;
+import com.j256.ormlite.support.ConnectionSource;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The Test of the indexes: the plans of the queries in SQLite with and without them, and the {@link IndexAdvisor}.
+ *
+ * @author Miguel León Garrido
+ */
+public final class IndexAdvisorTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(IndexAdvisorTest.class);
+
+  /**
+   * The tables of the model.
+   */
+  private static final List<Class<?>> MODEL = Arrays.asList(Ficha.class, Persona.class, Control.class);
+
+  /**
+   * Testing the plans after (the database of the contratos) and before (the indexes dropped) the indexes.
+   */
+  @Test
+  public void testIndexes() throws SQLException, IOException {
+
+    File file = File.createTempFile("indexes", ".db");
+    String url = "jdbc:sqlite:" + file.getAbsolutePath();
+    try {
+      ContratosImpl contratos = new ContratosImpl(url);
+      Persona persona = contratos.registrarPersona(new Persona("Andrea", "Contreras", "152532873",
+        "michimalongo 1826", 2244397, 63887303, "asd123@gmail.com"));
+      Ficha ficha = contratos.registrarPaciente(new Ficha(1L, "Firulais", "Perro", ZonedDateTime.now(), "Pastor",
+        Sexo.MACHO, "Negro", Tipo.INTERNO, persona));
+      contratos.registrarControl(new Control(ZonedDateTime.now(), null, 38.5f, 20.3f, 50, "Sano", "Dr. Lopez",
+        ficha));
+
+      try (ConnectionSource cs = new JdbcConnectionSource(url)) {
+
+        Dao<Ficha, Long> fichaDao = DaoManager.createDao(cs, Ficha.class);
+        Dao<Control, Long> controlDao = DaoManager.createDao(cs, Control.class);
+
+        // The controles of a ficha by fecha (keyset), the fichas of a persona and by name of paciente
+        String controles = controlDao.queryBuilder().orderBy("fecha", false).orderBy("id", false).limit(50L)
+          .where().eq("ficha_id", new SelectArg()).and().isNotNull("fecha").prepare().getStatement();
+        String fichasDuenio = fichaDao.queryBuilder().where().eq("duenio_id", new SelectArg())
+          .prepare().getStatement();
+        String fichasPaciente = fichaDao.queryBuilder().where().eq("nombrePaciente", new SelectArg())
+          .prepare().getStatement();
+        List<String> queries = Arrays.asList(controles, fichasDuenio, fichasPaciente);
+
+        IndexAdvisor advisor = new IndexAdvisor(cs);
+
+        // After: by the indexes, without sorting
+        String plan = plan(controlDao, controles);
+        Assertions.assertTrue(plan.contains("USING INDEX control_ficha_fecha_idx (ficha_id=?"), plan);
+        Assertions.assertFalse(plan.contains("TEMP B-TREE"), plan);
+        plan = plan(fichaDao, fichasDuenio);
+        Assertions.assertTrue(plan.contains("USING INDEX ficha_duenio_idx (duenio_id=?)"), plan);
+        plan = plan(fichaDao, fichasPaciente);
+        Assertions.assertTrue(plan.contains("USING INDEX ficha_nombrePaciente_idx (nombrePaciente=?)"), plan);
+        Assertions.assertEquals(new ArrayList<>(), advisor.advise(MODEL, queries));
+
+        // Before: all the rows
+        for (String index : new String[]{"control_ficha_fecha_idx", "ficha_duenio_idx", "ficha_nombrePaciente_idx"}) {
+          fichaDao.executeRaw("DROP INDEX " + index);
+        }
+        plan = plan(controlDao, controles);
+        Assertions.assertTrue(plan.contains("SCAN TABLE control"), plan);
+        Assertions.assertTrue(plan.contains("USE TEMP B-TREE FOR ORDER BY"), plan);
+        Assertions.assertTrue(plan(fichaDao, fichasDuenio).contains("SCAN TABLE ficha"));
+        Assertions.assertTrue(plan(fichaDao, fichasPaciente).contains("SCAN TABLE ficha"));
+
+        List<String> advices = advisor.advise(MODEL, queries);
+        log.debug("Advices: {}.", advices);
+        Assertions.assertEquals(5, advices.size(), "Wrong advices: " + advices);
+        Assertions.assertTrue(advices.get(0).startsWith("Foreign key without index: ficha.duenio_id"));
+        Assertions.assertTrue(advices.get(1).startsWith("Foreign key without index: control.ficha_id"));
+        Assertions.assertTrue(advices.get(2).startsWith("Full scan (SCAN TABLE control)"));
+      }
+    } finally {
+      Assertions.assertTrue(file.delete(), "Can't delete the database");
+    }
+  }
+
+  /**
+   * Testing the advisor in H2 (EXPLAIN), with the queries run by the contratos.
+   */
+  @Test
+  public void testIndexesH2() throws SQLException, IOException {
+
+    String url = "jdbc:h2:mem:advisor";
+    ContratosImpl contratos = new ContratosImpl(url);
+    Assertions.assertEquals(0, contratos.getAllPersonas().size());
+
+    // The queries run by the contratos: all the personas (and the versions of the schema)
+    List<String> advices = contratos.adviseIndexes();
+    Assertions.assertTrue(advices.contains("Full scan (/* PUBLIC.PERSONA.tableScan */): SELECT * FROM `persona` "),
+      "Wrong advices: " + advices);
+
+    try (ConnectionSource cs = new JdbcConnectionSource(url)) {
+      Dao<Ficha, Long> fichaDao = DaoManager.createDao(cs, Ficha.class);
+      String fichasDuenio = fichaDao.queryBuilder().where().eq("duenio_id", new SelectArg()).prepare().getStatement();
+      String fichasRaza = fichaDao.queryBuilder().where().eq("raza", new SelectArg()).prepare().getStatement();
+
+      IndexAdvisor advisor = new IndexAdvisor(cs);
+      advices = advisor.advise(MODEL, Arrays.asList(fichasDuenio, fichasRaza));
+      Assertions.assertEquals(1, advices.size(), "Wrong advices: " + advices);
+      Assertions.assertTrue(advices.get(0).contains("tableScan"), advices.get(0));
+      Assertions.assertTrue(advices.get(0).endsWith(fichasRaza), advices.get(0));
+    }
+  }
+
+  /**
+   * @param dao to run the query.
+   * @param sql of the query, the arguments are 1.
+   * @return the plan of the query (EXPLAIN QUERY PLAN), a line by step.
+   */
+  private static String plan(Dao<?, ?> dao, String sql) throws SQLException, IOException {
+    String[] args = new String[StringUtils.countMatches(sql, '?')];
+    Arrays.fill(args, "1");
+    try (GenericRawResults<String[]> results = dao.queryRaw("EXPLAIN QUERY PLAN " + sql, args)) {
+      StringBuilder plan = new StringBuilder();
+      for (String[] row : results) {
+        plan.append(row[3]).append('\n');
+      }
+      return plan.toString();
+    }
+  }
+
+}
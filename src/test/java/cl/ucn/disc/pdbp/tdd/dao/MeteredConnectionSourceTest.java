@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.dao.DatabaseExecutor;
+import cl.ucn.disc.pdbp.tdd.model.dao.DuplicateKeyException;
+import cl.ucn.disc.pdbp.tdd.model.dao.MeteredConnectionSource;
+import cl.ucn.disc.pdbp.tdd.model.dao.QueryMetrics;
+import cl.ucn.disc.pdbp.tdd.model.dao.Repository;
+import cl.ucn.disc.pdbp.tdd.model.dao.RepositoryOrmLite;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import cl.ucn.disc.pdbp.tdd.model.utils.Validation;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Test of the statements measured.
+ *
+ * @author Miguel León Garrido
+ */
+public final class MeteredConnectionSourceTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(MeteredConnectionSourceTest.class);
+
+  /**
+   * Testing the statements by operation, their rows and errors, and the statements of a request in other threads.
+   */
+  @Test
+  public void testMetered() throws Exception {
+
+    QueryMetrics metrics = new QueryMetrics(60_000);
+    try (MeteredConnectionSource cs = new MeteredConnectionSource(new JdbcConnectionSource("jdbc:h2:mem:metered"),
+      metrics)) {
+
+      TableUtils.createTableIfNotExists(cs, Persona.class);
+      Repository<Persona, Long> repo = new RepositoryOrmLite<>(cs, Persona.class);
+      long others = metrics.getMetrics().get("other_total").longValue();
+      Assertions.assertTrue(others > 0, "Create table not measured");
+
+      QueryMetrics.Request request = QueryMetrics.beginRequest();
+
+      // 3 inserts in a transaction
+      List<Persona> personas = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        personas.add(new Persona("Andrea", "Contreras", Validation.formatRut(Validation.rutKey(10_000_000 + i)),
+          "michimalongo 1826", 2244397, 63887303, "asd123@gmail.com"));
+      }
+      Assertions.assertEquals(3, repo.createAll(personas));
+
+      // 4 selects: all (3 rows), by id (1 row), count (1 row) and all again in the executor (3 rows)
+      Assertions.assertEquals(3, repo.findAll().size());
+      Assertions.assertNotNull(repo.findById(personas.get(0).getId()));
+      Assertions.assertEquals(3, repo.getQuery().where().eq("nombre", "Andrea").countOf());
+      try (DatabaseExecutor executor = new DatabaseExecutor(1, 1, 0)) {
+        Assertions.assertEquals(3, executor.supply(repo::findAll).get().size());
+      }
+
+      // 1 insert failed
+      Assertions.assertThrows(DuplicateKeyException.class, () -> repo.create(personas.get(0)));
+
+      metrics.endRequest(request);
+      Assertions.assertNull(QueryMetrics.getRequest(), "Request not ended");
+      Assertions.assertEquals(8, request.getStatements(), "Statements of the request");
+      Assertions.assertTrue(request.getMillis() > 0, "Time of the request");
+
+      Map<String, Number> values = metrics.getMetrics();
+      log.debug("Metrics: {}.", values);
+      Assertions.assertEquals(4L, values.get("insert_total"));
+      Assertions.assertEquals(3L, values.get("insert_rows_total"));
+      Assertions.assertEquals(4L, values.get("select_total"));
+      Assertions.assertEquals(8L, values.get("select_rows_total"));
+      Assertions.assertEquals(others, values.get("other_total").longValue());
+      Assertions.assertEquals(1L, values.get("errors_total"));
+      Assertions.assertEquals(0L, values.get("slow_total"));
+      Assertions.assertEquals(1L, values.get("requests_total"));
+      Assertions.assertEquals(8L, values.get("request_statements_max"));
+      Assertions.assertEquals(4, metrics.getLatencies().get("select").getCount());
+      Assertions.assertTrue(metrics.getLatencies().get("select").getSum() > 0, "Latency not measured");
+
+      // 3 distinct selects: all, by id and count
+      Assertions.assertEquals(3, metrics.getQueries().size(), "Wrong queries: " + metrics.getQueries());
+    }
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new QueryMetrics(-1));
+  }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.dao.Backfill;
+import cl.ucn.disc.pdbp.tdd.model.dao.Migrator;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Test of the migrations of the schema.
+ *
+ * @author Miguel León Garrido
+ */
+public final class MigratorTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(MigratorTest.class);
+
+  /**
+   * Testing the versions, in H2.
+   */
+  @Test
+  public void testMigratorH2() throws Exception {
+    try (ConnectionSource cs = new JdbcConnectionSource("jdbc:h2:mem:migrator")) {
+      this.testMigrator(cs);
+    }
+  }
+
+  /**
+   * Testing the versions, in SQLite.
+   */
+  @Test
+  public void testMigratorSqlite() throws Exception {
+    File file = File.createTempFile("migrator", ".db");
+    try (ConnectionSource cs = new JdbcConnectionSource("jdbc:sqlite:" + file.getAbsolutePath())) {
+      this.testMigrator(cs);
+    } finally {
+      Assertions.assertTrue(file.delete(), "Can't delete the database");
+    }
+  }
+
+  /**
+   * Apply the versions, in order and once, with a backfill at startup and other in the background.
+   *
+   * @param cs the connection to use.
+   */
+  private void testMigrator(ConnectionSource cs) throws SQLException, InterruptedException, IOException {
+
+    List<Integer> applied = new ArrayList<>();
+    CountDownLatch release = new CountDownLatch(1);
+    CountingBackfill atStartup = new CountingBackfill(25, null);
+    CountingBackfill inBackground = new CountingBackfill(25, release);
+
+    Migrator migrator = new Migrator(cs, 10, 1);
+    migrator
+      .add(4, "Last", () -> applied.add(4))
+      .addSql(1, "The table", "CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(50))")
+      .addIndex(2, "item", "item_name_idx", false, "name")
+      .addBackfill(3, "At startup", atStartup, false)
+      .addBackfill(5, "In background", inBackground, true);
+
+    // The same version twice
+    Assertions.assertThrows(IllegalArgumentException.class, () -> migrator.add(4, "Again", () -> applied.add(0)));
+
+    // The startup doesn't wait for the background
+    Assertions.assertEquals(4, migrator.migrate());
+    Assertions.assertEquals(25, atStartup.filled);
+    Assertions.assertTrue(inBackground.prepared, "Not prepared at startup");
+    Assertions.assertEquals(1, migrator.getMetrics().get("backfills_pending"));
+    Assertions.assertEquals(4, migrator.getVersion());
+
+    release.countDown();
+    Assertions.assertTrue(migrator.awaitBackfills(10, TimeUnit.SECONDS), "Backfill not finished");
+    Assertions.assertEquals(25, inBackground.filled);
+    Assertions.assertEquals(5, migrator.getVersion());
+    Assertions.assertEquals(50L, migrator.getMetrics().get("backfill_rows_total"));
+    migrator.close();
+
+    // Again: nothing to do
+    Migrator again = new Migrator(cs, 10, 1);
+    again
+      .addSql(1, "The table", "CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(50))")
+      .add(4, "Last", () -> applied.add(4))
+      .add(6, "Fails", () -> {
+        throw new SQLException("Broken");
+      })
+      .add(7, "After the failure", () -> applied.add(7));
+    Assertions.assertThrows(SQLException.class, again::migrate);
+    Assertions.assertEquals(5, again.getVersion());
+    Assertions.assertEquals(1L, again.getMetrics().get("failed_total"));
+    again.close();
+
+    Assertions.assertEquals(1, applied.size(), "Applied twice or after the failure");
+
+    // The table of the version 1
+    DatabaseConnection connection = cs.getReadWriteConnection("item");
+    try {
+      Assertions.assertEquals(1, connection.executeStatement("INSERT INTO item (id, name) VALUES (1, 'item')",
+        DatabaseConnection.DEFAULT_RESULT_FLAGS));
+    } finally {
+      cs.releaseConnection(connection);
+    }
+
+    // A migration failed after their DDL: rolled back with their record in SQLite, not in H2 (DDL commits)
+    Migrator partial = new Migrator(cs, 10, 1);
+    partial.add(8, "Half", () -> {
+      execute(cs, "CREATE TABLE half (id INTEGER)");
+      throw new SQLException("Broken");
+    });
+    Assertions.assertThrows(SQLException.class, partial::migrate);
+    partial.close();
+    if ("SQLite".equals(cs.getDatabaseType().getDatabaseName())) {
+      execute(cs, "CREATE TABLE half (id INTEGER)");
+    } else {
+      Assertions.assertThrows(SQLException.class, () -> execute(cs, "CREATE TABLE half (id INTEGER)"));
+    }
+
+    // Closed while filling: waits for the chunk running, the rest in the next startup
+    CountDownLatch slow = new CountDownLatch(1);
+    CountingBackfill stopped = new CountingBackfill(25, slow);
+    Migrator closed = new Migrator(cs, 10, 1);
+    closed.addBackfill(9, "Closed", stopped, true);
+    closed.migrate();
+    new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      slow.countDown();
+    }).start();
+    closed.close();
+    Assertions.assertEquals(10, stopped.filled, "Not waiting for the chunk, or not stopped");
+    Assertions.assertEquals(1, closed.getMetrics().get("backfills_pending"));
+    Assertions.assertEquals(5, closed.getVersion());
+
+    log.debug("Metrics: {}.", again.getMetrics());
+  }
+
+  /**
+   * @param cs the connection to use.
+   * @param sql to execute.
+   */
+  private static void execute(ConnectionSource cs, String sql) throws SQLException {
+    DatabaseConnection connection = cs.getReadWriteConnection(null);
+    try {
+      connection.executeStatement(sql, DatabaseConnection.DEFAULT_RESULT_FLAGS);
+    } finally {
+      cs.releaseConnection(connection);
+    }
+  }
+
+  /**
+   * A backfill of rows counted, waiting for a latch before the first chunk.
+   */
+  private static final class CountingBackfill implements Backfill {
+
+    /**
+     * The rows to fill.
+     */
+    private final int rows;
+
+    /**
+     * The latch to wait, can be null.
+     */
+    private final CountDownLatch release;
+
+    /**
+     * True when prepared.
+     */
+    private volatile boolean prepared;
+
+    /**
+     * The rows filled.
+     */
+    private volatile int filled;
+
+    /**
+     * The Constructor.
+     */
+    CountingBackfill(int rows, CountDownLatch release) {
+      this.rows = rows;
+      this.release = release;
+    }
+
+    @Override
+    public void prepare() {
+      this.prepared = true;
+    }
+
+    @Override
+    public int fill(int chunkSize) throws SQLException {
+      try {
+        if (this.release != null && !this.release.await(10, TimeUnit.SECONDS)) {
+          throw new SQLException("Not released");
+        }
+      } catch (InterruptedException ex) {
+        throw new SQLException("Interrupted", ex);
+      }
+      int chunk = Math.min(chunkSize, this.rows - this.filled);
+      this.filled += chunk;
+      return chunk;
+    }
+
+  }
+
+}
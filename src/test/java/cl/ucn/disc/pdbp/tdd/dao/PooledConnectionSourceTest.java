@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.dao.DatabaseConfig;
+import cl.ucn.disc.pdbp.tdd.model.dao.PooledConnectionSource;
+import cl.ucn.disc.pdbp.tdd.model.dao.Repository;
+import cl.ucn.disc.pdbp.tdd.model.dao.RepositoryOrmLite;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * The Test of the pool of connections.
+ *
+ * @author Miguel León Garrido
+ */
+public final class PooledConnectionSourceTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(PooledConnectionSourceTest.class);
+
+  /**
+   * Testing the size of the pool, the metrics and the transactions.
+   */
+  @Test
+  public void testPool() throws SQLException, IOException {
+
+    DatabaseConfig config = new DatabaseConfig("jdbc:h2:mem:pool");
+    config.setPooled(true);
+    config.setMinIdle(1);
+    config.setMaxIdle(2);
+    config.setMaxSize(2);
+    config.setAcquireTimeoutMillis(100);
+    config.setValidationQuery("SELECT 1");
+
+    try (PooledConnectionSource pool = (PooledConnectionSource) config.createConnectionSource()) {
+
+      // The min idle connections are opened at startup
+      Assertions.assertEquals(1, pool.getIdleConnections(), "Min idle not opened");
+
+      // Using all the connections
+      DatabaseConnection first = pool.getReadWriteConnection(null);
+      DatabaseConnection second = pool.getReadWriteConnection(null);
+      Assertions.assertEquals(2, pool.getActiveConnections(), "Active != 2");
+
+      // The pool is full: timeout
+      Assertions.assertThrows(SQLException.class, () -> pool.getReadWriteConnection(null));
+      Assertions.assertEquals(1L, pool.getMetrics().get("timeouts_total"), "Timeout not counted");
+
+      pool.releaseConnection(first);
+      pool.releaseConnection(second);
+      Assertions.assertEquals(0, pool.getActiveConnections(), "Active != 0");
+      Assertions.assertEquals(2, pool.getIdleConnections(), "Idle != 2");
+
+      log.debug("Metrics: {}.", pool.getMetrics());
+    }
+
+    // A transaction in a pool of one connection: the nested calls reuse the saved connection (no deadlock)
+    config = new DatabaseConfig("jdbc:h2:mem:pooltx");
+    config.setPooled(true);
+    config.setMaxSize(1);
+    config.setAcquireTimeoutMillis(100);
+
+    try (PooledConnectionSource pool = (PooledConnectionSource) config.createConnectionSource()) {
+
+      TableUtils.createTableIfNotExists(pool, Persona.class);
+      Repository<Persona, Long> repo = new RepositoryOrmLite<>(pool, Persona.class);
+
+      TransactionManager.callInTransaction(pool, () -> repo.create(new Persona("Andrea", "Contreras",
+        "152532873", "michimalongo 1826", 2244397, 63887303, "asd123@gmail.com")));
+
+      Assertions.assertEquals(1, repo.findAll().size(), "Persona not inserted");
+      Assertions.assertEquals(0, pool.getActiveConnections(), "Connection not released");
+    }
+  }
+
+}
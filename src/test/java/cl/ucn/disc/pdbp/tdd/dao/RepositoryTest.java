@@ -27,9 +27,23 @@ package cl.ucn.disc.pdbp.tdd.dao;
 import cl.ucn.disc.pdbp.tdd.model.dao.Repository;
 import cl.ucn.disc.pdbp.tdd.model.dao.RepositoryOrmLite;
 import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeType;
+import cl.ucn.disc.pdbp.tdd.model.main.Control;
+import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import cl.ucn.disc.pdbp.tdd.model.main.Sexo;
+import cl.ucn.disc.pdbp.tdd.model.main.Tipo;
+import com.j256.ormlite.dao.CloseableIterator;
+import com.j256.ormlite.dao.ObjectCache;
 import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.field.FieldType;
 import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.stmt.GenericRowMapper;
+import com.j256.ormlite.stmt.SelectArg;
+import com.j256.ormlite.stmt.StatementBuilder.StatementType;
+import com.j256.ormlite.support.CompiledStatement;
 import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.support.DatabaseConnectionProxy;
 import com.j256.ormlite.table.DatabaseTable;
 import com.j256.ormlite.table.TableUtils;
 import org.junit.jupiter.api.Assertions;
@@ -40,7 +54,10 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The Test of Repository.
@@ -111,6 +128,16 @@ public class RepositoryTest {
         List<TheModel> list = theRepo.findAll();
         Assertions.assertNotNull(list, "List was null");
         Assertions.assertEquals(1, list.size(), "List size != 0");
+
+        log.debug("Testing iterator() ..");
+        int size = 0;
+        try (CloseableIterator<TheModel> iterator = theRepo.iterator()) {
+          while (iterator.hasNext()) {
+            Assertions.assertNotNull(iterator.next(), "Model was null");
+            size++;
+          }
+        }
+        Assertions.assertEquals(1, size, "Iterator size != 1");
       }
 
       // Update
@@ -162,6 +189,208 @@ public class RepositoryTest {
 
   }
 
+  /**
+   * The insert of many models in a single transaction.
+   */
+  @Test
+  public void testCreateAll() {
+
+    // The source of the data
+    try (ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:h2:mem:batch")) {
+
+      // Create the tables
+      TableUtils.createTableIfNotExists(connectionSource, TheModel.class);
+
+      // The repository
+      Repository<TheModel, Long> theRepo = new RepositoryOrmLite<>(connectionSource, TheModel.class);
+
+      log.debug("Testing createAll with null ..");
+      Assertions.assertThrows(RuntimeException.class, () -> theRepo.createAll(null), "CreateAll with null");
+
+      log.debug("Testing createAll ..");
+      Assertions.assertEquals(3, theRepo.createAll(Arrays.asList(
+        new TheModel(ZonedDateTime.now(), "One"),
+        new TheModel(ZonedDateTime.now(), "Two"),
+        new TheModel(ZonedDateTime.now(), "Three"))), "Models not inserted");
+      Assertions.assertEquals(3, theRepo.findAll().size(), "Size != 3");
+
+      log.debug("Testing createAll with a invalid model ..");
+      Assertions.assertThrows(RuntimeException.class, () -> theRepo.createAll(Arrays.asList(
+        new TheModel(ZonedDateTime.now(), "Four"),
+        new TheModel())), "CreateAll with a invalid model");
+      Assertions.assertEquals(3, theRepo.findAll().size(), "The transaction wasn't rolled back");
+
+    } catch (SQLException | IOException exception) {
+      throw new RuntimeException(exception);
+    }
+
+  }
+
+  /**
+   * The named queries: prepared once by thread, with the arguments given in each call.
+   */
+  @Test
+  public void testPrepared() throws InterruptedException {
+
+    // The source of the data
+    try (ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:h2:mem:prepared")) {
+
+      // Create the tables
+      TableUtils.createTableIfNotExists(connectionSource, TheModel.class);
+
+      // The repository
+      Repository<TheModel, Long> theRepo = new RepositoryOrmLite<>(connectionSource, TheModel.class);
+      theRepo.createAll(Arrays.asList(
+        new TheModel(ZonedDateTime.now(), "One"),
+        new TheModel(ZonedDateTime.now(), "Two"),
+        new TheModel(ZonedDateTime.now(), "Three")));
+
+      log.debug("Testing the prepared queries ..");
+      theRepo.prepare("byName", query -> query.where().like("theName", new SelectArg()));
+      Assertions.assertEquals(1, theRepo.query("byName", "Two").size(), "Size != 1");
+      Assertions.assertEquals("Two", theRepo.query("byName", "Two").get(0).getTheName(), "Wrong model");
+      Assertions.assertEquals(2, theRepo.count("byName", "T%"), "Count != 2");
+      Assertions.assertEquals(0, theRepo.count("byName", "Four"), "Count != 0");
+
+      log.debug("Testing the prepared queries in many threads ..");
+      AtomicInteger errors = new AtomicInteger();
+      List<Thread> threads = new ArrayList<>();
+      for (String name : new String[]{"One", "Two", "Three"}) {
+        threads.add(new Thread(() -> {
+          for (int i = 0; i < 100; i++) {
+            if (!name.equals(theRepo.query("byName", name).get(0).getTheName())) {
+              errors.incrementAndGet();
+            }
+          }
+        }));
+      }
+      threads.forEach(Thread::start);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      Assertions.assertEquals(0, errors.get(), "The arguments were shared between threads");
+
+      log.debug("Testing the prepared queries unknown and repeated ..");
+      Assertions.assertThrows(IllegalArgumentException.class, () -> theRepo.query("unknown"));
+      Assertions.assertThrows(IllegalArgumentException.class,
+        () -> theRepo.prepare("byName", query -> query.where().eq("theName", new SelectArg())));
+
+    } catch (SQLException | IOException exception) {
+      throw new RuntimeException(exception);
+    }
+
+  }
+
+  /**
+   * The batch fetch of the foreign fields: the number of queries doesn't depend on the number of rows.
+   */
+  @Test
+  public void testFetchForeign() {
+    Assertions.assertEquals(queriesToFetch(10), queriesToFetch(100), "The queries grow with the rows");
+    Assertions.assertEquals(4, queriesToFetch(100), "Wrong number of queries");
+  }
+
+  /**
+   * @param size number of fichas and controles.
+   * @return the number of queries to read all the fichas and controles with their foreign rows.
+   */
+  private static int queriesToFetch(int size) {
+
+    try (CountingConnectionSource connectionSource = new CountingConnectionSource("jdbc:h2:mem:fetch" + size)) {
+
+      // Create the tables
+      TableUtils.createTableIfNotExists(connectionSource, Persona.class);
+      TableUtils.createTableIfNotExists(connectionSource, Ficha.class);
+      TableUtils.createTableIfNotExists(connectionSource, Control.class);
+
+      // The repositories
+      Repository<Persona, Long> repoPersona = new RepositoryOrmLite<>(connectionSource, Persona.class);
+      Repository<Ficha, Long> repoFicha = new RepositoryOrmLite<>(connectionSource, Ficha.class);
+      Repository<Control, Long> repoControl = new RepositoryOrmLite<>(connectionSource, Control.class);
+
+      // The data: a few duenios with many fichas, a control by ficha
+      List<Persona> personas = new ArrayList<>();
+      for (String rut : new String[]{"152532873", "21195194K", "121244071", "198127949", "202294316"}) {
+        personas.add(new Persona("Andrea", "Contreras", rut, "michimalongo 1826", 2244397, 63887303,
+          "asd123@gmail.com"));
+      }
+      repoPersona.createAll(personas);
+
+      List<Ficha> fichas = new ArrayList<>();
+      List<Control> controles = new ArrayList<>();
+      for (int i = 0; i < size; i++) {
+        Ficha ficha = new Ficha(i, "Firulais", "Perro", ZonedDateTime.now(), "Pastor", Sexo.MACHO, "Negro",
+          Tipo.INTERNO, personas.get(i % personas.size()));
+        fichas.add(ficha);
+        controles.add(new Control(ZonedDateTime.now(), ZonedDateTime.now(), 38.5f, 10.2f, 0.5f, "Sano",
+          "Juan Perez", ficha));
+      }
+      repoFicha.createAll(fichas);
+      repoControl.createAll(controles);
+
+      log.debug("Reading {} fichas and controles ..", size);
+      connectionSource.queries.set(0);
+
+      List<Ficha> fichasRead = repoFicha.findAll();
+      repoFicha.fetchForeign(fichasRead, "duenio");
+      Assertions.assertEquals(size, fichasRead.size(), "Wrong number of fichas");
+      Assertions.assertEquals("21195194K", fichasRead.get(1).getDuenio().getRut(), "Duenio not fetched");
+
+      List<Control> controlesRead = repoControl.findAll();
+      repoControl.fetchForeign(controlesRead, "ficha");
+      Assertions.assertEquals(size, controlesRead.size(), "Wrong number of controles");
+      Assertions.assertEquals("Firulais", controlesRead.get(0).getFicha().getNombrePaciente(), "Ficha not fetched");
+
+      Assertions.assertThrows(IllegalArgumentException.class, () -> repoFicha.fetchForeign(fichasRead, "raza"));
+
+      return connectionSource.queries.get();
+
+    } catch (SQLException | IOException exception) {
+      throw new RuntimeException(exception);
+    }
+  }
+
+  /**
+   * A connection source that counts the queries.
+   */
+  private static final class CountingConnectionSource extends JdbcConnectionSource {
+
+    /**
+     * The number of queries.
+     */
+    private final AtomicInteger queries = new AtomicInteger();
+
+    /**
+     * @param url to connect.
+     */
+    private CountingConnectionSource(String url) throws SQLException {
+      super(url);
+    }
+
+    /**
+     * @return the connection, counting the queries.
+     */
+    @Override
+    protected DatabaseConnection makeConnection(com.j256.ormlite.logger.Logger logger) throws SQLException {
+      return new DatabaseConnectionProxy(super.makeConnection(logger)) {
+
+        @Override
+        public CompiledStatement compileStatement(String statement, StatementType type, FieldType[] argFieldTypes,
+                                                  int resultFlags, boolean cacheStore) throws SQLException {
+          queries.incrementAndGet();
+          return super.compileStatement(statement, type, argFieldTypes, resultFlags, cacheStore);
+        }
+
+        @Override
+        public <T> Object queryForOne(String statement, Object[] args, FieldType[] argfieldTypes,
+                                      GenericRowMapper<T> rowMapper, ObjectCache objectCache) throws SQLException {
+          queries.incrementAndGet();
+          return super.queryForOne(statement, args, argfieldTypes, rowMapper, objectCache);
+        }
+      };
+    }
+  }
+
   /**
    * The Model.
    */
@@ -0,0 +1,183 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.dao.DatabaseConfig;
+import cl.ucn.disc.pdbp.tdd.model.dao.QueryMetrics;
+import cl.ucn.disc.pdbp.tdd.model.dao.Repository;
+import cl.ucn.disc.pdbp.tdd.model.dao.RepositoryOrmLite;
+import cl.ucn.disc.pdbp.tdd.model.dao.RoutingConnectionSource;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Test of the routing of the reads to the replicas.
+ *
+ * @author Miguel León Garrido
+ */
+public final class RoutingConnectionSourceTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(RoutingConnectionSourceTest.class);
+
+  /**
+   * Testing the reads in the replica, the read your writes, the transactions and the failover.
+   */
+  @Test
+  public void testRouting() throws SQLException, IOException, InterruptedException {
+
+    ConnectionSource primary = new JdbcConnectionSource("jdbc:h2:mem:primary");
+    FailingConnectionSource replica = new FailingConnectionSource("jdbc:h2:mem:replica");
+    TableUtils.createTableIfNotExists(primary, Persona.class);
+    TableUtils.createTableIfNotExists(replica, Persona.class);
+
+    try (RoutingConnectionSource routing = new RoutingConnectionSource(primary,
+      Collections.singletonList(replica), 100)) {
+
+      Repository<Persona, Long> repo = new RepositoryOrmLite<>(routing, Persona.class);
+      Repository<Persona, Long> repoReplica = new RepositoryOrmLite<>(replica, Persona.class);
+
+      // The write goes to the primary, the next reads of the thread too
+      RoutingConnectionSource.clearStickiness();
+      repo.create(persona("152532873"));
+      Assertions.assertEquals(1, repo.findAll().size(), "Not reading your writes");
+      Assertions.assertEquals(1L, routing.getMetrics().get("reads_primary_total"));
+
+      // Other request: the read goes to the replica (not replicated yet)
+      RoutingConnectionSource.clearStickiness();
+      Assertions.assertEquals(0, repo.findAll().size(), "Not reading from the replica");
+      Assertions.assertEquals(1L, routing.getMetrics().get("reads_replica_total"));
+
+      // Replicated
+      repoReplica.create(persona("152532873"));
+      Assertions.assertEquals(1, repo.findAll().size(), "Not reading from the replica");
+
+      // The reads inside a transaction go to the primary
+      RoutingConnectionSource.clearStickiness();
+      int inside = TransactionManager.callInTransaction(routing, () -> {
+        repo.create(persona("121244071"));
+        return repo.findAll().size();
+      });
+      Assertions.assertEquals(2, inside, "Not reading inside the transaction");
+
+      // The replica fails: the reads go to the primary until the retry time
+      RoutingConnectionSource.clearStickiness();
+      replica.down = true;
+      Assertions.assertEquals(2, repo.findAll().size(), "Not reading from the primary");
+      Assertions.assertEquals(1L, routing.getMetrics().get("failovers_total"));
+      Assertions.assertEquals(0, routing.getReplicasUp(), "Replica up");
+
+      replica.down = false;
+      Assertions.assertEquals(2, repo.findAll().size(), "Not reading from the primary");
+      Thread.sleep(150);
+      Assertions.assertEquals(1, repo.findAll().size(), "Not reading from the replica again");
+      Assertions.assertEquals(1, routing.getReplicasUp(), "Replica down");
+
+      // A request that wrote reads from the primary in all their threads, after the tasks end
+      QueryMetrics.Request request = QueryMetrics.beginRequest();
+      repo.create(persona("198127949"));
+      RoutingConnectionSource.clearStickiness();
+      AtomicInteger inTask = new AtomicInteger();
+      Thread task = new Thread(() -> {
+        QueryMetrics.setRequest(request);
+        inTask.set(repo.findAll().size());
+      });
+      task.start();
+      task.join();
+      Assertions.assertEquals(3, inTask.get(), "Not reading your writes in other thread");
+      Assertions.assertEquals(3, repo.findAll().size(), "Not reading your writes after the task");
+      QueryMetrics.setRequest(null);
+      Assertions.assertEquals(1, repo.findAll().size(), "Not reading from the replica after the request");
+
+      // The query fails in the replica: down until the retry time
+      replica.getReadWriteConnection("persona").executeStatement("DROP TABLE persona",
+        DatabaseConnection.DEFAULT_RESULT_FLAGS);
+      long failovers = routing.getMetrics().get("failovers_total").longValue();
+      Assertions.assertThrows(RuntimeException.class, repo::findAll, "Query in the replica didn't fail");
+      Assertions.assertEquals(failovers + 1, routing.getMetrics().get("failovers_total").longValue());
+      Assertions.assertEquals(0, routing.getReplicasUp(), "Replica up after a failed query");
+      Assertions.assertEquals(3, repo.findAll().size(), "Not reading from the primary");
+
+      log.debug("Metrics: {}.", routing.getMetrics());
+    }
+
+    // The configuration with replicas
+    DatabaseConfig config = new DatabaseConfig("jdbc:h2:mem:primary2");
+    config.addReplicaUrl("jdbc:h2:mem:replica2");
+    try (ConnectionSource connectionSource = config.createConnectionSource()) {
+      Assertions.assertTrue(connectionSource instanceof RoutingConnectionSource, "Not routing");
+    }
+  }
+
+  /**
+   * @return a new persona with the rut.
+   */
+  private static Persona persona(String rut) {
+    return new Persona("Andrea", "Contreras", rut, "michimalongo 1826", 2244397, 63887303, "asd123@gmail.com");
+  }
+
+  /**
+   * A database that can be down.
+   */
+  private static final class FailingConnectionSource extends JdbcConnectionSource {
+
+    /**
+     * true to fail.
+     */
+    private volatile boolean down;
+
+    /**
+     * The Constructor.
+     */
+    private FailingConnectionSource(String url) throws SQLException {
+      super(url);
+    }
+
+    @Override
+    public DatabaseConnection getReadOnlyConnection(String tableName) throws SQLException {
+      if (this.down) {
+        throw new SQLException("The replica is down");
+      }
+      return super.getReadOnlyConnection(tableName);
+    }
+
+  }
+
+}
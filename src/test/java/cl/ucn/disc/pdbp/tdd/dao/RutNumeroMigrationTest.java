@@ -0,0 +1,242 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.dao.DuplicateRutCheck;
+import cl.ucn.disc.pdbp.tdd.model.dao.Migrator;
+import cl.ucn.disc.pdbp.tdd.model.dao.Repository;
+import cl.ucn.disc.pdbp.tdd.model.dao.RepositoryOrmLite;
+import cl.ucn.disc.pdbp.tdd.model.dao.RutNumeroMigration;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import cl.ucn.disc.pdbp.tdd.model.utils.Validation;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The Test of the migration of the rutNumero of the personas.
+ *
+ * @author Miguel León Garrido
+ */
+public final class RutNumeroMigrationTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(RutNumeroMigrationTest.class);
+
+  /**
+   * Testing the migration of the personas without rutNumero, in H2.
+   */
+  @Test
+  public void testMigrationH2() throws SQLException, IOException {
+    try (ConnectionSource cs = new JdbcConnectionSource("jdbc:h2:mem:rutnumero")) {
+      this.testMigration(cs);
+    }
+  }
+
+  /**
+   * Testing the migration of the personas without rutNumero, in SQLite.
+   */
+  @Test
+  public void testMigrationSqlite() throws SQLException, IOException {
+    File file = File.createTempFile("rutnumero", ".db");
+    try (ConnectionSource cs = new JdbcConnectionSource("jdbc:sqlite:" + file.getAbsolutePath())) {
+      this.testMigration(cs);
+    } finally {
+      Assertions.assertTrue(file.delete(), "Can't delete the database");
+    }
+  }
+
+  /**
+   * Testing the report of the ruts repeated (once normalized) before the unique index.
+   */
+  @Test
+  public void testDuplicates() throws SQLException, IOException {
+    try (ConnectionSource cs = new JdbcConnectionSource("jdbc:h2:mem:rutduplicates")) {
+
+      // A new database: nothing to check
+      DuplicateRutCheck check = new DuplicateRutCheck(cs);
+      check.migrate();
+
+      // The old table without unique index, the same rut in two formats
+      TableUtils.createTableIfNotExists(cs, OldPersona.class);
+      cs.getReadWriteConnection("persona").executeStatement("DROP INDEX IF EXISTS persona_rut_unique",
+        DatabaseConnection.DEFAULT_RESULT_FLAGS);
+      Repository<OldPersona, Long> repoOld = new RepositoryOrmLite<>(cs, OldPersona.class);
+      repoOld.create(new OldPersona("15.253.287-3"));
+      repoOld.create(new OldPersona("152532873"));
+      repoOld.create(new OldPersona("121244071"));
+
+      RutNumeroMigration migration = new RutNumeroMigration(cs);
+      migration.prepare();
+      Assertions.assertEquals(3, migration.fill(1000));
+
+      SQLException ex = Assertions.assertThrows(SQLException.class, check::migrate, "Duplicates not reported");
+      Assertions.assertTrue(ex.getMessage().contains("15253287 (2 personas)"), ex.getMessage());
+      Assertions.assertFalse(ex.getMessage().contains("12124407"), ex.getMessage());
+    }
+  }
+
+  /**
+   * Create the table without rutNumero, migrate and read the personas.
+   *
+   * @param cs the connection to use.
+   */
+  private void testMigration(ConnectionSource cs) throws SQLException {
+
+    // A new database: nothing to do
+    RutNumeroMigration migration = new RutNumeroMigration(cs);
+    migration.prepare();
+    Assertions.assertEquals(0, migration.fill(1000));
+
+    TableUtils.createTableIfNotExists(cs, OldPersona.class);
+    Repository<OldPersona, Long> repoOld = new RepositoryOrmLite<>(cs, OldPersona.class);
+
+    // More than a chunk of personas, the old ruts with the k in lower case
+    List<OldPersona> olds = new ArrayList<>();
+    for (int i = 0; i < 2500; i++) {
+      String rut = Validation.formatRut(Validation.rutKey(10_000_000L + i));
+      olds.add(new OldPersona(rut.toLowerCase(Locale.ROOT)));
+    }
+    Assertions.assertEquals(2500, repoOld.createAll(olds));
+
+    // By chunks, a transaction each
+    migration.prepare();
+    Assertions.assertEquals(1000, migration.fill(1000));
+    Migrator migrator = new Migrator(cs, 1000, 0);
+    migrator.addBackfill(1, "The rutNumero of the personas", migration, false);
+    Assertions.assertEquals(1, migrator.migrate());
+    Assertions.assertEquals(1500L, migrator.getMetrics().get("backfill_rows_total"));
+
+    // Again: nothing to do
+    Assertions.assertEquals(0, migration.fill(1000));
+
+    // The unique index over rutNumero
+    TableUtils.createTableIfNotExists(cs, Persona.class);
+
+    Repository<Persona, Long> repo = new RepositoryOrmLite<>(cs, Persona.class);
+    List<Persona> personas = repo.findAll();
+    Assertions.assertEquals(2500, personas.size());
+    for (int i = 0; i < personas.size(); i++) {
+      Persona persona = personas.get(i);
+      Assertions.assertEquals(10_000_000L + i, persona.getRutNumero());
+      Assertions.assertEquals(Validation.normalizeRut(olds.get(i).rut), persona.getRut());
+    }
+
+    // The new personas with rutNumero
+    Persona persona = new Persona("Andrea", "Contreras", "15.253.287-3", "michimalongo 1826", 2244397, 63887303,
+      "asd123@gmail.com");
+    repo.create(persona);
+    Assertions.assertEquals(15253287L, repo.findById(persona.getId()).getRutNumero());
+
+    log.debug("Migrated {}: {} personas.", cs.getDatabaseType().getDatabaseName(), personas.size());
+  }
+
+  /**
+   * The Persona before the rutNumero.
+   */
+  @DatabaseTable(tableName = "persona")
+  public static final class OldPersona {
+
+    /**
+     * The id: Primary Key (autoincrement).
+     */
+    @DatabaseField(generatedId = true)
+    private Long id;
+
+    /**
+     * The nombre.
+     */
+    @DatabaseField(canBeNull = false)
+    private String nombre = "Andrea";
+
+    /**
+     * The apellido.
+     */
+    @DatabaseField(canBeNull = false)
+    private String apellido = "Contreras";
+
+    /**
+     * The rut.
+     */
+    @DatabaseField(canBeNull = false, uniqueIndexName = "persona_rut_unique")
+    private String rut;
+
+    /**
+     * The direccion.
+     */
+    @DatabaseField(canBeNull = false)
+    private String direccion = "michimalongo 1826";
+
+    /**
+     * The telefono fijo.
+     */
+    @DatabaseField(canBeNull = false)
+    private Integer telefonoFijo = 2244397;
+
+    /**
+     * The telefono movil.
+     */
+    @DatabaseField(canBeNull = false)
+    private Integer telefonoMovil = 63887303;
+
+    /**
+     * The email.
+     */
+    @DatabaseField(canBeNull = false)
+    private String email = "asd123@gmail.com";
+
+    /**
+     * Empty constructor.
+     */
+    OldPersona() {
+      // Nothing here
+    }
+
+    /**
+     * The Constructor.
+     */
+    OldPersona(String rut) {
+      this.rut = rut;
+    }
+
+  }
+
+}
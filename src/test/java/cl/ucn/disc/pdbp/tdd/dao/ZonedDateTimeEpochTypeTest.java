@@ -0,0 +1,251 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.dao.Repository;
+import cl.ucn.disc.pdbp.tdd.model.dao.RepositoryOrmLite;
+import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeEpochType;
+import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeMigration;
+import cl.ucn.disc.pdbp.tdd.model.dao.ZonedDateTimeType;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Test of the dates saved as numbers and the migration from strings.
+ *
+ * @author Miguel León Garrido
+ */
+public final class ZonedDateTimeEpochTypeTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(ZonedDateTimeEpochTypeTest.class);
+
+  /**
+   * Testing the encode and decode of dates.
+   */
+  @Test
+  public void testEncodeDecode() {
+
+    List<ZonedDateTime> dates = new ArrayList<>();
+    dates.add(ZonedDateTime.of(2020, 5, 1, 10, 30, 15, 123_000_000, ZoneOffset.ofHours(-4)));
+    dates.add(ZonedDateTime.of(2020, 5, 1, 14, 30, 15, 123_000_000, ZoneOffset.UTC));
+    dates.add(ZonedDateTime.of(1950, 12, 31, 23, 59, 59, 999_000_000, ZoneOffset.ofHoursMinutes(5, 30)));
+    dates.add(ZonedDateTime.of(1969, 12, 31, 23, 59, 59, 1_000_000, ZoneOffset.MIN));
+    dates.add(ZonedDateTime.of(2100, 1, 1, 0, 0, 0, 0, ZoneOffset.MAX));
+
+    // The same date and offset
+    for (ZonedDateTime date : dates) {
+      Assertions.assertEquals(date, ZonedDateTimeEpochType.decode(ZonedDateTimeEpochType.encode(date)));
+    }
+
+    // The zone is kept as offset, the precision is the millisecond
+    ZonedDateTime santiago = ZonedDateTime.of(2020, 5, 1, 10, 30, 15, 123_456_789, ZoneId.of("America/Santiago"));
+    ZonedDateTime decoded = ZonedDateTimeEpochType.decode(ZonedDateTimeEpochType.encode(santiago));
+    Assertions.assertEquals(santiago.getOffset(), decoded.getZone());
+    Assertions.assertEquals(santiago.toInstant().toEpochMilli(), decoded.toInstant().toEpochMilli());
+    Assertions.assertEquals(123_000_000, decoded.getNano());
+
+    // The numbers sort as the instants
+    ZonedDateTime before = ZonedDateTime.of(2020, 5, 1, 12, 0, 0, 0, ZoneOffset.ofHours(3));
+    ZonedDateTime after = ZonedDateTime.of(2020, 5, 1, 10, 0, 0, 0, ZoneOffset.ofHours(-3));
+    Assertions.assertTrue(ZonedDateTimeEpochType.encode(before) < ZonedDateTimeEpochType.encode(after));
+    Assertions.assertTrue(ZonedDateTimeEpochType.encode(dates.get(3)) < ZonedDateTimeEpochType.encode(dates.get(0)));
+
+    // Out of range
+    Assertions.assertThrows(IllegalArgumentException.class,
+      () -> ZonedDateTimeEpochType.encode(ZonedDateTime.of(999_999, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC)));
+  }
+
+  /**
+   * Testing the save and load of dates (and null) in H2.
+   */
+  @Test
+  public void testPersist() throws SQLException, IOException {
+
+    try (ConnectionSource cs = new JdbcConnectionSource("jdbc:h2:mem:epoch")) {
+
+      TableUtils.createTableIfNotExists(cs, EpochModel.class);
+      Repository<EpochModel, Long> repo = new RepositoryOrmLite<>(cs, EpochModel.class);
+
+      ZonedDateTime date = ZonedDateTime.of(1980, 2, 29, 8, 15, 0, 0, ZoneOffset.ofHours(-3));
+      EpochModel model = new EpochModel(date);
+      repo.create(model);
+      repo.create(new EpochModel(null));
+
+      Assertions.assertEquals(date, repo.findById(model.id).theDate);
+      Assertions.assertNull(repo.findById(model.id + 1).theDate);
+    }
+  }
+
+  /**
+   * Testing the migration of a table with dates as strings, in H2.
+   */
+  @Test
+  public void testMigrationH2() throws SQLException, IOException {
+    try (ConnectionSource cs = new JdbcConnectionSource("jdbc:h2:mem:migration")) {
+      this.testMigration(cs);
+    }
+  }
+
+  /**
+   * Testing the migration of a table with dates as strings, in SQLite.
+   */
+  @Test
+  public void testMigrationSqlite() throws SQLException, IOException {
+    File file = File.createTempFile("migration", ".db");
+    try (ConnectionSource cs = new JdbcConnectionSource("jdbc:sqlite:" + file.getAbsolutePath())) {
+      this.testMigration(cs);
+    } finally {
+      Assertions.assertTrue(file.delete(), "Can't delete the database");
+    }
+  }
+
+  /**
+   * Create the table with strings, migrate and read the numbers.
+   *
+   * @param cs the connection to use.
+   */
+  private void testMigration(ConnectionSource cs) throws SQLException {
+
+    TableUtils.createTableIfNotExists(cs, IsoModel.class);
+    Repository<IsoModel, Long> repoIso = new RepositoryOrmLite<>(cs, IsoModel.class);
+
+    // More than a chunk of dates
+    ZonedDateTime first = ZonedDateTime.of(1999, 12, 31, 23, 0, 0, 0, ZoneOffset.ofHours(-4));
+    List<IsoModel> models = new ArrayList<>();
+    for (int i = 0; i < 2500; i++) {
+      models.add(new IsoModel(i == 7 ? null : first.plusHours(i)));
+    }
+    Assertions.assertEquals(2500, repoIso.createAll(models));
+
+    ZonedDateTimeMigration migration = new ZonedDateTimeMigration(cs);
+    Assertions.assertEquals(2499, migration.migrate("dates", "theDate"));
+
+    // Again: nothing to do
+    Assertions.assertEquals(0, migration.migrate("dates", "theDate"));
+
+    Repository<EpochModel, Long> repo = new RepositoryOrmLite<>(cs, EpochModel.class);
+    List<EpochModel> migrated = repo.findAll();
+    Assertions.assertEquals(2500, migrated.size());
+    for (int i = 0; i < migrated.size(); i++) {
+      EpochModel model = migrated.get(i);
+      Assertions.assertEquals(models.get(i).id, model.id);
+      Assertions.assertEquals(models.get(i).theDate, model.theDate);
+    }
+
+    // The new dates are numbers
+    ZonedDateTime date = ZonedDateTime.of(2020, 6, 1, 9, 0, 0, 0, ZoneOffset.UTC);
+    EpochModel model = new EpochModel(date);
+    repo.create(model);
+    Assertions.assertEquals(date, repo.findById(model.id).theDate);
+
+    log.debug("Migrated {}: {} dates.", cs.getDatabaseType().getDatabaseName(), migrated.size());
+  }
+
+  /**
+   * The Model with the dates as strings.
+   */
+  @DatabaseTable(tableName = "dates")
+  public static final class IsoModel {
+
+    /**
+     * The id: Primary Key (autoincrement).
+     */
+    @DatabaseField(generatedId = true)
+    private Long id;
+
+    /**
+     * The date.
+     */
+    @DatabaseField(persisterClass = ZonedDateTimeType.class)
+    private ZonedDateTime theDate;
+
+    /**
+     * Empty constructor.
+     */
+    IsoModel() {
+      // Nothing here
+    }
+
+    /**
+     * The Constructor.
+     */
+    IsoModel(ZonedDateTime theDate) {
+      this.theDate = theDate;
+    }
+  }
+
+  /**
+   * The Model with the dates as numbers (the same table).
+   */
+  @DatabaseTable(tableName = "dates")
+  public static final class EpochModel {
+
+    /**
+     * The id: Primary Key (autoincrement).
+     */
+    @DatabaseField(generatedId = true)
+    private Long id;
+
+    /**
+     * The date.
+     */
+    @DatabaseField(persisterClass = ZonedDateTimeEpochType.class)
+    private ZonedDateTime theDate;
+
+    /**
+     * Empty constructor.
+     */
+    EpochModel() {
+      // Nothing here
+    }
+
+    /**
+     * The Constructor.
+     */
+    EpochModel(ZonedDateTime theDate) {
+      this.theDate = theDate;
+    }
+  }
+
+}
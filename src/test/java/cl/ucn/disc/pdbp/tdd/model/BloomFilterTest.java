@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model;
+
+import cl.ucn.disc.pdbp.tdd.model.utils.BloomFilter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Test of the BloomFilter.
+ *
+ * @author Miguel León Garrido
+ */
+public final class BloomFilterTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(BloomFilterTest.class);
+
+  /**
+   * Testing the keys added (never a false negative) and the false positives (near the fpp).
+   */
+  @Test
+  public void testBloomFilter() {
+
+    int keys = 10_000;
+    BloomFilter filter = new BloomFilter(keys, 0.01);
+
+    // The keys added: always found
+    for (long numero = 0; numero < keys; numero++) {
+      filter.put(numero);
+      filter.put("rut" + numero);
+    }
+    for (long numero = 0; numero < keys; numero++) {
+      Assertions.assertTrue(filter.mightContain(numero), "False negative");
+      Assertions.assertTrue(filter.mightContain("rut" + numero), "False negative");
+    }
+
+    // The keys not added: the false positives near the fpp (twice the keys expected were added)
+    int falsePositives = 0;
+    for (long numero = keys; numero < 11 * keys; numero++) {
+      if (filter.mightContain(numero)) {
+        falsePositives++;
+      }
+    }
+    double rate = falsePositives / (10.0 * keys);
+    log.debug("False positive rate: {}, estimated {}.", rate, filter.estimatedFpp());
+    Assertions.assertTrue(rate < 2 * filter.estimatedFpp(), "Too many false positives: " + rate);
+
+    // The metrics
+    Assertions.assertEquals(2L * keys, filter.getMetrics().get("insertions_total"));
+    Assertions.assertTrue(filter.getMetrics().get("negatives_total").longValue() > 0, "Negatives not counted");
+    Assertions.assertTrue(filter.getMetrics().get("bytes").longValue() < keys * 2, "Too much memory");
+
+    // Invalid arguments
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model;
+
+import cl.ucn.disc.pdbp.tdd.model.utils.Histogram;
+import cl.ucn.disc.pdbp.tdd.model.utils.PrometheusWriter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+
+/**
+ * The Test of the Histogram.
+ *
+ * @author Miguel León Garrido
+ */
+public final class HistogramTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(HistogramTest.class);
+
+  /**
+   * Testing the quantiles (relative error under 1/16), the count, sum and max, and the text of Prometheus.
+   */
+  @Test
+  public void testHistogram() {
+
+    Histogram histogram = new Histogram();
+    Assertions.assertEquals(0, histogram.getValueAtQuantile(0.99), "Empty != 0");
+
+    // 1 us .. 100 ms, in nanoseconds
+    long sum = 0;
+    for (long value = 1; value <= 100_000; value++) {
+      histogram.record(value * 1_000);
+      sum += value * 1_000;
+    }
+    Assertions.assertEquals(100_000, histogram.getCount());
+    Assertions.assertEquals(sum, histogram.getSum());
+    Assertions.assertEquals(100_000_000, histogram.getMax());
+
+    for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999, 1}) {
+      double expected = quantile * 100_000_000;
+      long value = histogram.getValueAtQuantile(quantile);
+      Assertions.assertTrue(Math.abs(value - expected) <= expected / 16, "Quantile " + quantile + ": " + value);
+    }
+
+    // The small values are exact, the huge ones in the last bucket
+    Histogram small = new Histogram();
+    small.record(3);
+    small.record(-1);
+    small.record(Long.MAX_VALUE);
+    Assertions.assertEquals(0, small.getValueAtQuantile(0.1));
+    Assertions.assertEquals(3, small.getValueAtQuantile(0.5));
+    Assertions.assertEquals(Long.MAX_VALUE, small.getValueAtQuantile(1));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> small.getValueAtQuantile(1.5));
+
+    // In the format of Prometheus
+    PrometheusWriter writer = new PrometheusWriter("fivet");
+    writer.write("latency_seconds", "operation", Collections.singletonMap("select", histogram), 1e-9);
+    writer.write("test", histogram.getMetrics());
+    String text = writer.toString();
+    log.debug("Prometheus:\n{}", text);
+
+    Assertions.assertTrue(text.contains("# TYPE fivet_latency_seconds summary\n"), text);
+    Assertions.assertTrue(text.contains("fivet_latency_seconds_count{operation=\"select\"} 100000\n"), text);
+    Assertions.assertTrue(text.contains("fivet_latency_seconds_max{operation=\"select\"} 0.1\n"), text);
+    Assertions.assertTrue(text.contains("fivet_latency_seconds{operation=\"select\",quantile=\"0.99\"} 0.1\n"), text);
+    Assertions.assertTrue(text.contains("# TYPE fivet_test_count gauge\nfivet_test_count 100000\n"), text);
+  }
+
+}
@@ -144,4 +144,66 @@ public final class ModelTest {
         Assertions.assertFalse(Validation.isRutValid("15253287-"));
     }
 
+    /**
+     * Test the normalization and the numeric key of the rut.
+     */
+    @Test
+    public void testNormalizacionRut() {
+
+        // Formatted
+        Assertions.assertTrue(Validation.isRutValid("15.253.287-3"));
+        Assertions.assertTrue(Validation.isRutValid("15253287-3"));
+        Assertions.assertTrue(Validation.isRutValid("21.195.194-k"));
+        Assertions.assertTrue(Validation.isRutValid("1.212.445-7"));
+
+        // The check digit 0 (11 - 11 % 11)
+        Assertions.assertTrue(Validation.isRutValid("10.000.004-0"));
+        Assertions.assertFalse(Validation.isRutValid("1000000411"));
+
+        // Bad formats
+        Assertions.assertFalse(Validation.isRutValid(""));
+        Assertions.assertFalse(Validation.isRutValid("15.253.287-4"));
+        Assertions.assertFalse(Validation.isRutValid("152.532.87-3"));
+        Assertions.assertFalse(Validation.isRutValid("15..253.287-3"));
+        Assertions.assertFalse(Validation.isRutValid(".15.253.287-3"));
+        Assertions.assertFalse(Validation.isRutValid("15.253.287.-3"));
+        Assertions.assertFalse(Validation.isRutValid("15.253287-3"));
+        Assertions.assertFalse(Validation.isRutValid("15253.287-3"));
+        Assertions.assertFalse(Validation.isRutValid("1.212445-7"));
+        Assertions.assertFalse(Validation.isRutValid("15253287--3"));
+        Assertions.assertFalse(Validation.isRutValid("0152532873"));
+        Assertions.assertFalse(Validation.isRutValid("123456789012"));
+
+        // The canonical form
+        Assertions.assertEquals("152532873", Validation.normalizeRut("15.253.287-3"));
+        Assertions.assertEquals("21195194K", Validation.normalizeRut("21.195.194-k"));
+        Assertions.assertEquals("12124457", Validation.normalizeRut("1.212.445-7"));
+        Assertions.assertNull(Validation.normalizeRut("15.253.287-4"));
+
+        // The numeric key: the body and the check digit (K as 0)
+        Assertions.assertEquals(152532873L, Validation.parseRut("15.253.287-3"));
+        Assertions.assertEquals(211951940L, Validation.parseRut("21195194K"));
+        Assertions.assertEquals(-1L, Validation.parseRut("21195194"));
+        Assertions.assertEquals(211951940L, Validation.rutKey(21195194L));
+        Assertions.assertEquals("21195194K", Validation.formatRut(211951940L));
+        Assertions.assertEquals("152532873", Validation.formatRut(Validation.parseRut("152532873")));
+
+        // The ranges of rutNumero: the rut, the prefixes of 7 and 8 digits
+        Assertions.assertArrayEquals(new long[]{15253287L, 15253288L, 0, 0, 0, 0},
+            Validation.rutRanges("15.253.287-3"));
+        Assertions.assertArrayEquals(new long[]{0, 0, 1525000L, 1526000L, 15250000L, 15260000L},
+            Validation.rutRanges("15.25"));
+        Assertions.assertArrayEquals(new long[]{1212445L, 1212446L, 0, 0, 12124457L, 12124458L},
+            Validation.rutRanges("12124457"));
+        Assertions.assertArrayEquals(new long[6], Validation.rutRanges("0152"));
+        Assertions.assertArrayEquals(new long[6], Validation.rutRanges("Andrea"));
+        Assertions.assertTrue(Validation.isRutInRanges(Validation.rutRanges("1525"), 15253287L));
+        Assertions.assertFalse(Validation.isRutInRanges(Validation.rutRanges("5253"), 15253287L));
+
+        // Stored normalized
+        Persona persona = new Persona("Andrea", "Contreras", "15.253.287-3", "michimalongo 1826", 2244397, 63887303,
+            "asd123@gmail.com");
+        Assertions.assertEquals("152532873", persona.getRut());
+    }
+
 }
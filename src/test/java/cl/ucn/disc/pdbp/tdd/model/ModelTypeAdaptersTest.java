@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Miguel Leon Garrido
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model;
+
+import cl.ucn.disc.pdbp.tdd.ContratosImpl;
+import cl.ucn.disc.pdbp.tdd.model.json.ModelTypeAdapters;
+import cl.ucn.disc.pdbp.tdd.model.main.Control;
+import cl.ucn.disc.pdbp.tdd.model.main.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.main.Persona;
+import cl.ucn.disc.pdbp.tdd.model.main.Sexo;
+import cl.ucn.disc.pdbp.tdd.model.main.Tipo;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Modifier;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * The Test of the JSON of the model.
+ *
+ * @author Miguel León Garrido
+ */
+public final class ModelTypeAdaptersTest {
+
+  /**
+   * The Logger (console)
+   */
+  private static final Logger log = LoggerFactory.getLogger(ModelTypeAdaptersTest.class);
+
+  /**
+   * Testing the JSON of persona, ficha and control: the same fields of the reflection plus the ids, the dates and the
+   * references.
+   */
+  @Test
+  public void testTypeAdapters() {
+
+    Gson gson = ModelTypeAdapters.register(new GsonBuilder()).create();
+    Gson reflection = new GsonBuilder().excludeFieldsWithModifiers(Modifier.TRANSIENT).create();
+
+    ContratosImpl contratos = new ContratosImpl("jdbc:h2:mem:json");
+    Persona persona = contratos.registrarPersona(new Persona("Andrea", "Contreras", "152532873",
+      "michimalongo 1826", 2244397, 63887303, "asd123@gmail.com"));
+    ZonedDateTime nacimiento = ZonedDateTime.of(2019, 6, 1, 10, 15, 30, 0, ZoneOffset.ofHours(-4));
+    Ficha ficha = contratos.registrarPaciente(new Ficha(7, "Firulais", "Perro", nacimiento, "Pastor", Sexo.MACHO,
+      "Negro", Tipo.INTERNO, persona));
+    Control control = contratos.registrarControl(new Control(nacimiento.plusYears(1), null, 36.6f, 20.3f, 50,
+      "Sano", "Dr. Lopez", ficha));
+
+    // Persona: the fields of the reflection plus the id
+    JsonObject json = JsonParser.parseString(gson.toJson(persona)).getAsJsonObject();
+    JsonObject expected = JsonParser.parseString(reflection.toJson(persona)).getAsJsonObject();
+    expected.addProperty("id", persona.getId());
+    Assertions.assertEquals(expected, json, "Wrong persona");
+
+    // Persona: read back
+    Persona read = gson.fromJson(json, Persona.class);
+    Assertions.assertEquals(persona.getRut(), read.getRut(), "Wrong rut");
+    Assertions.assertEquals(persona.getTelefonoMovil(), read.getTelefonoMovil(), "Wrong telefono");
+    json.addProperty("rut", "152532874");
+    JsonObject invalid = json;
+    Assertions.assertThrows(JsonParseException.class, () -> gson.fromJson(invalid, Persona.class));
+
+    // Ficha: plus the id, the fechaNacimiento and the duenio
+    json = JsonParser.parseString(gson.toJson(ficha)).getAsJsonObject();
+    expected = JsonParser.parseString(reflection.toJson(ficha)).getAsJsonObject();
+    expected.addProperty("id", ficha.getId());
+    expected.addProperty("fechaNacimiento", "2019-06-01T10:15:30-04:00");
+    expected.addProperty("duenio", persona.getId());
+    Assertions.assertEquals(expected, json, "Wrong ficha");
+
+    // Ficha: read back, the duenio as a reference
+    Ficha fichaRead = gson.fromJson(json, Ficha.class);
+    Assertions.assertNull(fichaRead.getId(), "The ficha read isn't new");
+    Assertions.assertEquals(ficha.getNumero(), fichaRead.getNumero(), "Wrong numero");
+    Assertions.assertEquals(nacimiento, fichaRead.getFechaNacimiento(), "Wrong fechaNacimiento");
+    Assertions.assertEquals(Sexo.MACHO, fichaRead.getSexo(), "Wrong sexo");
+    Assertions.assertEquals(Tipo.INTERNO, fichaRead.getTipo(), "Wrong tipo");
+    Assertions.assertEquals(persona.getId(), fichaRead.getDuenio().getId(), "Wrong duenio");
+    Assertions.assertThrows(JsonParseException.class, () -> gson.fromJson("{}", Ficha.class));
+    Assertions.assertThrows(JsonParseException.class,
+      () -> gson.fromJson("{\"numero\":1,\"fechaNacimiento\":\"ayer\"}", Ficha.class));
+
+    // Control: plus the id, the fecha (the fechaProximoControl is null) and the ficha, the floats as floats
+    String text = gson.toJson(control);
+    log.debug("Control: {}.", text);
+    Assertions.assertTrue(text.contains("\"temperatura\":36.6,"), "Float widened");
+    json = JsonParser.parseString(text).getAsJsonObject();
+    expected = JsonParser.parseString(reflection.toJson(control)).getAsJsonObject();
+    expected.addProperty("id", control.getId());
+    expected.addProperty("fecha", "2020-06-01T10:15:30-04:00");
+    expected.addProperty("ficha", ficha.getId());
+    Assertions.assertEquals(expected, json, "Wrong control");
+
+    // Control: read back, the ficha as a reference
+    Control controlRead = gson.fromJson(json, Control.class);
+    Assertions.assertNull(controlRead.getId(), "The control read isn't new");
+    Assertions.assertEquals(control.getFecha(), controlRead.getFecha(), "Wrong fecha");
+    Assertions.assertNull(controlRead.getFechaProximoControl(), "Wrong fechaProximoControl");
+    Assertions.assertEquals(36.6f, controlRead.getTemperatura(), "Wrong temperatura");
+    Assertions.assertEquals(ficha.getId(), controlRead.getFicha().getId(), "Wrong ficha");
+
+    // Null
+    Assertions.assertEquals("null", gson.toJson(null, Persona.class));
+  }
+
+}